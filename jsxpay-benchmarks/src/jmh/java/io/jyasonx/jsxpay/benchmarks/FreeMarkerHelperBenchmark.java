@@ -0,0 +1,60 @@
+package io.jyasonx.jsxpay.benchmarks;
+
+import freemarker.ext.beans.BeansWrapper;
+import freemarker.ext.beans.BeansWrapperBuilder;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateHashModel;
+import io.jyasonx.jsxpay.channel.FreeMarkerHelper;
+import io.jyasonx.jsxpay.util.DateUtils;
+import io.jyasonx.jsxpay.util.IdUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders the request templates of WeChat Pay with the same data model as the converter.
+ */
+@State(Scope.Thread)
+public class FreeMarkerHelperBenchmark {
+
+    private FreeMarkerHelper helper;
+    private Template transactionTemplate;
+    private Template transactionQueryTemplate;
+    private Map<String, Object> transactionData;
+    private Map<String, Object> transactionQueryData;
+
+    @Setup
+    public void setUp() throws Exception {
+        helper = new FreeMarkerHelper("/templates/wechat");
+        transactionTemplate = helper.getConfiguration().getTemplate("WECHAT_Transaction.ftl");
+        transactionQueryTemplate = helper.getConfiguration().getTemplate("WECHAT_TransactionQuery.ftl");
+
+        BeansWrapper wrapper = new BeansWrapperBuilder(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS).build();
+        TemplateHashModel models = wrapper.getStaticModels();
+        transactionData = new HashMap<>();
+        transactionData.put("request", Payloads.transactionRequest(Payloads.config()));
+        transactionData.put(IdUtils.class.getSimpleName(), models.get(IdUtils.class.getName()));
+        transactionData.put(DateUtils.class.getSimpleName(), models.get(DateUtils.class.getName()));
+        transactionData.put(DateTimeFormatter.class.getSimpleName(), models.get(DateTimeFormatter.class.getName()));
+
+        transactionQueryData = new HashMap<>();
+        transactionQueryData.put("request", Payloads.transactionQueryRequest(Payloads.config()));
+        transactionQueryData.put(IdUtils.class.getSimpleName(), models.get(IdUtils.class.getName()));
+    }
+
+    @Benchmark
+    public String renderTransaction() {
+        return helper.render(transactionTemplate, transactionData);
+    }
+
+    @Benchmark
+    public String renderTransactionQuery() {
+        return helper.render(transactionQueryTemplate, transactionQueryData);
+    }
+}
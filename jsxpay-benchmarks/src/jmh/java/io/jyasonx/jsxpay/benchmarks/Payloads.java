@@ -0,0 +1,101 @@
+package io.jyasonx.jsxpay.benchmarks;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.wechat.WechatCryptor;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The requests and responses of WeChat Pay shaped like the ones seen in production, responses are
+ * signed with the benchmark secret so that the verification goes all the way through.
+ */
+@SuppressWarnings("SpellCheckingInspection")
+final class Payloads {
+
+    private static final String TRANSACTION_RESPONSE = "<xml><return_code><![CDATA[SUCCESS]]></return_code>\n" +
+            "<return_msg><![CDATA[OK]]></return_msg>\n" +
+            "<appid><![CDATA[wx99bcf174724d0ae0]]></appid>\n" +
+            "<mch_id><![CDATA[1251462001]]></mch_id>\n" +
+            "<nonce_str><![CDATA[lbMeN1BDlecy00Rh]]></nonce_str>\n" +
+            "<sign><![CDATA[]]></sign>\n" +
+            "<result_code><![CDATA[SUCCESS]]></result_code>\n" +
+            "<prepay_id><![CDATA[wx30165715577881d4d4de0c5d2282184633]]></prepay_id>\n" +
+            "<trade_type><![CDATA[NATIVE]]></trade_type>\n" +
+            "<code_url><![CDATA[weixin://wxpay/bizpayurl?pr=dSLgwqI]]></code_url>\n" +
+            "</xml>";
+
+    private static final String QUERY_RESPONSE = "<xml><return_code><![CDATA[SUCCESS]]></return_code>\n" +
+            "<return_msg><![CDATA[OK]]></return_msg>\n" +
+            "<appid><![CDATA[wx99bcf174724d0ae0]]></appid>\n" +
+            "<mch_id><![CDATA[1251462001]]></mch_id>\n" +
+            "<device_info><![CDATA[WEB]]></device_info>\n" +
+            "<nonce_str><![CDATA[1p0MDfw4V3sjvKVz]]></nonce_str>\n" +
+            "<sign><![CDATA[]]></sign>\n" +
+            "<result_code><![CDATA[SUCCESS]]></result_code>\n" +
+            "<openid><![CDATA[oUpF8uMuAJO_M2pxb1Q9zNjWeS6o]]></openid>\n" +
+            "<is_subscribe><![CDATA[Y]]></is_subscribe>\n" +
+            "<trade_type><![CDATA[NATIVE]]></trade_type>\n" +
+            "<bank_type><![CDATA[CMC]]></bank_type>\n" +
+            "<total_fee>10000</total_fee>\n" +
+            "<fee_type><![CDATA[CNY]]></fee_type>\n" +
+            "<cash_fee>10000</cash_fee>\n" +
+            "<transaction_id><![CDATA[4200000301201905016123456789]]></transaction_id>\n" +
+            "<out_trade_no><![CDATA[a14f9fc9cfb34451b930b1530eb8ed1c]]></out_trade_no>\n" +
+            "<attach><![CDATA[]]></attach>\n" +
+            "<time_end><![CDATA[20190501120000]]></time_end>\n" +
+            "<trade_state><![CDATA[SUCCESS]]></trade_state>\n" +
+            "<trade_state_desc><![CDATA[支付成功]]></trade_state_desc>\n" +
+            "</xml>";
+
+    private Payloads() {
+    }
+
+    static Config config() {
+        Config config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("BENCHMARK");
+        config.setAppId("wx99bcf174724d0ae0");
+        config.setMerchantNo("1251462001");
+        config.setSignatureAlgorithm("MD5");
+        config.setEncoding(StringUtils.UTF_8);
+        config.setCallbackUrl("https://pay.example.com/notifications/wechat/BENCHMARK");
+        config.setSecretKey("0123456789abcdef0123456789abcdef");
+        return config;
+    }
+
+    static TransactionRequest transactionRequest(Config config) {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setTransaction(Transaction.builder()
+                .channelSerialNo("c91592e61b2f4fe98bb9af530b2831e4")
+                .description("会员充值 - 年度套餐")
+                .amount(new BigDecimal("100.00"))
+                .expireTime(LocalDateTime.now().plusHours(2L))
+                .build());
+        return request;
+    }
+
+    static TransactionQueryRequest transactionQueryRequest(Config config) {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        request.getTransactions().add(Transaction.builder()
+                .channelSerialNo("a14f9fc9cfb34451b930b1530eb8ed1c")
+                .build());
+        return request;
+    }
+
+    static String transactionResponse(Request request) {
+        return new WechatCryptor().sign(TRANSACTION_RESPONSE, request);
+    }
+
+    static String transactionQueryResponse(Request request) {
+        return new WechatCryptor().sign(QUERY_RESPONSE, request);
+    }
+}
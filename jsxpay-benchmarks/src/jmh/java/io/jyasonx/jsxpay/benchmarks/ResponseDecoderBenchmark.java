@@ -0,0 +1,43 @@
+package io.jyasonx.jsxpay.benchmarks;
+
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.wechat.StaxResponseDecoder;
+import io.jyasonx.jsxpay.channel.wechat.XStreamResponseDecoder;
+import io.jyasonx.jsxpay.channel.wechat.mapper.ResponseMapper;
+import io.jyasonx.jsxpay.util.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Compares the StAX decoder with the XStream decoder on throughput and allocation.
+ */
+@State(Scope.Thread)
+public class ResponseDecoderBenchmark {
+
+    private XStreamResponseDecoder xstream;
+    private StaxResponseDecoder stax;
+    private TransactionQueryRequest request;
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        xstream = new XStreamResponseDecoder();
+        stax = new StaxResponseDecoder();
+        request = Payloads.transactionQueryRequest(Payloads.config());
+        response = StringUtils.getBytesUtf8(Payloads.transactionQueryResponse(request));
+    }
+
+    @Benchmark
+    public ResponseMapper xstream() {
+        return xstream.decode(new ByteArrayInputStream(response), request);
+    }
+
+    @Benchmark
+    public ResponseMapper stax() {
+        return stax.decode(new ByteArrayInputStream(response), request);
+    }
+}
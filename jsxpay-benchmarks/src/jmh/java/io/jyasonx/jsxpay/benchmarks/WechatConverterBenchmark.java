@@ -0,0 +1,104 @@
+package io.jyasonx.jsxpay.benchmarks;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.RenderMode;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.WriteBuffer;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.wechat.WechatConverter;
+import io.jyasonx.jsxpay.channel.wechat.WechatCryptor;
+import io.jyasonx.jsxpay.util.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Writes the signed requests of WeChat Pay in both render modes, and reads the verified responses
+ * through both the string path and the fused path of the decoder.
+ */
+public class WechatConverterBenchmark {
+
+    @State(Scope.Thread)
+    public static class Writing {
+
+        @Param({"TEMPLATE", "COMPILED"})
+        private RenderMode renderMode;
+
+        private WechatConverter converter;
+        private WechatCryptor cryptor;
+        private TransactionRequest transactionRequest;
+        private TransactionQueryRequest transactionQueryRequest;
+
+        @Setup
+        public void setUp() {
+            Config config = Payloads.config();
+            config.setRenderMode(renderMode);
+            converter = new WechatConverter();
+            cryptor = new WechatCryptor();
+            transactionRequest = Payloads.transactionRequest(config);
+            transactionQueryRequest = Payloads.transactionQueryRequest(config);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reading {
+
+        private WechatConverter converter;
+        private WechatCryptor cryptor;
+        private TransactionQueryRequest request;
+        private String response;
+        private byte[] responseBytes;
+
+        @Setup
+        public void setUp() {
+            converter = new WechatConverter();
+            cryptor = new WechatCryptor();
+            request = Payloads.transactionQueryRequest(Payloads.config());
+            response = Payloads.transactionQueryResponse(request);
+            responseBytes = StringUtils.getBytesUtf8(response);
+        }
+    }
+
+    @Benchmark
+    public String writeTransaction(Writing state) {
+        return state.converter.writeTo(state.transactionRequest, state.cryptor);
+    }
+
+    @Benchmark
+    public String writeTransactionQuery(Writing state) {
+        return state.converter.writeTo(state.transactionQueryRequest, state.cryptor);
+    }
+
+    @Benchmark
+    public int writeTransactionBytes(Writing state) {
+        WriteBuffer buffer = WriteBuffer.acquire();
+        try {
+            state.converter.writeTo(state.transactionRequest, state.cryptor, buffer);
+            return buffer.length();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Verifies and decodes the response in two passes over the string.
+     */
+    @Benchmark
+    public Response readTransactionQuery(Reading state) {
+        state.cryptor.verify(state.response, state.request);
+        return state.converter.readFrom(state.response, state.request);
+    }
+
+    /**
+     * Verifies and decodes the response in a single pass of the decoder over the bytes.
+     */
+    @Benchmark
+    public Response readTransactionQueryFused(Reading state) {
+        return state.converter.readFrom(new ByteArrayInputStream(state.responseBytes), state.request, state.cryptor);
+    }
+}
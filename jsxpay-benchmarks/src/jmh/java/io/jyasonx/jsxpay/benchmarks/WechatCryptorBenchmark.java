@@ -0,0 +1,83 @@
+package io.jyasonx.jsxpay.benchmarks;
+
+import io.jyasonx.jsxpay.channel.FieldSet;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.wechat.WechatConverter;
+import io.jyasonx.jsxpay.channel.wechat.WechatCryptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Signs the rendered request and verifies the response, both as strings parsed by the cryptor and
+ * as the fields already parsed by the writer or the decoder.
+ */
+@State(Scope.Thread)
+public class WechatCryptorBenchmark {
+
+    private WechatCryptor cryptor;
+    private TransactionRequest request;
+    private String content;
+    private FieldSet fields;
+    private TransactionQueryRequest queryRequest;
+    private String response;
+    private FieldSet responseFields;
+
+    @Setup
+    public void setUp() {
+        cryptor = new WechatCryptor();
+        request = Payloads.transactionRequest(Payloads.config());
+        content = new WechatConverter().writeTo(request);
+        fields = fields(content);
+
+        queryRequest = Payloads.transactionQueryRequest(Payloads.config());
+        response = Payloads.transactionQueryResponse(queryRequest);
+        responseFields = fields(response);
+    }
+
+    @Benchmark
+    public String sign() {
+        return cryptor.sign(content, request);
+    }
+
+    @Benchmark
+    public FieldSet signFields() {
+        cryptor.sign(fields, request);
+        return fields;
+    }
+
+    @Benchmark
+    public void verify() {
+        cryptor.verify(response, queryRequest);
+    }
+
+    @Benchmark
+    public void verifyFields() {
+        cryptor.verify(responseFields, queryRequest);
+    }
+
+    /**
+     * Splits the single level XML into fields, values in CDATA sections are unwrapped.
+     */
+    private static FieldSet fields(String content) {
+        FieldSet fields = new FieldSet();
+        int index = content.indexOf("<xml>") + "<xml>".length();
+        while (true) {
+            int start = content.indexOf('<', index);
+            if (content.startsWith("</xml>", start)) {
+                return fields;
+            }
+            int end = content.indexOf('>', start);
+            String name = content.substring(start + 1, end);
+            int close = content.indexOf("</" + name + ">", end);
+            String value = content.substring(end + 1, close);
+            if (value.startsWith("<![CDATA[")) {
+                value = value.substring("<![CDATA[".length(), value.length() - "]]>".length());
+            }
+            fields.add(name, value);
+            index = close + name.length() + 3;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package io.jyasonx.jsxpay.benchmarks.load;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpServer;
+import io.jyasonx.jsxpay.channel.ChannelHttpClientRegistry;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.wechat.WechatConverter;
+import io.jyasonx.jsxpay.channel.wechat.WechatCryptor;
+import io.jyasonx.jsxpay.channel.wechat.WechatProcessor;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.mock.Behavior;
+import io.jyasonx.jsxpay.mock.LatencyDistribution;
+import io.jyasonx.jsxpay.mock.wechat.MockWechatServer;
+import io.jyasonx.jsxpay.util.IdUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives order creation and status queries through the channel processor at a target rate, and
+ * reports the latency corrected for coordinated omission, see {@link LoadReporter}.
+ * <p>
+ * A mock WeChat Pay is started unless 'baseUrl' is given, and the payment notifications are
+ * received and verified by the processor as well. Run it with
+ * {@code ./gradlew :jsxpay-benchmarks:loadTest -Pload.args="mode=open rate=500 duration=60"},
+ * see {@link LoadOptions} for all the options. The reports are written to 'output' as
+ * 'throughput.csv' and the '.hgrm' percentile distributions of each operation.
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private static final int RECENT_ORDERS = 4096;
+    private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toNanos(30L);
+
+    private final LoadOptions options;
+    private final Config config;
+    private final Processor processor;
+    private final LoadReporter reporter;
+    private final AtomicReferenceArray<String> recentOrders = new AtomicReferenceArray<>(RECENT_ORDERS);
+    private final AtomicLong orders = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final long startTime;
+    private final long measureTime;
+    private final long endTime;
+
+    private LoadGenerator(LoadOptions options, Config config, Processor processor, LoadReporter reporter,
+                          long startTime) {
+        this.options = options;
+        this.config = config;
+        this.processor = processor;
+        this.reporter = reporter;
+        this.startTime = startTime;
+        this.measureTime = startTime + TimeUnit.SECONDS.toNanos(options.getWarmUp());
+        this.endTime = measureTime + TimeUnit.SECONDS.toNanos(options.getDuration());
+    }
+
+    public static void main(String... args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        log.info("Starting the load test with {}...", options);
+
+        MockWechatServer server = null;
+        String baseUrl = options.getBaseUrl();
+        if (baseUrl == null) {
+            Behavior behavior = new Behavior();
+            behavior.setLatency(LatencyDistribution.logNormal(options.getMockMedian(), options.getMockP99()));
+            server = new MockWechatServer(0, options.getSecretKey(), behavior);
+            server.start();
+            baseUrl = server.getBaseUrl();
+        }
+
+        Config config = config(options, baseUrl);
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setMaxConnTotal(config.getMaxConnections())
+                .setMaxConnPerRoute(config.getMaxConnectionsPerRoute())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(config.getConnectTimeout())
+                        .setSocketTimeout(config.getSocketTimeout())
+                        .build())
+                .build();
+        ChannelHttpClientRegistry registry = new ChannelHttpClientRegistry(it -> {
+            throw new IllegalStateException("No private key is expected by the load test");
+        });
+        WechatProcessor processor = new WechatProcessor(httpClient, new WechatConverter(), new WechatCryptor(),
+                registry);
+
+        LongAdder notifications = new LongAdder();
+        HttpServer callback = callback(processor, config, notifications);
+        config.setCallbackUrl("http://127.0.0.1:" + callback.getAddress().getPort() + "/notifications");
+
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        long startTime = System.nanoTime();
+        try (LoadReporter reporter = new LoadReporter(Paths.get(options.getOutput(), timestamp), startTime,
+                EnumSet.of(RequestType.TRANSACTION, RequestType.TRANSACTION_QUERY))) {
+            new LoadGenerator(options, config, processor, reporter, startTime).run();
+            reporter.summarize(System.out);
+            System.out.printf("notifications received: %d%nreports written to: %s%n", notifications.sum(),
+                    Paths.get(options.getOutput(), timestamp).toAbsolutePath());
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+            callback.stop(0);
+            registry.close();
+            httpClient.close();
+        }
+    }
+
+    private void run() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(() -> reporter.report(System.nanoTime() > measureTime),
+                1L, 1L, TimeUnit.SECONDS);
+        try {
+            if (options.getMode() == LoadOptions.Mode.OPEN) {
+                runOpenLoop();
+            } else {
+                runClosedLoop();
+            }
+            long deadline = System.nanoTime() + DRAIN_TIMEOUT;
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10L);
+            }
+        } finally {
+            scheduler.shutdown();
+            scheduler.awaitTermination(5L, TimeUnit.SECONDS);
+        }
+        reporter.report(true);
+    }
+
+    /**
+     * Sends each request asynchronously at its scheduled time, a slow channel does not slow down
+     * the schedule but piles up the requests in flight.
+     */
+    private void runOpenLoop() {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1L) / options.getRate());
+        for (long i = 0; ; i++) {
+            long intendedTime = startTime + i * interval;
+            if (intendedTime >= endTime) {
+                return;
+            }
+            parkUntil(intendedTime);
+            Request request = nextRequest();
+            long sentTime = System.nanoTime();
+            inFlight.incrementAndGet();
+            CompletableFuture<Response> future;
+            try {
+                future = processor.executeAsync(request);
+            } catch (RuntimeException ex) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(ex);
+            }
+            future.whenComplete((response, ex) -> {
+                reporter.record(request.getType(), intendedTime, sentTime, System.nanoTime(), ex != null);
+                inFlight.decrementAndGet();
+            });
+        }
+    }
+
+    /**
+     * Each worker sends the next request once the last one completes, paced by its share of the
+     * target rate so that a late request is still charged from its scheduled time.
+     */
+    private void runClosedLoop() throws InterruptedException {
+        int concurrency = options.getConcurrency();
+        long interval = options.getRate() > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1L) * concurrency / options.getRate()) : 0L;
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            long offset = interval * i / concurrency;
+            Thread worker = new Thread(() -> {
+                long intendedTime = startTime + offset;
+                while (intendedTime < endTime) {
+                    parkUntil(intendedTime);
+                    Request request = nextRequest();
+                    long sentTime = System.nanoTime();
+                    boolean failed = false;
+                    try {
+                        processor.execute(request);
+                    } catch (RuntimeException ex) {
+                        failed = true;
+                    }
+                    long completedTime = System.nanoTime();
+                    reporter.record(request.getType(), interval > 0 ? intendedTime : sentTime, sentTime,
+                            completedTime, failed);
+                    intendedTime = interval > 0 ? intendedTime + interval : completedTime;
+                }
+            }, "load-worker-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Queries one of the recent orders at the query ratio, or creates an order.
+     */
+    private Request nextRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long created = Math.min(orders.get(), RECENT_ORDERS);
+        String querying = created > 0 && random.nextDouble() < options.getQueryRatio()
+                ? recentOrders.get((int) random.nextLong(created)) : null;
+        if (querying != null) {
+            TransactionQueryRequest request = new TransactionQueryRequest();
+            request.setConfig(config);
+            request.getTransactions().add(Transaction.builder().channelSerialNo(querying).build());
+            return request;
+        }
+        String serialNo = IdUtils.uuidWithoutDash();
+        recentOrders.set((int) (orders.getAndIncrement() % RECENT_ORDERS), serialNo);
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setTransaction(Transaction.builder()
+                .channelSerialNo(serialNo)
+                .description("load test order")
+                .amount(BigDecimal.valueOf(random.nextInt(1, 100000), 2))
+                .expireTime(LocalDateTime.now().plusHours(2L))
+                .build());
+        return request;
+    }
+
+    private static void parkUntil(long time) {
+        long delay;
+        while ((delay = time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    private static Config config(LoadOptions options, String baseUrl) {
+        Config config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("LOAD");
+        config.setBaseUrl(baseUrl);
+        config.setAppId("wx99bcf174724d0ae0");
+        config.setMerchantNo("1251462001");
+        config.setSignatureAlgorithm("MD5");
+        config.setSecretKey(options.getSecretKey());
+        config.setCaptureContent(false);
+        config.setMaxConnections(Math.max(config.getMaxConnections(), options.getConcurrency()));
+        config.setMaxConnectionsPerRoute(config.getMaxConnections());
+        return config;
+    }
+
+    /**
+     * Receives the payment notifications the way the gateway does, verified and acknowledged.
+     */
+    private static HttpServer callback(Processor processor, Config config, LongAdder notifications)
+            throws IOException {
+        HttpServer callback = HttpServer.create(new InetSocketAddress(0), 0);
+        callback.setExecutor(Executors.newFixedThreadPool(4,
+                new ThreadFactoryBuilder().setNameFormat("load-callback-%d").setDaemon(true).build()));
+        callback.createContext("/notifications", exchange -> {
+            TransactionNotificationRequest request = new TransactionNotificationRequest();
+            request.setConfig(config);
+            byte[] acknowledgement;
+            try {
+                processor.handle(IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8), request);
+                notifications.increment();
+                acknowledgement = processor.from(request).getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException ex) {
+                log.warn("Failed to handle the notification due to {}", ex.toString());
+                acknowledgement = new byte[0];
+            }
+            exchange.sendResponseHeaders(200, acknowledgement.length == 0 ? -1 : acknowledgement.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(acknowledgement);
+            }
+        });
+        callback.start();
+        return callback;
+    }
+}
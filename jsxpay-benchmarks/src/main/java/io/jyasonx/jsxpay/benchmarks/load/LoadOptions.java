@@ -0,0 +1,72 @@
+package io.jyasonx.jsxpay.benchmarks.load;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The options of a load test given as 'name=value' arguments, e.g. 'mode=open rate=500 duration=60'.
+ */
+@Getter
+@ToString
+public class LoadOptions {
+
+    public enum Mode {
+        /**
+         * Requests are sent at the target rate no matter how many are outstanding.
+         */
+        OPEN,
+        /**
+         * A fixed number of workers send requests one after another, paced by the target rate if any.
+         */
+        CLOSED
+    }
+
+    private Mode mode = Mode.OPEN;
+    // requests per second, non-positive means as fast as the closed loop goes
+    private double rate = 200;
+    private int concurrency = 32;
+    // in seconds
+    private long warmUp = 10;
+    private long duration = 60;
+    // the ratio of status queries in the requests, the rest creates orders
+    private double queryRatio = 0.5;
+    // the channel to drive, a mock channel is started if absent
+    private String baseUrl;
+    private String secretKey = "0123456789abcdef0123456789abcdef";
+    // the latency of mock channel in milliseconds
+    private long mockMedian = 50;
+    private long mockP99 = 500;
+    private String output = "build/reports/load";
+
+    public static LoadOptions parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("Invalid argument '" + arg + "', 'name=value' is expected");
+            }
+            values.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+
+        LoadOptions options = new LoadOptions();
+        options.mode = Mode.valueOf(values.getOrDefault("mode", options.mode.name()).toUpperCase());
+        options.rate = Double.parseDouble(values.getOrDefault("rate", String.valueOf(options.rate)));
+        options.concurrency = Integer.parseInt(values.getOrDefault("concurrency", String.valueOf(options.concurrency)));
+        options.warmUp = Long.parseLong(values.getOrDefault("warmUp", String.valueOf(options.warmUp)));
+        options.duration = Long.parseLong(values.getOrDefault("duration", String.valueOf(options.duration)));
+        options.queryRatio = Double.parseDouble(values.getOrDefault("queryRatio", String.valueOf(options.queryRatio)));
+        options.baseUrl = values.get("baseUrl");
+        options.secretKey = values.getOrDefault("secretKey", options.secretKey);
+        options.mockMedian = Long.parseLong(values.getOrDefault("mockMedian", String.valueOf(options.mockMedian)));
+        options.mockP99 = Long.parseLong(values.getOrDefault("mockP99", String.valueOf(options.mockP99)));
+        options.output = values.getOrDefault("output", options.output);
+
+        if (options.mode == Mode.OPEN && options.rate <= 0) {
+            throw new IllegalArgumentException("The open loop requires a positive rate");
+        }
+        return options;
+    }
+}
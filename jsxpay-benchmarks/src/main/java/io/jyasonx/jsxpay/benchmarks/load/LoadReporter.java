@@ -0,0 +1,146 @@
+package io.jyasonx.jsxpay.benchmarks.load;
+
+import io.jyasonx.jsxpay.channel.RequestType;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of operations in microseconds and reports it per interval as CSV rows, and
+ * as percentile distributions once the test is over.
+ * <p>
+ * The corrected latency is measured from the time a request was meant to be sent by the schedule,
+ * so the requests held back by a stalled channel are charged for the stall, which is known as
+ * the coordinated omission. The uncorrected latency from the time a request was actually sent is
+ * kept alongside for comparison.
+ */
+final class LoadReporter implements Closeable {
+
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(10L);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Path output;
+    private final PrintStream csv;
+    private final long startTime;
+    private final Map<RequestType, Stats> stats = new EnumMap<>(RequestType.class);
+
+    private long lastReportTime;
+
+    LoadReporter(Path output, long startTime, Set<RequestType> types) throws IOException {
+        this.output = Files.createDirectories(output);
+        this.csv = new PrintStream(new FileOutputStream(output.resolve("throughput.csv").toFile()),
+                true, StandardCharsets.UTF_8.name());
+        this.csv.println("elapsed_seconds,phase,request,count,errors,throughput,"
+                + "p50_ms,p90_ms,p99_ms,p999_ms,max_ms,uncorrected_p99_ms");
+        this.startTime = startTime;
+        this.lastReportTime = startTime;
+        for (RequestType type : types) {
+            stats.put(type, new Stats());
+        }
+    }
+
+    void record(RequestType type, long intendedTime, long sentTime, long completedTime, boolean failed) {
+        Stats stat = stats.get(type);
+        stat.corrected.recordValue(toMicros(completedTime - intendedTime));
+        stat.uncorrected.recordValue(toMicros(completedTime - sentTime));
+        if (failed) {
+            stat.errors.increment();
+        }
+    }
+
+    /**
+     * Reports the interval since the last report, only the intervals of measurement are summed
+     * into the totals. It must be called by a single thread.
+     */
+    void report(boolean measuring) {
+        long now = System.nanoTime();
+        long elapsed = now - lastReportTime;
+        double seconds = elapsed / 1e9;
+        lastReportTime = now;
+        for (Map.Entry<RequestType, Stats> entry : stats.entrySet()) {
+            Stats stat = entry.getValue();
+            stat.interval = stat.corrected.getIntervalHistogram(stat.interval);
+            stat.uncorrectedInterval = stat.uncorrected.getIntervalHistogram(stat.uncorrectedInterval);
+            long errors = stat.errors.sumThenReset();
+            if (measuring) {
+                stat.total.add(stat.interval);
+                stat.uncorrectedTotal.add(stat.uncorrectedInterval);
+                stat.totalErrors += errors;
+                stat.measuredTime += elapsed;
+            }
+            csv.printf("%.1f,%s,%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                    (now - startTime) / 1e9, measuring ? "measure" : "warm-up", entry.getKey(),
+                    stat.interval.getTotalCount(), errors, stat.interval.getTotalCount() / seconds,
+                    millis(stat.interval, 50.0), millis(stat.interval, 90.0), millis(stat.interval, 99.0),
+                    millis(stat.interval, 99.9), stat.interval.getMaxValue() / MICROS_PER_MILLI,
+                    millis(stat.uncorrectedInterval, 99.0));
+        }
+    }
+
+    /**
+     * Prints the summary of measurement, and writes the percentile distributions which could be
+     * plotted with the HdrHistogram plotter.
+     */
+    void summarize(PrintStream out) throws IOException {
+        out.printf("%-18s %10s %8s %10s %10s %10s %10s %10s %14s%n", "request", "count", "errors",
+                "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "raw p99.9 ms");
+        for (Map.Entry<RequestType, Stats> entry : stats.entrySet()) {
+            Stats stat = entry.getValue();
+            double seconds = stat.measuredTime / 1e9;
+            out.printf("%-18s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f %14.3f%n", entry.getKey(),
+                    stat.total.getTotalCount(), stat.totalErrors,
+                    seconds > 0 ? stat.total.getTotalCount() / seconds : 0.0,
+                    millis(stat.total, 50.0), millis(stat.total, 99.0), millis(stat.total, 99.9),
+                    stat.total.getMaxValue() / MICROS_PER_MILLI, millis(stat.uncorrectedTotal, 99.9));
+
+            String name = entry.getKey().name().toLowerCase();
+            write(stat.total, output.resolve(name + ".hgrm"));
+            write(stat.uncorrectedTotal, output.resolve(name + "-uncorrected.hgrm"));
+        }
+    }
+
+    @Override
+    public void close() {
+        csv.close();
+    }
+
+    private static void write(Histogram histogram, Path path) throws IOException {
+        try (PrintStream stream = new PrintStream(new FileOutputStream(path.toFile()), false,
+                StandardCharsets.UTF_8.name())) {
+            histogram.outputPercentileDistribution(stream, MICROS_PER_MILLI);
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.min(HIGHEST_LATENCY, Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    private static final class Stats {
+        private final Recorder corrected = new Recorder(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);
+        private final Recorder uncorrected = new Recorder(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);
+        private final LongAdder errors = new LongAdder();
+        private final Histogram total = new Histogram(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);
+        private final Histogram uncorrectedTotal = new Histogram(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);
+        private Histogram interval;
+        private Histogram uncorrectedInterval;
+        private long totalErrors;
+        private long measuredTime;
+    }
+}
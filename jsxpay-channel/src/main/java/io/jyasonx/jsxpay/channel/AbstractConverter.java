@@ -4,10 +4,13 @@ import freemarker.template.Template;
 import io.jyasonx.jsxpay.channel.bean.*;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.EnumMap;
 import java.util.Map;
 
 @Slf4j
-public abstract class AbstractConverter implements Converter {
+public abstract class AbstractConverter implements Converter, ByteConverter {
 
     @SuppressWarnings("SpellCheckingInspection")
     protected static final FreeMarkerHelper FREEMARKER_HELPER = new FreeMarkerHelper(
@@ -15,12 +18,75 @@ public abstract class AbstractConverter implements Converter {
             "/templates/alipay",
             "/templates/jdfinance");
 
+    private static final int RETAINED_BUFFER_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(StringBuilder::new);
+    private static final ThreadLocal<FieldSet> FIELDS = ThreadLocal.withInitial(FieldSet::new);
+
+    private final Map<RequestType, RequestWriter<? extends Request>> writers = new EnumMap<>(RequestType.class);
+
     protected String render(Template template, Map<String, Object> data) {
         return FREEMARKER_HELPER.render(template, data);
     }
 
+    /**
+     * Registers the compiled writer of a request type, which is used instead of the template
+     * once the render mode of the channel is {@link RenderMode#COMPILED}.
+     */
+    protected <R extends Request> void register(RequestType type, RequestWriter<R> writer) {
+        writers.put(type, writer);
+    }
+
+    /**
+     * Whether the request is written by the compiled writer instead of being rendered.
+     */
+    protected boolean isCompiled(RequestWriter<? extends Request> writer, Request request) {
+        return writer != null && request.getConfig().getRenderMode() == RenderMode.COMPILED;
+    }
+
     @Override
     public String writeTo(Request request) {
+        RequestWriter<? extends Request> writer = writers.get(request.getType());
+        if (isCompiled(writer, request)) {
+            return serialize(write(writer, request), request).toString();
+        }
+        return render(request);
+    }
+
+    /**
+     * Writes the signed request. With a compiled writer the signature is computed from the
+     * fields and the request is serialized only once, otherwise the rendered content is signed
+     * by the cryptor afterwards.
+     */
+    @Override
+    public String writeTo(Request request, Cryptor cryptor) {
+        RequestWriter<? extends Request> writer = writers.get(request.getType());
+        if (isCompiled(writer, request)) {
+            FieldSet fields = write(writer, request);
+            cryptor.sign(fields, request);
+            return serialize(fields, request).toString();
+        }
+        return cryptor.sign(render(request), request);
+    }
+
+    /**
+     * Same as {@link #writeTo(Request, Cryptor)}, but the serialized fields are encoded into the
+     * buffer straight from the reused builder. A rendered template is still encoded from the
+     * signed string, since the cryptor signs the rendered content as a whole.
+     */
+    @Override
+    public void writeTo(Request request, Cryptor cryptor, WriteBuffer buffer) {
+        Charset charset = Charset.forName(request.getConfig().getEncoding());
+        RequestWriter<? extends Request> writer = writers.get(request.getType());
+        if (isCompiled(writer, request)) {
+            FieldSet fields = write(writer, request);
+            cryptor.sign(fields, request);
+            buffer.append(serialize(fields, request), charset);
+            return;
+        }
+        buffer.append(cryptor.sign(render(request), request), charset);
+    }
+
+    private String render(Request request) {
         switch (request.getType()) {
             case TRANSACTION:
                 return from((TransactionRequest) request);
@@ -47,6 +113,50 @@ public abstract class AbstractConverter implements Converter {
         }
     }
 
+    @Override
+    public Response readFrom(InputStream response, Request request) {
+        throw new ThirdpartyException("Streaming response is not supported");
+    }
+
+    @Override
+    public Response readFrom(InputStream response, Request request, Cryptor cryptor) {
+        throw new ThirdpartyException("Streaming response is not supported");
+    }
+
+    /**
+     * Serializes the fields written by the compiled writers into the content of request.
+     */
+    protected void serialize(FieldSet fields, StringBuilder buffer) {
+        throw new ThirdpartyException("Compiled request is not supported");
+    }
+
+    /**
+     * Same as {@link #serialize(FieldSet, StringBuilder)}, for the channels of which the content
+     * depends on the config of request, such as the encoding of form.
+     */
+    protected void serialize(FieldSet fields, Request request, StringBuilder buffer) {
+        serialize(fields, buffer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R extends Request> FieldSet write(RequestWriter<R> writer, Request request) {
+        FieldSet fields = FIELDS.get();
+        fields.clear();
+        writer.write((R) request, fields);
+        return fields;
+    }
+
+    private StringBuilder serialize(FieldSet fields, Request request) {
+        StringBuilder buffer = BUFFERS.get();
+        if (buffer.capacity() > RETAINED_BUFFER_CAPACITY) {
+            buffer = new StringBuilder();
+            BUFFERS.set(buffer);
+        }
+        buffer.setLength(0);
+        serialize(fields, request, buffer);
+        return buffer;
+    }
+
     protected String from(TransactionRequest request) {
         throw new UnsupportedOperationException("Transaction is not supported");
     }
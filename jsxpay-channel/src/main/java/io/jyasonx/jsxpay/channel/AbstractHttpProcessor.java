@@ -1,30 +1,137 @@
 package io.jyasonx.jsxpay.channel;
 
+import io.jyasonx.jsxpay.channel.archive.Direction;
+import io.jyasonx.jsxpay.channel.archive.MessageArchive;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.client.HttpAsyncClient;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import static io.jyasonx.jsxpay.channel.ChannelMetrics.PHASE_EXCHANGE;
+import static io.jyasonx.jsxpay.channel.ChannelMetrics.PHASE_READ;
+import static io.jyasonx.jsxpay.channel.ChannelMetrics.PHASE_WRITE;
+
+/**
+ * With a converter, the requests run through the pipeline shared by the channels: written into
+ * the reused buffers and signed, sent by the clients of each channel from the registry, decoded
+ * and verified in a single pass, with the phase metrics recorded and the raw messages archived.
+ * The subclasses only compose the HTTP request of each request type.
+ */
 @Slf4j
 public class AbstractHttpProcessor implements Processor {
 
     protected HttpClient httpClient;
 
+    private final AbstractConverter converter;
+    private final Cryptor cryptor;
+    private final ChannelHttpClientRegistry httpClientRegistry;
+    private final MessageArchive archive;
+
     public AbstractHttpProcessor(HttpClient httpClient) {
+        this(httpClient, null, null, null, null);
+    }
+
+    /**
+     * The requests are sent by the clients of registry, the given client is only used by
+     * {@link #doExecute(HttpRequestBase)}. With the archive, the raw messages are archived
+     * straight from the buffers, and are no longer logged.
+     */
+    protected AbstractHttpProcessor(HttpClient httpClient, AbstractConverter converter, Cryptor cryptor,
+                                    ChannelHttpClientRegistry httpClientRegistry, MessageArchive archive) {
         this.httpClient = httpClient;
+        this.converter = converter;
+        this.cryptor = cryptor == null ? null : new TimedCryptor(cryptor);
+        this.httpClientRegistry = httpClientRegistry;
+        this.archive = archive;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public <T extends Response> T execute(Request request) {
-        throw new ThirdpartyException("Request generation is not expected by this processor");
+        if (converter == null) {
+            throw new ThirdpartyException("Request generation is not expected by this processor");
+        }
+        WriteBuffer buffer = WriteBuffer.acquire();
+        try {
+            HttpRequestBase requestBase = prepare(request, buffer);
+            long startTime = System.nanoTime();
+            HttpEntity responseEntity = doExecute(getHttpClient(request), requestBase);
+            record(request, PHASE_EXCHANGE, startTime);
+            return (T) read(responseEntity, request);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Response> CompletableFuture<T> executeAsync(Request request) {
+        if (converter == null) {
+            throw new ThirdpartyException("Asynchronous execution is not expected by this processor");
+        }
+        WriteBuffer buffer = WriteBuffer.acquire();
+        CompletableFuture<T> future;
+        try {
+            HttpRequestBase requestBase = prepare(request, buffer);
+            long startTime = System.nanoTime();
+            future = doExecuteAsync(getHttpAsyncClient(request), requestBase, entity -> {
+                record(request, PHASE_EXCHANGE, startTime);
+                return (T) read(entity, request);
+            });
+        } catch (RuntimeException ex) {
+            buffer.release();
+            throw ex;
+        }
+        future.whenComplete((response, ex) -> {
+            // the cancelled entity might still be written by the I/O dispatcher
+            if (!future.isCancelled()) {
+                buffer.release();
+            }
+        });
+        return future;
     }
 
+    /**
+     * Verifies and decodes the notification in a single pass.
+     */
+    @SuppressWarnings("unchecked")
     @Override
     public <T extends Response> T handle(String notification, Request request) {
-        throw new ThirdpartyException("Notification is not expected by this processor");
+        if (converter == null) {
+            throw new ThirdpartyException("Notification is not expected by this processor");
+        }
+        if (archive == null) {
+            log.info("notification string: {}", notification);
+        }
+        Charset charset = Charset.forName(request.getConfig().getEncoding());
+        Response response = null;
+        try {
+            response = converter.readFrom(new ByteArrayInputStream(notification.getBytes(charset)), request, cryptor);
+            response.setContent(notification);
+            return (T) response;
+        } finally {
+            if (archive != null) {
+                // the notification failed to be verified is archived without serial number
+                String serialNo = response == null ? null
+                        : ((TransactionNotificationResponse) response).getTransaction().getChannelSerialNo();
+                archive.archive(request.getConfig(), serialNo, Direction.NOTIFICATION, notification);
+            }
+        }
     }
 
     @Override
@@ -32,9 +139,36 @@ public class AbstractHttpProcessor implements Processor {
         throw new ThirdpartyException("Notification is not expected by this processor");
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public <T extends Request> T handle(String notification, Request request, Function<Response, Request> function) {
-        throw new ThirdpartyException("Notification is not expected by this processor");
+        if (converter == null) {
+            throw new ThirdpartyException("Notification is not expected by this processor");
+        }
+        return (T) function.apply(handle(notification, request));
+    }
+
+    /**
+     * Composes the HTTP request of the encoded and signed entity.
+     */
+    protected HttpRequestBase compose(Request request, HttpEntity entity) {
+        throw new ThirdpartyException("Request generation is not expected by this processor");
+    }
+
+    protected HttpClient getHttpClient(Request request) {
+        return httpClientRegistry.getHttpClient(request.getConfig());
+    }
+
+    /**
+     * The asynchronous client of each channel owns its own connection pool, so a slow channel
+     * could only exhaust the connections of itself.
+     */
+    protected HttpAsyncClient getHttpAsyncClient(Request request) {
+        return httpClientRegistry.getHttpAsyncClient(request.getConfig());
+    }
+
+    protected ChannelHttpClientRegistry getHttpClientRegistry() {
+        return httpClientRegistry;
     }
 
     protected HttpEntity doExecute(HttpRequestBase request) {
@@ -49,4 +183,119 @@ public class AbstractHttpProcessor implements Processor {
             throw new ThirdpartyException("Error connecting to remote server", ex);
         }
     }
+
+    /**
+     * Executes the request without blocking the calling thread, the reader is applied to the
+     * response entity on the I/O dispatcher thread. Cancelling the returned future aborts the
+     * underlying HTTP exchange as well.
+     */
+    protected <T> CompletableFuture<T> doExecuteAsync(HttpAsyncClient httpAsyncClient, HttpRequestBase request,
+                                                      Function<HttpEntity, T> reader) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<HttpResponse> future = httpAsyncClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    result.complete(reader.apply(response.getEntity()));
+                } catch (RuntimeException ex) {
+                    result.completeExceptionally(ex);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                log.error("Failed to communicate with remote server due to an exception!", ex);
+                result.completeExceptionally(new ThirdpartyException("Error connecting to remote server", ex));
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        result.whenComplete((response, ex) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private HttpRequestBase prepare(Request request, WriteBuffer buffer) {
+        // composed ahead of writing, so that an unsupported request is never signed
+        HttpRequestBase requestBase = compose(request, buffer.asEntity());
+        long startTime = System.nanoTime();
+        converter.writeTo(request, cryptor, buffer);
+        record(request, PHASE_WRITE, startTime);
+
+        if (archive != null) {
+            archive.archive(request.getConfig(), serialNo(request), Direction.REQUEST,
+                    buffer.array(), 0, buffer.length());
+        }
+        if (request.getConfig().isCaptureContent()) {
+            String signedRequestString = buffer.toString(Charset.forName(request.getConfig().getEncoding()));
+            if (archive == null) {
+                log.info("signed string: {}", signedRequestString);
+            }
+            request.setContent(signedRequestString);
+        }
+
+        return requestBase;
+    }
+
+    private Response read(HttpEntity responseEntity, Request request) {
+        try {
+            long startTime = System.nanoTime();
+            ReadBuffer buffer = ReadBuffer.read(responseEntity.getContent(), request.getConfig().getMaxResponseSize());
+            // archived before decoding, so that the response failed to be decoded or verified is kept
+            if (archive != null) {
+                archive.archive(request.getConfig(), serialNo(request), Direction.RESPONSE,
+                        buffer.array(), 0, buffer.length());
+            }
+            String responseString = null;
+            if (request.getConfig().isCaptureContent()) {
+                responseString = buffer.toString(request.getConfig().getEncoding());
+                if (archive == null) {
+                    log.info("response string: {}", responseString);
+                }
+            }
+            Response response;
+            try {
+                response = converter.readFrom(buffer.asInputStream(), request, cryptor);
+            } catch (RuntimeException ex) {
+                // the response failed to be decoded or verified is always kept for investigation
+                if (archive == null && responseString == null) {
+                    log.error("Failed to read the response string: {}",
+                            buffer.toString(request.getConfig().getEncoding()));
+                }
+                throw ex;
+            }
+            record(request, PHASE_READ, startTime);
+
+            if (responseString != null) {
+                response.setContent(responseString);
+            }
+
+            return response;
+        } catch (IOException ex) {
+            log.error("Failed to read the HTTP entity from response!", ex);
+            throw new ThirdpartyException("Error reading the HTTP entity from response", ex);
+        }
+    }
+
+    private static String serialNo(Request request) {
+        switch (request.getType()) {
+            case TRANSACTION:
+                return ((TransactionRequest) request).getTransaction().getChannelSerialNo();
+            case TRANSACTION_QUERY:
+                List<Transaction> transactions = ((TransactionQueryRequest) request).getTransactions();
+                return transactions.isEmpty() ? null : transactions.get(0).getChannelSerialNo();
+            default:
+                return null;
+        }
+    }
+
+    private static void record(Request request, String phase, long startTime) {
+        ChannelMetrics.phase(request, phase).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
 }
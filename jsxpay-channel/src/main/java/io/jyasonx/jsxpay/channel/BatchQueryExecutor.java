@@ -0,0 +1,223 @@
+package io.jyasonx.jsxpay.channel;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Queries the transactions of a batch {@link TransactionQueryRequest} concurrently, one request
+ * per transaction through {@link Processor#executeAsync(Request)}.
+ * <p>
+ * The in-flight queries of each channel are bounded by {@link Config#getMaxConcurrentQueries()}
+ * and throttled by {@link Config#getQueryRateLimit()}, no matter how many batches are running on
+ * that channel. The limits are taken from the config when a channel is queried for the first time.
+ * The queries beyond the limits wait in a queue of their channel instead of blocking any thread,
+ * and are dispatched by a shared daemon thread once the permits are available.
+ */
+@Slf4j
+public class BatchQueryExecutor {
+
+    public static final String CODE_SUCCESS = "SUCCESS";
+    public static final String CODE_PARTIAL = "PARTIAL";
+    public static final String CODE_FAILED = "FAIL";
+    public static final String CODE_ERROR = "ERROR";
+
+    private static final ScheduledExecutorService DISPATCHER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("batch-query-dispatcher").setDaemon(true).build());
+
+    private final Processor processor;
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+
+    public BatchQueryExecutor(Processor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Queries the batch and waits for all the transactions to be completed.
+     */
+    public TransactionQueryResponse execute(TransactionQueryRequest request) {
+        return executeAsync(request).join();
+    }
+
+    /**
+     * Dispatches the queries of batch without blocking, the queries of a saturated channel are
+     * queued until its in-flight ones are completed. The transactions of response are in the same
+     * order as the request, a failed query is reported as {@link TransactionStatus#PROCESSING}
+     * with code {@link #CODE_ERROR}, so that it will be queried again later.
+     */
+    public CompletableFuture<TransactionQueryResponse> executeAsync(TransactionQueryRequest request) {
+        List<Transaction> transactions = request.getTransactions();
+        Limit limit = limits.computeIfAbsent(request.getConfig().getChannelType().name() + DASH
+                + request.getConfig().getChannelNo(), key -> new Limit(request.getConfig()));
+
+        Transaction[] results = new Transaction[transactions.size()];
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[transactions.size()];
+        for (int i = 0; i < transactions.size(); i++) {
+            int index = i;
+            Transaction transaction = transactions.get(i);
+            futures[i] = query(limit, request, transaction).handle((result, ex) -> {
+                if (ex != null) {
+                    failures.incrementAndGet();
+                    results[index] = failed(transaction, ex);
+                } else {
+                    results[index] = result;
+                }
+                return null;
+            });
+        }
+
+        return CompletableFuture.allOf(futures).thenApply(ignored -> {
+            TransactionQueryResponse response = new TransactionQueryResponse();
+            response.setOrderNo(request.getOrderNo());
+            response.setQueryOrderNo(request.getQueryOrderNo());
+            for (Transaction result : results) {
+                response.getTransactions().add(result);
+            }
+
+            int failed = failures.get();
+            if (failed == 0) {
+                response.setCode(CODE_SUCCESS);
+            } else {
+                response.setCode(failed == results.length ? CODE_FAILED : CODE_PARTIAL);
+                response.setMessage(failed + " of " + results.length + " queries failed");
+            }
+            return response;
+        });
+    }
+
+    private CompletableFuture<Transaction> query(Limit limit, TransactionQueryRequest batch, Transaction transaction) {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(batch.getConfig());
+        request.setTransactionType(batch.getTransactionType());
+        request.setOperation(batch.getOperation());
+        request.setOrderNo(batch.getOrderNo());
+        request.setQueryOrderNo(batch.getQueryOrderNo());
+        request.getTransactions().add(transaction);
+
+        CompletableFuture<Transaction> result = new CompletableFuture<>();
+        limit.submit(() -> {
+            CompletableFuture<TransactionQueryResponse> future;
+            try {
+                future = processor.executeAsync(request);
+            } catch (RuntimeException ex) {
+                limit.release();
+                result.completeExceptionally(ex);
+                return;
+            }
+            future.whenComplete((response, ex) -> {
+                limit.release();
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                    return;
+                }
+                try {
+                    result.complete(merge(transaction, response));
+                } catch (RuntimeException mergeEx) {
+                    result.completeExceptionally(mergeEx);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Copies the queried transaction, as the response might be shared by other callers.
+     */
+    private static Transaction merge(Transaction transaction, TransactionQueryResponse response) {
+        if (response.getTransactions().isEmpty()) {
+            throw new ThirdpartyException("No transaction found in response");
+        }
+        return response.getTransactions().get(0).toBuilder()
+                .serialNo(transaction.getSerialNo())
+                .channelNo(transaction.getChannelNo())
+                .channelType(transaction.getChannelType())
+                .channelSerialNo(transaction.getChannelSerialNo())
+                .build();
+    }
+
+    private static Transaction failed(Transaction transaction, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        log.warn("Failed to query the transaction '{}'!", transaction.getChannelSerialNo(), cause);
+        return Transaction.builder()
+                .serialNo(transaction.getSerialNo())
+                .channelNo(transaction.getChannelNo())
+                .channelType(transaction.getChannelType())
+                .channelSerialNo(transaction.getChannelSerialNo())
+                .status(TransactionStatus.PROCESSING)
+                .code(CODE_ERROR)
+                .message(cause.getMessage())
+                .build();
+    }
+
+    private static class Limit {
+        private final Semaphore permits;
+        private final RateLimiter rateLimiter;
+        private final long interval;
+        private final Queue<Runnable> queries = new ConcurrentLinkedQueue<>();
+
+        private Limit(Config config) {
+            permits = new Semaphore(config.getMaxConcurrentQueries());
+            rateLimiter = config.getQueryRateLimit() > 0 ? RateLimiter.create(config.getQueryRateLimit()) : null;
+            interval = rateLimiter == null ? 0L : (long) (TimeUnit.SECONDS.toMicros(1L) / rateLimiter.getRate());
+        }
+
+        /**
+         * Runs the query in the calling thread if a permit is available, or queues it otherwise.
+         */
+        private void submit(Runnable query) {
+            queries.add(query);
+            drain(Runnable::run);
+        }
+
+        /**
+         * Releases the permit of a completed query, the queued one is handed to the dispatcher, as
+         * the completion might be on an I/O thread of the HTTP client.
+         */
+        private void release() {
+            permits.release();
+            drain(DISPATCHER);
+        }
+
+        private void drain(Executor executor) {
+            while (!queries.isEmpty() && permits.tryAcquire()) {
+                Runnable query = queries.poll();
+                if (query == null) {
+                    permits.release();
+                } else {
+                    throttle(query, executor);
+                }
+            }
+        }
+
+        /**
+         * The throttled query keeps its permit, and tries again after the interval of the rate.
+         */
+        private void throttle(Runnable query, Executor executor) {
+            if (rateLimiter == null || rateLimiter.tryAcquire()) {
+                executor.execute(query);
+            } else {
+                DISPATCHER.schedule(() -> throttle(query, Runnable::run), interval, TimeUnit.MICROSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.jyasonx.jsxpay.channel;
+
+import java.nio.charset.Charset;
+
+/**
+ * Writes the signed request as encoded bytes into a {@link WriteBuffer}, which is sent as the
+ * HTTP entity directly, instead of going through an intermediate {@code String}.
+ */
+@FunctionalInterface
+public interface ByteConverter {
+
+    void writeTo(Request request, Cryptor cryptor, WriteBuffer buffer);
+
+    /**
+     * Adapts a {@link Converter} which only writes strings, the signed content is encoded with
+     * the encoding of channel.
+     */
+    static ByteConverter of(Converter converter) {
+        return (request, cryptor, buffer) -> buffer.append(converter.writeTo(request, cryptor),
+                Charset.forName(request.getConfig().getEncoding()));
+    }
+}
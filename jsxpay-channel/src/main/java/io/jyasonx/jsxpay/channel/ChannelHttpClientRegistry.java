@@ -0,0 +1,293 @@
+package io.jyasonx.jsxpay.channel;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.jyasonx.jsxpay.util.SecurityUtils;
+import io.jyasonx.jsxpay.util.StringUtils;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Registry of the pooled HTTP clients of channels, keyed by the channel type, the channel number
+ * and the fingerprint of the key material, the pool size and the timeouts.
+ * <p>
+ * Each client is built exactly once no matter how many requests ask for it at the same time.
+ * Once the fingerprint of a channel changes, a new client is swapped in atomically and the
+ * replaced one is closed after its leased connections have been returned to the pool, or the
+ * drain timeout is reached.
+ */
+@Slf4j
+public class ChannelHttpClientRegistry implements Closeable {
+
+    private static final String FINGERPRINT_NONE = "NONE";
+    private static final String CLIENT_SYNC = "sync";
+    private static final String CLIENT_ASYNC = "async";
+    private static final long DRAIN_CHECK_INTERVAL = 1000L;
+    private static final long DEFAULT_DRAIN_TIMEOUT = 60000L;
+
+    private final Function<Config, SSLContext> sslContextFactory;
+    private final long drainTimeout;
+
+    private final ConcurrentMap<String, Slot<CloseableHttpClient>> httpClients = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Slot<CloseableHttpAsyncClient>> httpAsyncClients = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService drainer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("channel-http-client-drainer").setDaemon(true).build());
+
+    public ChannelHttpClientRegistry(Function<Config, SSLContext> sslContextFactory) {
+        this(sslContextFactory, DEFAULT_DRAIN_TIMEOUT);
+    }
+
+    public ChannelHttpClientRegistry(Function<Config, SSLContext> sslContextFactory, long drainTimeout) {
+        this.sslContextFactory = sslContextFactory;
+        this.drainTimeout = drainTimeout;
+    }
+
+    public CloseableHttpClient getHttpClient(Config config) {
+        return get(httpClients, config, this::createHttpClient);
+    }
+
+    public CloseableHttpAsyncClient getHttpAsyncClient(Config config) {
+        return get(httpAsyncClients, config, this::createHttpAsyncClient);
+    }
+
+    @Override
+    public void close() {
+        drainer.shutdownNow();
+        closeAll(httpClients);
+        closeAll(httpAsyncClients);
+    }
+
+    private <C extends Closeable> C get(ConcurrentMap<String, Slot<C>> slots, Config config,
+                                        Function<Config, Slot<C>> builder) {
+        String keyName = config.getChannelType().name() + DASH + config.getChannelNo();
+
+        String fingerprint = fingerprint(config);
+
+        Slot<C> slot = slots.get(keyName);
+        if (slot != null && slot.fingerprint.equals(fingerprint)) {
+            return slot.client;
+        }
+
+        return slots.compute(keyName, (key, current) -> {
+            if (current != null && current.fingerprint.equals(fingerprint)) {
+                return current;
+            }
+
+            Slot<C> created = builder.apply(config);
+            created.fingerprint = fingerprint;
+            if (current != null) {
+                log.info("Key material or settings of channel '{}' were changed, draining the replaced HTTP client...",
+                        key);
+                drain(key, current);
+            }
+            return created;
+        }).client;
+    }
+
+    private Slot<CloseableHttpClient> createHttpClient(Config config) {
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(createSslContext(config),
+                        SSLConnectionSocketFactory.getDefaultHostnameVerifier()))
+                .build();
+        Timer leaseTimer = ChannelMetrics.lease(config, CLIENT_SYNC);
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry) {
+            @Override
+            public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+                ConnectionRequest request = super.requestConnection(route, state);
+                return new ConnectionRequest() {
+                    @Override
+                    public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                            throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                        long startTime = System.nanoTime();
+                        try {
+                            return request.get(timeout, timeUnit);
+                        } finally {
+                            leaseTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                        }
+                    }
+
+                    @Override
+                    public boolean cancel() {
+                        return request.cancel();
+                    }
+                };
+            }
+        };
+        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        ChannelMetrics.bindPool(config, CLIENT_SYNC, connectionManager);
+
+        CloseableHttpClient httpClient = HttpClients
+                .custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(createRequestConfig(config))
+                .build();
+        return new Slot<>(httpClient, connectionManager);
+    }
+
+    private Slot<CloseableHttpAsyncClient> createHttpAsyncClient(Config config) {
+        try {
+            Registry<SchemeIOSessionStrategy> registry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                    .register("http", NoopIOSessionStrategy.INSTANCE)
+                    .register("https", new SSLIOSessionStrategy(createSslContext(config),
+                            SSLIOSessionStrategy.getDefaultHostnameVerifier()))
+                    .build();
+            Timer leaseTimer = ChannelMetrics.lease(config, CLIENT_ASYNC);
+            PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT), registry) {
+                @Override
+                public Future<NHttpClientConnection> requestConnection(
+                        HttpRoute route, Object state, long connectTimeout, long leaseTimeout, TimeUnit timeUnit,
+                        FutureCallback<NHttpClientConnection> callback) {
+                    long startTime = System.nanoTime();
+                    return super.requestConnection(route, state, connectTimeout, leaseTimeout, timeUnit,
+                            new FutureCallback<NHttpClientConnection>() {
+                                @Override
+                                public void completed(NHttpClientConnection connection) {
+                                    leaseTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                                    if (callback != null) {
+                                        callback.completed(connection);
+                                    }
+                                }
+
+                                @Override
+                                public void failed(Exception ex) {
+                                    leaseTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                                    if (callback != null) {
+                                        callback.failed(ex);
+                                    }
+                                }
+
+                                @Override
+                                public void cancelled() {
+                                    if (callback != null) {
+                                        callback.cancelled();
+                                    }
+                                }
+                            });
+                }
+            };
+            connectionManager.setMaxTotal(config.getMaxConnections());
+            connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+            ChannelMetrics.bindPool(config, CLIENT_ASYNC, connectionManager);
+
+            CloseableHttpAsyncClient httpAsyncClient = HttpAsyncClients
+                    .custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(createRequestConfig(config))
+                    .build();
+            httpAsyncClient.start();
+            return new Slot<>(httpAsyncClient, connectionManager);
+        } catch (IOReactorException ex) {
+            log.error("Failed to start the I/O reactor for channel '{}'!", config.getChannelNo(), ex);
+            throw new ThirdpartyException("Error building the asynchronous HTTP client", ex);
+        }
+    }
+
+    private static RequestConfig createRequestConfig(Config config) {
+        return RequestConfig
+                .custom()
+                .setConnectTimeout(config.getConnectTimeout())
+                .setConnectionRequestTimeout(config.getConnectionRequestTimeout())
+                .setSocketTimeout(config.getSocketTimeout())
+                .build();
+    }
+
+    private SSLContext createSslContext(Config config) {
+        return Strings.isNullOrEmpty(config.getPrivateKey())
+                ? SSLContexts.createDefault() : sslContextFactory.apply(config);
+    }
+
+    private void drain(String keyName, Slot<? extends Closeable> slot) {
+        long deadline = System.currentTimeMillis() + drainTimeout;
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+        task.set(drainer.scheduleWithFixedDelay(() -> {
+            if (slot.pool.getTotalStats().getLeased() > 0 && System.currentTimeMillis() < deadline) {
+                return;
+            }
+            closeQuietly(keyName, slot);
+            task.get().cancel(false);
+        }, DRAIN_CHECK_INTERVAL, DRAIN_CHECK_INTERVAL, TimeUnit.MILLISECONDS));
+    }
+
+    private <C extends Closeable> void closeAll(Map<String, Slot<C>> slots) {
+        slots.forEach(this::closeQuietly);
+        slots.clear();
+    }
+
+    private void closeQuietly(String keyName, Slot<? extends Closeable> slot) {
+        try {
+            slot.client.close();
+        } catch (IOException ex) {
+            log.warn("Failed to close the HTTP client of channel '{}'!", keyName, ex);
+        }
+    }
+
+    private static String fingerprint(Config config) {
+        String material = Strings.isNullOrEmpty(config.getPrivateKey()) ? FINGERPRINT_NONE
+                : config.getPrivateKeyType() + StringUtils.VERTICAL + config.getPrivateKey()
+                + StringUtils.VERTICAL + config.getPrivateKeyPassword();
+        String settings = config.getMaxConnections() + StringUtils.VERTICAL + config.getMaxConnectionsPerRoute()
+                + StringUtils.VERTICAL + config.getConnectTimeout()
+                + StringUtils.VERTICAL + config.getConnectionRequestTimeout()
+                + StringUtils.VERTICAL + config.getSocketTimeout();
+        return Hex.encodeHexString(SecurityUtils.digest(SecurityUtils.SHA256,
+                StringUtils.getBytesUtf8(settings + StringUtils.VERTICAL + material)));
+    }
+
+    private static class Slot<C extends Closeable> {
+        private final C client;
+        private final ConnPoolControl<HttpRoute> pool;
+        private String fingerprint;
+
+        private Slot(C client, ConnPoolControl<HttpRoute> pool) {
+            this.client = client;
+            this.pool = pool;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.jyasonx.jsxpay.channel;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static io.jyasonx.jsxpay.util.StringUtils.VERTICAL;
+
+/**
+ * The meters of channel requests, registered to {@link Metrics#globalRegistry} which the
+ * registry of Spring Boot Actuator is added to.
+ * <p>
+ * {@value #PHASE} times each phase of a request, tagged with the channel type, the channel number,
+ * the request type and the phase. The {@link #PHASE_WRITE} phase covers {@link #PHASE_SIGN}, and
+ * the {@link #PHASE_READ} phase covers {@link #PHASE_VERIFY}. {@value #LEASE} times the wait for
+ * a pooled connection, and the {@value #POOL} gauges show the occupancy of connection pools.
+ */
+public final class ChannelMetrics {
+
+    public static final String PHASE = "jsxpay.channel.phase";
+    public static final String LEASE = "jsxpay.channel.connection.lease";
+    public static final String POOL = "jsxpay.channel.connection.pool";
+
+    public static final String PHASE_WRITE = "write";
+    public static final String PHASE_SIGN = "sign";
+    public static final String PHASE_EXCHANGE = "exchange";
+    public static final String PHASE_READ = "read";
+    public static final String PHASE_VERIFY = "verify";
+
+    private static final String TAG_CHANNEL_TYPE = "channelType";
+    private static final String TAG_CHANNEL_NO = "channelNo";
+    private static final String TAG_REQUEST_TYPE = "requestType";
+    private static final String TAG_PHASE = "phase";
+    private static final String TAG_CLIENT = "client";
+    private static final String TAG_STATE = "state";
+    private static final String UNKNOWN = "unknown";
+
+    private static final ConcurrentMap<String, Timer> PHASES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, AtomicReference<ConnPoolControl<HttpRoute>>> POOLS
+            = new ConcurrentHashMap<>();
+
+    private ChannelMetrics() {
+    }
+
+    /**
+     * Returns the timer of phase, which is built once for each channel, request type and phase.
+     */
+    public static Timer phase(Request request, String phase) {
+        Config config = request.getConfig();
+        String keyName = keyName(config) + VERTICAL + request.getType().name() + VERTICAL + phase;
+        Timer timer = PHASES.get(keyName);
+        if (timer != null) {
+            return timer;
+        }
+        return PHASES.computeIfAbsent(keyName, key -> Timer.builder(PHASE)
+                .tags(channelTags(config).and(TAG_REQUEST_TYPE, request.getType().name(), TAG_PHASE, phase))
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry));
+    }
+
+    public static Timer lease(Config config, String client) {
+        return Timer.builder(LEASE)
+                .tags(channelTags(config).and(TAG_CLIENT, client))
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Binds the gauges of pool occupancy to the pool of channel, the gauges follow the latest
+     * bound pool once the client is rebuilt.
+     */
+    public static void bindPool(Config config, String client, ConnPoolControl<HttpRoute> pool) {
+        POOLS.computeIfAbsent(keyName(config) + VERTICAL + client, key -> {
+            AtomicReference<ConnPoolControl<HttpRoute>> reference = new AtomicReference<>();
+            Tags tags = channelTags(config).and(TAG_CLIENT, client);
+            MeterRegistry registry = Metrics.globalRegistry;
+            gauge(registry, reference, tags, "leased", PoolStats::getLeased);
+            gauge(registry, reference, tags, "pending", PoolStats::getPending);
+            gauge(registry, reference, tags, "available", PoolStats::getAvailable);
+            gauge(registry, reference, tags, "max", PoolStats::getMax);
+            return reference;
+        }).set(pool);
+    }
+
+    private static void gauge(MeterRegistry registry, AtomicReference<ConnPoolControl<HttpRoute>> reference,
+                              Tags tags, String state, Function<PoolStats, Integer> stat) {
+        Gauge.builder(POOL, reference, value -> value.get() == null ? 0 : stat.apply(value.get().getTotalStats()))
+                .tags(tags.and(TAG_STATE, state))
+                .register(registry);
+    }
+
+    private static String keyName(Config config) {
+        return channelType(config) + VERTICAL + channelNo(config);
+    }
+
+    /**
+     * Returns the tags of channel type and number, shared by all the meters of channels so that
+     * they could be joined with each other.
+     */
+    public static Tags channelTags(Config config) {
+        return Tags.of(TAG_CHANNEL_TYPE, channelType(config), TAG_CHANNEL_NO, channelNo(config));
+    }
+
+    private static String channelType(Config config) {
+        return config.getChannelType() == null ? UNKNOWN : config.getChannelType().name();
+    }
+
+    private static String channelNo(Config config) {
+        return config.getChannelNo() == null ? UNKNOWN : config.getChannelNo();
+    }
+}
@@ -1,6 +1,7 @@
 package io.jyasonx.jsxpay.channel;
 
 import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.util.StringUtils;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -21,7 +22,55 @@ public class Config {
     private String queryUrl;
     private String returnUrl;
 
-    private String encoding;
+    private String encoding = StringUtils.UTF_8;
+    // the compiled writers are opted in per channel, the templates stay the default
+    private RenderMode renderMode = RenderMode.TEMPLATE;
+    // keep the raw content of request and response, and log it
+    private boolean captureContent = true;
+
+    // connection pool
+    private int maxConnections = 200;
+    private int maxConnectionsPerRoute = 100;
+    private int maxResponseSize = 1024 * 1024;
+    private int connectTimeout = 30000;
+    private int connectionRequestTimeout = 30000;
+    private int socketTimeout = 30000;
+
+    // adaptive concurrency limit and circuit breaker, latency in milliseconds
+    private int initialConcurrencyLimit = 20;
+    private int minConcurrencyLimit = 1;
+    private int maxConcurrencyLimit = 200;
+    private long latencyThreshold = 3000L;
+    private int circuitBreakerWindowSize = 50;
+    private double circuitBreakerFailureRate = 0.5;
+    private long circuitBreakerOpenDuration = 30000L;
+
+    // hedging of idempotent queries, the budget is the ratio of extra requests allowed
+    private boolean hedgingEnabled = false;
+    private double hedgingPercentile = 0.95;
+    private long hedgingMinDelay = 50L;
+    private double hedgingBudget = 0.1;
+
+    // single-flight of transaction queries, the callers joined an in-flight query wait no longer
+    // than the timeout, non-positive means the socket timeout
+    private long singleFlightTimeout = 0L;
+
+    // blocking calls dispatched by the channel executor, the wait for a permit is capped by the
+    // connection request timeout
+    private int maxConcurrentCalls = 200;
+
+    // warm-up before taking live traffic, synthetic requests and responses are encoded, signed,
+    // verified and decoded the given times, and a connection is opened to the base URL if enabled
+    private int warmUpIterations = 200;
+    private boolean warmUpConnections = false;
+
+    // batch query, non-positive rate limit means unlimited
+    private int maxConcurrentQueries = 16;
+    private double queryRateLimit = 0;
+
+    // status polling, the last interval is repeated until the max attempts
+    private long[] pollingIntervals = {5000L, 15000L, 30000L, 60000L, 300000L};
+    private int maxPollingAttempts = 30;
 
     // secret
     private String merchantNo;
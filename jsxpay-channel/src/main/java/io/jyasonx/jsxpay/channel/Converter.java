@@ -1,8 +1,16 @@
 package io.jyasonx.jsxpay.channel;
 
+import java.io.InputStream;
+
 public interface Converter {
 
     String writeTo(Request request);
 
+    String writeTo(Request request, Cryptor cryptor);
+
     Response readFrom(String response, Request request);
+
+    Response readFrom(InputStream response, Request request);
+
+    Response readFrom(InputStream response, Request request, Cryptor cryptor);
 }
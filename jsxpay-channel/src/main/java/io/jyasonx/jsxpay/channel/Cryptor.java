@@ -0,0 +1,21 @@
+package io.jyasonx.jsxpay.channel;
+
+public interface Cryptor {
+
+    /**
+     * Signs the rendered content, returns the content with signature filled in.
+     */
+    String sign(String content, Request request);
+
+    /**
+     * Signs the fields, the signature is filled into the fields directly.
+     */
+    void sign(FieldSet fields, Request request);
+
+    void verify(String content, Request request);
+
+    /**
+     * Verifies the signature of fields collected while decoding the response.
+     */
+    void verify(FieldSet fields, Request request);
+}
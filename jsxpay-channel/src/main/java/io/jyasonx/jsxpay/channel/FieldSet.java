@@ -0,0 +1,90 @@
+package io.jyasonx.jsxpay.channel;
+
+import java.util.Arrays;
+
+/**
+ * The ordered fields of a request or response, which is serialized or signed without
+ * re-parsing any rendered content.
+ * <p>
+ * Fields keep the order they were added in, {@link #sorted()} gives the indexes in ASCII order
+ * of names for canonicalization.
+ */
+public final class FieldSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int size;
+
+    public FieldSet add(String name, String value) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size << 1);
+            values = Arrays.copyOf(values, size << 1);
+        }
+        names[size] = name;
+        values[size] = value;
+        size++;
+        return this;
+    }
+
+    /**
+     * Replaces the value of the first field with the name, or adds it if absent.
+     */
+    public FieldSet set(String name, String value) {
+        int index = indexOf(name);
+        if (index < 0) {
+            return add(name, value);
+        }
+        values[index] = value;
+        return this;
+    }
+
+    public String get(String name) {
+        int index = indexOf(name);
+        return index < 0 ? null : values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    public String value(int index) {
+        return values[index];
+    }
+
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Returns the indexes of fields sorted by the ASCII order of names.
+     */
+    public int[] sorted() {
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = i;
+            while (j > 0 && names[indexes[j - 1]].compareTo(names[i]) > 0) {
+                indexes[j] = indexes[j - 1];
+                j--;
+            }
+            indexes[j] = i;
+        }
+        return indexes;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,5 +1,6 @@
 package io.jyasonx.jsxpay.channel;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 public interface Processor {
@@ -8,6 +9,8 @@ public interface Processor {
 
     <T extends Response> T execute(Request request);
 
+    <T extends Response> CompletableFuture<T> executeAsync(Request request);
+
     <T extends Response> T handle(String notification, Request request);
 
     String from(Request request);
@@ -0,0 +1,83 @@
+package io.jyasonx.jsxpay.channel;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * A per-thread reusable buffer for reading responses with a hard size cap, so that the bytes of
+ * a response are copied only once no matter how many times they are decoded.
+ * <p>
+ * The content of the buffer is only valid until the next read on the same thread.
+ */
+public final class ReadBuffer {
+
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+    private static final int RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<ReadBuffer> BUFFERS = ThreadLocal.withInitial(ReadBuffer::new);
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    private ReadBuffer() {
+    }
+
+    /**
+     * Reads the input stream to the end into the buffer of current thread and closes it.
+     *
+     * @param input   the input stream
+     * @param maxSize the max bytes allowed to be read
+     * @return the buffer of current thread
+     * @throws IOException         if failed to read the input stream
+     * @throws ThirdpartyException if the input stream exceeds the max size
+     */
+    public static ReadBuffer read(InputStream input, int maxSize) throws IOException {
+        ReadBuffer buffer = BUFFERS.get();
+        buffer.fill(input, maxSize);
+        return buffer;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public InputStream asInputStream() {
+        return new ByteArrayInputStream(bytes, 0, length);
+    }
+
+    public String toString(String encoding) throws UnsupportedEncodingException {
+        return new String(bytes, 0, length, encoding);
+    }
+
+    private void fill(InputStream input, int maxSize) throws IOException {
+        if (bytes.length > RETAINED_CAPACITY) {
+            bytes = new byte[INITIAL_CAPACITY];
+        }
+        length = 0;
+        try (InputStream in = input) {
+            int limit = Math.min(bytes.length, maxSize);
+            int read;
+            while ((read = in.read(bytes, length, limit - length)) != -1) {
+                length += read;
+                if (length < limit) {
+                    continue;
+                }
+                if (limit == maxSize) {
+                    if (in.read() == -1) {
+                        return;
+                    }
+                    throw new ThirdpartyException("Response exceeds the size limit of " + maxSize + " bytes");
+                }
+                bytes = Arrays.copyOf(bytes, Math.min(bytes.length << 1, maxSize));
+                limit = bytes.length;
+            }
+        }
+    }
+}
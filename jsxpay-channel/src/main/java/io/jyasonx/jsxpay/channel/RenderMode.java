@@ -0,0 +1,15 @@
+package io.jyasonx.jsxpay.channel;
+
+public enum RenderMode {
+    /**
+     * Renders the request with the FreeMarker template of the channel.
+     */
+    TEMPLATE,
+
+    /**
+     * Writes the request with the compiled writer of the channel, falls back to the template if
+     * no writer was registered for the request type.
+     */
+    COMPILED,
+    ;
+}
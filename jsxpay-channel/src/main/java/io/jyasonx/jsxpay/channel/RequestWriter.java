@@ -0,0 +1,13 @@
+package io.jyasonx.jsxpay.channel;
+
+/**
+ * Writes a request field by field in document order, once serialized by the converter the
+ * output must be exactly the same as the template of the request type.
+ *
+ * @param <R> the type of request
+ */
+@FunctionalInterface
+public interface RequestWriter<R extends Request> {
+
+    void write(R request, FieldSet fields);
+}
@@ -0,0 +1,20 @@
+package io.jyasonx.jsxpay.channel;
+
+import java.io.InputStream;
+
+/**
+ * Decodes the raw response of a channel into its mapper object directly from the input stream.
+ *
+ * @param <T> the type of mapper object
+ */
+public interface ResponseDecoder<T> {
+
+    T decode(InputStream response, Request request);
+
+    /**
+     * Decodes the response and verifies its signature with the cryptor in the same pass.
+     *
+     * @throws ThirdpartyException if the signature of response is invalid
+     */
+    T decode(InputStream response, Request request, Cryptor cryptor);
+}
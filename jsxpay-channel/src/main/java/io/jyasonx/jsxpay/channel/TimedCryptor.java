@@ -0,0 +1,62 @@
+package io.jyasonx.jsxpay.channel;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.jyasonx.jsxpay.channel.ChannelMetrics.PHASE_SIGN;
+import static io.jyasonx.jsxpay.channel.ChannelMetrics.PHASE_VERIFY;
+
+/**
+ * Decorates a {@link Cryptor} to time signing and verification as phases of the request.
+ */
+public class TimedCryptor implements Cryptor {
+
+    private final Cryptor cryptor;
+
+    public TimedCryptor(Cryptor cryptor) {
+        this.cryptor = cryptor;
+    }
+
+    @Override
+    public String sign(String content, Request request) {
+        long startTime = System.nanoTime();
+        try {
+            return cryptor.sign(content, request);
+        } finally {
+            record(request, PHASE_SIGN, startTime);
+        }
+    }
+
+    @Override
+    public void sign(FieldSet fields, Request request) {
+        long startTime = System.nanoTime();
+        try {
+            cryptor.sign(fields, request);
+        } finally {
+            record(request, PHASE_SIGN, startTime);
+        }
+    }
+
+    @Override
+    public void verify(String content, Request request) {
+        long startTime = System.nanoTime();
+        try {
+            cryptor.verify(content, request);
+        } finally {
+            record(request, PHASE_VERIFY, startTime);
+        }
+    }
+
+    @Override
+    public void verify(FieldSet fields, Request request) {
+        long startTime = System.nanoTime();
+        try {
+            cryptor.verify(fields, request);
+        } finally {
+            record(request, PHASE_VERIFY, startTime);
+        }
+    }
+
+    private static void record(Request request, String phase, long startTime) {
+        ChannelMetrics.phase(request, phase).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,151 @@
+package io.jyasonx.jsxpay.channel;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A pooled growable buffer which the content of request is encoded into directly, and handed to
+ * the HTTP client as the entity without being copied again.
+ * <p>
+ * Unlike {@link ReadBuffer}, a buffer is not bound to a thread since the entity of an asynchronous
+ * request is written by the I/O dispatcher, so it must be released explicitly once the exchange
+ * is completed and must not be touched after that. Releasing a buffer more than once has no
+ * effect.
+ */
+public final class WriteBuffer {
+
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+    private static final int RETAINED_CAPACITY = 64 * 1024;
+    private static final int POOL_SIZE = 64;
+
+    private static final Queue<WriteBuffer> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int length;
+    private CharsetEncoder encoder;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private WriteBuffer() {
+    }
+
+    /**
+     * Takes an empty buffer from the pool, or creates one if the pool is drained.
+     */
+    public static WriteBuffer acquire() {
+        WriteBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            return new WriteBuffer();
+        }
+        buffer.length = 0;
+        buffer.released.set(false);
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer to the pool, the oversized buffer is left to the garbage collector.
+     */
+    public void release() {
+        if (released.compareAndSet(false, true) && bytes.length <= RETAINED_CAPACITY) {
+            POOL.offer(this);
+        }
+    }
+
+    /**
+     * Encodes the characters at the end of buffer, malformed and unmappable characters are
+     * replaced the same way as {@link String#getBytes(Charset)} does.
+     */
+    public WriteBuffer append(CharSequence content, Charset charset) {
+        CharsetEncoder encoder = encoder(charset);
+        CharBuffer input = CharBuffer.wrap(content);
+        ensureCapacity(length + (int) Math.ceil(content.length() * encoder.averageBytesPerChar()));
+
+        boolean flushing = false;
+        while (true) {
+            ByteBuffer output = ByteBuffer.wrap(bytes, length, bytes.length - length);
+            CoderResult result = flushing ? encoder.flush(output) : encoder.encode(input, output, true);
+            length = output.position();
+            if (result.isOverflow()) {
+                ensureCapacity(bytes.length << 1);
+            } else if (flushing) {
+                return this;
+            } else {
+                flushing = true;
+            }
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public String toString(Charset charset) {
+        return new String(bytes, 0, length, charset);
+    }
+
+    /**
+     * Wraps the content of buffer as a repeatable entity without copying it.
+     */
+    public HttpEntity asEntity() {
+        return new AbstractHttpEntity() {
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            public long getContentLength() {
+                return length;
+            }
+
+            @Override
+            public InputStream getContent() {
+                return new ByteArrayInputStream(bytes, 0, length);
+            }
+
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                output.write(bytes, 0, length);
+                output.flush();
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return false;
+            }
+        };
+    }
+
+    private CharsetEncoder encoder(Charset charset) {
+        if (encoder == null || !encoder.charset().equals(charset)) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        return encoder.reset();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package io.jyasonx.jsxpay.channel.adapter;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.FieldSet;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.RequestWriter;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.adapter.AdapterDefinition.FieldDefinition;
+import io.jyasonx.jsxpay.channel.adapter.AdapterDefinition.ResponseDefinition;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionResponse;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import io.jyasonx.jsxpay.util.IdUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Compiles the field definitions into closures once, so that a request is written and a
+ * response is mapped without looking up the definition again.
+ */
+final class AdapterCompiler {
+
+    private static final String SCOPE_CONFIG = "config";
+    private static final String SCOPE_REQUEST = "request";
+    private static final String SCOPE_TRANSACTION = "transaction";
+    private static final String SOURCE_NONCE = "nonce";
+
+    private static final String FORMAT_YUAN = "YUAN";
+    private static final String FORMAT_FEN = "FEN";
+    private static final String FORMAT_JSON = "JSON";
+    private static final String DEFAULT_TIME_FORMAT = "yyyyMMddHHmmss";
+
+    private static final String TARGET_AMOUNT = "amount";
+    private static final String TARGET_COMPLETED_TIME = "completedTime";
+    private static final String TARGET_CODE = "code";
+    private static final String TARGET_MESSAGE = "message";
+
+    private static final Map<String, Function<Config, String>> CONFIG_SOURCES
+            = ImmutableMap.<String, Function<Config, String>>builder()
+            .put("channelNo", Config::getChannelNo)
+            .put("appId", Config::getAppId)
+            .put("merchantNo", Config::getMerchantNo)
+            .put("username", Config::getUsername)
+            .put("callbackUrl", Config::getCallbackUrl)
+            .put("returnUrl", Config::getReturnUrl)
+            .put("encoding", Config::getEncoding)
+            .put("signatureAlgorithm", Config::getSignatureAlgorithm)
+            .build();
+
+    private static final Map<String, Function<Transaction, Object>> TRANSACTION_SOURCES
+            = ImmutableMap.<String, Function<Transaction, Object>>builder()
+            .put("channelSerialNo", Transaction::getChannelSerialNo)
+            .put("thirdpartySerialNo", Transaction::getThirdpartySerialNo)
+            .put("thirdpartyPrepayNo", Transaction::getThirdpartyPrepayNo)
+            .put("description", Transaction::getDescription)
+            .put("amount", Transaction::getAmount)
+            .put("expireTime", Transaction::getExpireTime)
+            .build();
+
+    private static final Map<String, Class<?>> TRANSACTION_SOURCE_TYPES = ImmutableMap.of(
+            "amount", BigDecimal.class,
+            "expireTime", LocalDateTime.class);
+
+    private static final Map<String, BiConsumer<Transaction, String>> TRANSACTION_TARGETS
+            = ImmutableMap.<String, BiConsumer<Transaction, String>>builder()
+            .put("channelSerialNo", Transaction::setChannelSerialNo)
+            .put("thirdpartySerialNo", Transaction::setThirdpartySerialNo)
+            .put("thirdpartyPrepayNo", Transaction::setThirdpartyPrepayNo)
+            .put("codeUrl", Transaction::setCodeUrl)
+            .put(TARGET_CODE, Transaction::setCode)
+            .put(TARGET_MESSAGE, Transaction::setMessage)
+            .build();
+
+    private AdapterCompiler() {
+    }
+
+    /**
+     * Compiles the writer of a request type, the fields are written in the order of definition.
+     *
+     * @throws ThirdpartyException if any field refers to an unknown source or format
+     */
+    static RequestWriter<Request> writer(RequestType type, List<FieldDefinition> definitions) {
+        List<FieldWriter> writers = fields(type, definitions);
+        return (request, fields) -> {
+            for (FieldWriter writer : writers) {
+                String value = writer.value(request);
+                if (value != null) {
+                    fields.add(writer.name, value);
+                }
+            }
+        };
+    }
+
+    /**
+     * Compiles the mapping of a response type from the decoded fields.
+     *
+     * @throws ThirdpartyException if any field refers to an unknown transaction property
+     */
+    static Function<FieldSet, Response> reader(RequestType type, ResponseDefinition definition) {
+        Function<Transaction, Response> factory = response(type);
+        List<String> names = new ArrayList<>();
+        List<BiConsumer<Transaction, String>> setters = new ArrayList<>();
+        definition.getFields().forEach((property, name) -> {
+            names.add(name);
+            setters.add(target(property, definition));
+        });
+        String[] fieldNames = names.toArray(new String[0]);
+        @SuppressWarnings("unchecked")
+        BiConsumer<Transaction, String>[] fieldSetters = setters.toArray(new BiConsumer[0]);
+        String codeName = definition.getFields().get(TARGET_CODE);
+        String responseCodeName = definition.getCode();
+        String responseMessageName = definition.getMessage();
+        String statusName = definition.getStatus();
+        Map<String, TransactionStatus> statuses = new HashMap<>(definition.getStatuses());
+        Set<String> successCodes = new HashSet<>(definition.getSuccessCodes());
+        TransactionStatus successStatus = definition.getSuccessStatus();
+        TransactionStatus failureStatus = definition.getFailureStatus();
+
+        return fields -> {
+            String code = responseCodeName == null ? null : fields.get(responseCodeName);
+            String message = responseMessageName == null ? null : fields.get(responseMessageName);
+            Transaction transaction = Transaction.builder().build();
+            for (int i = 0; i < fieldNames.length; i++) {
+                String value = fields.get(fieldNames[i]);
+                if (!Strings.isNullOrEmpty(value)) {
+                    fieldSetters[i].accept(transaction, value);
+                }
+            }
+            if (transaction.getCode() == null) {
+                transaction.setCode(code);
+            }
+            if (transaction.getMessage() == null) {
+                transaction.setMessage(message);
+            }
+
+            // the fields of an unsuccessful response might be unsigned, so its status is never mapped
+            boolean successful = successCodes.contains(code);
+            TransactionStatus status = null;
+            if (successful || responseCodeName == null) {
+                status = statusName == null ? null : statuses.get(fields.get(statusName));
+                if (status == null && codeName != null) {
+                    status = statuses.get(fields.get(codeName));
+                }
+            }
+            if (status == null) {
+                status = successful ? successStatus : failureStatus;
+            }
+            transaction.setStatus(status);
+
+            Response response = factory.apply(transaction);
+            response.setCode(code);
+            response.setMessage(message);
+            return response;
+        };
+    }
+
+    private static List<FieldWriter> fields(RequestType type, List<FieldDefinition> definitions) {
+        List<FieldWriter> writers = new ArrayList<>(definitions.size());
+        for (FieldDefinition definition : definitions) {
+            if (Strings.isNullOrEmpty(definition.getName())) {
+                throw new ThirdpartyException("Missing the name of field in adapter definition");
+            }
+            writers.add(new FieldWriter(definition.getName(), value(type, definition), definition.isOptional(),
+                    !definition.getFields().isEmpty()));
+        }
+        return writers;
+    }
+
+    private static Function<Request, String> value(RequestType type, FieldDefinition definition) {
+        if (!definition.getFields().isEmpty()) {
+            if (definition.getFormat() != null && !FORMAT_JSON.equals(definition.getFormat())) {
+                throw new ThirdpartyException("Nested fields of '" + definition.getName() + "' must be of JSON");
+            }
+            List<FieldWriter> writers = fields(type, definition.getFields());
+            return request -> json(writers, request);
+        }
+        if (definition.getValue() != null) {
+            String value = definition.getValue();
+            return request -> value;
+        }
+        String source = definition.getSource();
+        if (source == null) {
+            throw new ThirdpartyException("Missing the value or source of field '" + definition.getName() + "'");
+        }
+        if (SOURCE_NONCE.equals(source)) {
+            return request -> IdUtils.uuidWithoutDash();
+        }
+
+        int dot = source.indexOf('.');
+        String scope = dot < 0 ? source : source.substring(0, dot);
+        String property = dot < 0 ? null : source.substring(dot + 1);
+        if (SCOPE_CONFIG.equals(scope) && CONFIG_SOURCES.containsKey(property)) {
+            Function<Config, String> getter = CONFIG_SOURCES.get(property);
+            return request -> getter.apply(request.getConfig());
+        }
+        if (SCOPE_REQUEST.equals(scope) && "createdTime".equals(property)) {
+            Function<Object, String> formatter = formatter(definition, LocalDateTime.class);
+            return request -> formatter.apply(request.getCreatedTime());
+        }
+        if (SCOPE_TRANSACTION.equals(scope) && TRANSACTION_SOURCES.containsKey(property)) {
+            Function<Request, Transaction> transaction = transaction(type);
+            Function<Transaction, Object> getter = TRANSACTION_SOURCES.get(property);
+            Function<Object, String> formatter = formatter(definition,
+                    TRANSACTION_SOURCE_TYPES.getOrDefault(property, String.class));
+            return request -> formatter.apply(getter.apply(transaction.apply(request)));
+        }
+        throw new ThirdpartyException("Unknown source '" + source + "' of field '" + definition.getName() + "'");
+    }
+
+    private static Function<Object, String> formatter(FieldDefinition definition, Class<?> type) {
+        String format = definition.getFormat();
+        if (type == LocalDateTime.class) {
+            DateTimeFormatter formatter = pattern(format == null ? DEFAULT_TIME_FORMAT : format);
+            return value -> value == null ? null : formatter.format((LocalDateTime) value);
+        }
+        if (type == BigDecimal.class) {
+            boolean fen = amountInFen(format == null ? FORMAT_YUAN : format);
+            return value -> value == null ? null : amount((BigDecimal) value, fen);
+        }
+        if (format != null) {
+            throw new ThirdpartyException("Format '" + format + "' is not applicable to field '" + definition.getName() + "'");
+        }
+        return value -> (String) value;
+    }
+
+    private static Function<Request, Transaction> transaction(RequestType type) {
+        switch (type) {
+            case TRANSACTION:
+                return request -> ((TransactionRequest) request).getTransaction();
+            case TRANSACTION_QUERY:
+                return request -> ((TransactionQueryRequest) request).getTransactions().get(0);
+            default:
+                throw new ThirdpartyException("No transaction is given by request type " + type);
+        }
+    }
+
+    private static Function<Transaction, Response> response(RequestType type) {
+        switch (type) {
+            case TRANSACTION:
+                return transaction -> {
+                    TransactionResponse response = new TransactionResponse();
+                    response.setTransaction(transaction);
+                    return response;
+                };
+            case TRANSACTION_QUERY:
+                return transaction -> {
+                    TransactionQueryResponse response = new TransactionQueryResponse();
+                    response.getTransactions().add(transaction);
+                    return response;
+                };
+            case TRANSACTION_NOTIFICATION:
+                return transaction -> {
+                    TransactionNotificationResponse response = new TransactionNotificationResponse();
+                    response.setTransaction(transaction);
+                    return response;
+                };
+            default:
+                throw new ThirdpartyException("Unsupported request type " + type);
+        }
+    }
+
+    private static BiConsumer<Transaction, String> target(String property, ResponseDefinition definition) {
+        if (TARGET_AMOUNT.equals(property)) {
+            boolean fen = amountInFen(definition.getAmountFormat());
+            return (transaction, value) -> transaction.setAmount(
+                    fen ? new BigDecimal(value).movePointLeft(2) : new BigDecimal(value));
+        }
+        if (TARGET_COMPLETED_TIME.equals(property)) {
+            DateTimeFormatter formatter = pattern(definition.getTimeFormat());
+            return (transaction, value) -> {
+                LocalDateTime completedTime = LocalDateTime.parse(value, formatter);
+                transaction.setCompletedTime(completedTime);
+                transaction.setSettlementDate(completedTime.toLocalDate());
+            };
+        }
+        BiConsumer<Transaction, String> setter = TRANSACTION_TARGETS.get(property);
+        if (setter == null) {
+            throw new ThirdpartyException("Unknown transaction property '" + property + "' in adapter definition");
+        }
+        return setter;
+    }
+
+    private static boolean amountInFen(String format) {
+        if (FORMAT_FEN.equals(format)) {
+            return true;
+        }
+        if (FORMAT_YUAN.equals(format)) {
+            return false;
+        }
+        throw new ThirdpartyException("Unknown amount format '" + format + "'");
+    }
+
+    private static DateTimeFormatter pattern(String pattern) {
+        try {
+            return DateTimeFormatter.ofPattern(pattern);
+        } catch (IllegalArgumentException ex) {
+            throw new ThirdpartyException("Invalid time format '" + pattern + "'", ex);
+        }
+    }
+
+    /**
+     * Same as the fee of WeChat when in fen, or of two decimal places when in yuan.
+     */
+    private static String amount(BigDecimal amount, boolean fen) {
+        return fen
+                ? amount.movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).toPlainString()
+                : amount.setScale(2, RoundingMode.HALF_EVEN).toPlainString();
+    }
+
+    private static String json(List<FieldWriter> writers, Request request) {
+        StringBuilder buffer = new StringBuilder(128).append('{');
+        for (FieldWriter writer : writers) {
+            String value = writer.value(request);
+            if (value == null) {
+                continue;
+            }
+            if (buffer.length() > 1) {
+                buffer.append(',');
+            }
+            escape(writer.name, buffer.append('"')).append("\":");
+            if (writer.nested) {
+                buffer.append(value);
+            } else {
+                escape(value, buffer.append('"')).append('"');
+            }
+        }
+        return buffer.append('}').toString();
+    }
+
+    static StringBuilder escape(String value, StringBuilder buffer) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        buffer.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        buffer.append(c);
+                    }
+            }
+        }
+        return buffer;
+    }
+
+    private static final class FieldWriter {
+        private final String name;
+        private final Function<Request, String> value;
+        private final boolean optional;
+        private final boolean nested;
+
+        private FieldWriter(String name, Function<Request, String> value, boolean optional, boolean nested) {
+            this.name = name;
+            this.value = value;
+            this.optional = optional;
+            this.nested = nested;
+        }
+
+        /**
+         * Returns null only if the field is optional and absent.
+         */
+        private String value(Request request) {
+            String result = value.apply(request);
+            if (result == null && !optional) {
+                throw new ThirdpartyException("Missing the value of element '" + name + "'");
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package io.jyasonx.jsxpay.channel.adapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The declarative definition of a channel adapter, which is compiled into the writers, decoders
+ * and signer of the channel once at startup, see {@link DeclarativeProcessor}.
+ * <p>
+ * The definition of channel is kept next to its templates, as '/templates/alipay/ALIPAY_Adapter.yml'.
+ */
+@Slf4j
+@Getter
+@Setter
+@ToString
+public class AdapterDefinition {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+    private static final String RESOURCE_PATTERN = "/templates/%s/%s_Adapter.yml";
+
+    private ChannelType channelType;
+
+    // wire format of requests, responses and notifications
+    private Format format = Format.FORM;
+    private Format responseFormat = Format.JSON;
+    private Format notificationFormat = Format.FORM;
+    // root element of the XML requests
+    private String root = "xml";
+
+    // the path of each request type relative to the base URL
+    private Map<RequestType, String> endpoints = new EnumMap<>(RequestType.class);
+    // the reply of a handled notification
+    private String acknowledgement;
+
+    private SignatureDefinition signature = new SignatureDefinition();
+    private Map<RequestType, List<FieldDefinition>> requests = new EnumMap<>(RequestType.class);
+    private Map<RequestType, ResponseDefinition> responses = new EnumMap<>(RequestType.class);
+
+    public static AdapterDefinition load(ChannelType channelType) {
+        return load(String.format(RESOURCE_PATTERN, channelType.name().toLowerCase(Locale.ROOT), channelType.name()));
+    }
+
+    public static AdapterDefinition load(String resource) {
+        try (InputStream input = AdapterDefinition.class.getResourceAsStream(resource)) {
+            if (input == null) {
+                throw new ThirdpartyException("Adapter definition '" + resource + "' was not found");
+            }
+            return MAPPER.readValue(input, AdapterDefinition.class);
+        } catch (IOException ex) {
+            log.error("Failed to load the adapter definition '{}'!", resource, ex);
+            throw new ThirdpartyException("Error loading the adapter definition", ex);
+        }
+    }
+
+    public enum Format {
+        FORM,
+        JSON,
+        XML,
+        ;
+    }
+
+    public enum SignatureEncoding {
+        HEX,
+        HEX_UPPER,
+        BASE64,
+        ;
+    }
+
+    /**
+     * The signature over the 'name=value' pairs of non-empty fields joined by '&' in ASCII order
+     * of names. A digest algorithm is keyed by the secret key appended after the key prefix, an
+     * algorithm like 'SHA256withRSA' signs with the private key and verifies with the public key.
+     */
+    @Getter
+    @Setter
+    @ToString
+    public static class SignatureDefinition {
+        private String field = "sign";
+        private String algorithm;
+        private SignatureEncoding encoding = SignatureEncoding.HEX_UPPER;
+        private String keyPrefix = "&key=";
+        // fields left out of the signed pairs of requests and of responses
+        private List<String> excluded = new ArrayList<>();
+        private List<String> verifyExcluded = new ArrayList<>();
+    }
+
+    /**
+     * A request field either of a constant value, or of a source such as 'config.appId',
+     * 'request.createdTime' or 'transaction.amount'. Amounts are formatted as 'YUAN' or 'FEN',
+     * times by the pattern, and the nested fields are written as a JSON object.
+     */
+    @Getter
+    @Setter
+    @ToString
+    public static class FieldDefinition {
+        private String name;
+        private String value;
+        private String source;
+        private String format;
+        private boolean optional;
+        private List<FieldDefinition> fields = new ArrayList<>();
+    }
+
+    /**
+     * The mapping of a response, the names of nested fields are joined by '.'. With a root, only
+     * the fields of the JSON root object are mapped, and its raw text is what was signed.
+     * <p>
+     * The status is looked up by the value of status field then by the transaction code, and
+     * falls back to the success or failure status by the code of response. A response whose code
+     * is not a success code is always of the failure status, whatever its status field is.
+     */
+    @Getter
+    @Setter
+    @ToString
+    public static class ResponseDefinition {
+        private String root;
+        private String code;
+        private String message;
+        private List<String> successCodes = new ArrayList<>();
+        private String status;
+        private Map<String, TransactionStatus> statuses = new HashMap<>();
+        private TransactionStatus successStatus = TransactionStatus.PROCESSING;
+        private TransactionStatus failureStatus = TransactionStatus.PROCESSING;
+        private String amountFormat = "YUAN";
+        private String timeFormat = "yyyyMMddHHmmss";
+        // transaction property to the response field, such as 'thirdpartySerialNo: trade_no'
+        private Map<String, String> fields = new HashMap<>();
+    }
+}
@@ -0,0 +1,185 @@
+package io.jyasonx.jsxpay.channel.adapter;
+
+import io.jyasonx.jsxpay.channel.AbstractConverter;
+import io.jyasonx.jsxpay.channel.Cryptor;
+import io.jyasonx.jsxpay.channel.FieldSet;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.RequestWriter;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.adapter.AdapterDefinition.ResponseDefinition;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The converter compiled from an {@link AdapterDefinition}, requests are always written by the
+ * compiled writers whatever the render mode is, and responses are decoded into fields, verified
+ * and mapped in a single pass.
+ */
+@Slf4j
+public class DeclarativeConverter extends AbstractConverter {
+
+    private static final ThreadLocal<FieldSet> FIELDS = ThreadLocal.withInitial(FieldSet::new);
+
+    private final AdapterDefinition definition;
+    private final FieldDecoder responseDecoder;
+    private final FieldDecoder notificationDecoder;
+    private final Map<RequestType, Function<FieldSet, Response>> readers = new EnumMap<>(RequestType.class);
+    private final Map<RequestType, String> roots = new EnumMap<>(RequestType.class);
+
+    /**
+     * @throws ThirdpartyException if the definition refers to anything unknown
+     */
+    public DeclarativeConverter(AdapterDefinition definition) {
+        this.definition = definition;
+        this.responseDecoder = FieldDecoder.of(definition.getResponseFormat());
+        this.notificationDecoder = FieldDecoder.of(definition.getNotificationFormat());
+        definition.getRequests().forEach((type, fields) -> register(type, AdapterCompiler.writer(type, fields)));
+        for (Map.Entry<RequestType, ResponseDefinition> entry : definition.getResponses().entrySet()) {
+            readers.put(entry.getKey(), AdapterCompiler.reader(entry.getKey(), entry.getValue()));
+            if (entry.getValue().getRoot() != null) {
+                roots.put(entry.getKey(), entry.getValue().getRoot());
+            }
+        }
+    }
+
+    public AdapterDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * There is no template to fall back to.
+     */
+    @Override
+    protected boolean isCompiled(RequestWriter<? extends Request> writer, Request request) {
+        if (writer == null) {
+            throw new ThirdpartyException("Request type " + request.getType()
+                    + " is not supported by " + definition.getChannelType());
+        }
+        return true;
+    }
+
+    @Override
+    protected void serialize(FieldSet fields, Request request, StringBuilder buffer) {
+        switch (definition.getFormat()) {
+            case FORM:
+                form(fields, request.getConfig().getEncoding(), buffer);
+                break;
+            case JSON:
+                buffer.append('{');
+                for (int i = 0; i < fields.size(); i++) {
+                    if (i > 0) {
+                        buffer.append(',');
+                    }
+                    AdapterCompiler.escape(fields.name(i), buffer.append('"')).append("\":");
+                    AdapterCompiler.escape(fields.value(i), buffer.append('"')).append('"');
+                }
+                buffer.append('}');
+                break;
+            case XML:
+                buffer.append("<?xml version=\"1.0\" encoding=\"").append(request.getConfig().getEncoding())
+                        .append("\"?><").append(definition.getRoot()).append('>');
+                for (int i = 0; i < fields.size(); i++) {
+                    String name = fields.name(i);
+                    xml(fields.value(i), buffer.append('<').append(name).append('>'))
+                            .append("</").append(name).append('>');
+                }
+                buffer.append("</").append(definition.getRoot()).append('>');
+                break;
+            default:
+                throw new ThirdpartyException("Unsupported format " + definition.getFormat());
+        }
+    }
+
+    @Override
+    public Response readFrom(String response, Request request) {
+        Charset charset = Charset.forName(request.getConfig().getEncoding());
+        return readFrom(new ByteArrayInputStream(response.getBytes(charset)), request, null);
+    }
+
+    @Override
+    public Response readFrom(InputStream response, Request request) {
+        return readFrom(response, request, null);
+    }
+
+    @Override
+    public Response readFrom(InputStream response, Request request, Cryptor cryptor) {
+        Function<FieldSet, Response> reader = readers.get(request.getType());
+        if (reader == null) {
+            throw new ThirdpartyException("Request type " + request.getType()
+                    + " is not supported by " + definition.getChannelType());
+        }
+        FieldSet fields = FIELDS.get();
+        fields.clear();
+        try {
+            FieldDecoder decoder = request.getType() == RequestType.TRANSACTION_NOTIFICATION
+                    ? notificationDecoder : responseDecoder;
+            decoder.decode(response, Charset.forName(request.getConfig().getEncoding()),
+                    roots.get(request.getType()), fields);
+            if (cryptor != null) {
+                cryptor.verify(fields, request);
+            }
+            return reader.apply(fields);
+        } finally {
+            fields.clear();
+        }
+    }
+
+    private static void form(FieldSet fields, String encoding, StringBuilder buffer) {
+        try {
+            for (int i = 0; i < fields.size(); i++) {
+                if (i > 0) {
+                    buffer.append('&');
+                }
+                buffer.append(URLEncoder.encode(fields.name(i), encoding)).append('=')
+                        .append(URLEncoder.encode(fields.value(i), encoding));
+            }
+        } catch (UnsupportedEncodingException ex) {
+            log.error("Failed to encode the form due to an exception!", ex);
+            throw new ThirdpartyException("Error encoding the request", ex);
+        }
+    }
+
+    private static StringBuilder xml(String value, StringBuilder buffer) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    buffer.append("&lt;");
+                    break;
+                case '>':
+                    buffer.append("&gt;");
+                    break;
+                case '&':
+                    buffer.append("&amp;");
+                    break;
+                default:
+                    buffer.append(c);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * The content type of requests.
+     */
+    String contentType(String encoding) {
+        switch (definition.getFormat()) {
+            case FORM:
+                return "application/x-www-form-urlencoded; charset=" + encoding;
+            case JSON:
+                return "application/json; charset=" + encoding;
+            default:
+                return "text/xml; charset=" + encoding;
+        }
+    }
+}
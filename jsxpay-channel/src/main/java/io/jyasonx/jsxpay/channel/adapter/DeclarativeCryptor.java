@@ -0,0 +1,225 @@
+package io.jyasonx.jsxpay.channel.adapter;
+
+import com.google.common.base.Strings;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Cryptor;
+import io.jyasonx.jsxpay.channel.FieldSet;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.adapter.AdapterDefinition.ResponseDefinition;
+import io.jyasonx.jsxpay.channel.adapter.AdapterDefinition.SignatureDefinition;
+import io.jyasonx.jsxpay.channel.adapter.AdapterDefinition.SignatureEncoding;
+import io.jyasonx.jsxpay.util.SecurityUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static io.jyasonx.jsxpay.util.StringUtils.AMPERSAND;
+import static io.jyasonx.jsxpay.util.StringUtils.EQUAL_SIGN;
+
+/**
+ * Signs and verifies the fields as declared by {@link SignatureDefinition}, the algorithm is
+ * checked and the canonicalization is resolved once when constructed.
+ * <p>
+ * Rendered content is not supported, as the declarative adapters have no templates.
+ */
+@Slf4j
+public class DeclarativeCryptor implements Cryptor {
+
+    private static final String SIGNATURE_ALGORITHM_MARK = "with";
+
+    private final String field;
+    private final String algorithm;
+    private final boolean keyed;
+    private final String keyPrefix;
+    private final SignatureEncoding encoding;
+    private final Set<String> excluded;
+    private final Set<String> verifyExcluded;
+    private final Map<RequestType, Verification> verifications = new EnumMap<>(RequestType.class);
+    // parsed keys by their encoded content, so that a rotated key is parsed again
+    private final ConcurrentMap<String, PrivateKey> privateKeys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PublicKey> publicKeys = new ConcurrentHashMap<>();
+
+    public DeclarativeCryptor(AdapterDefinition definition) {
+        SignatureDefinition signature = definition.getSignature();
+        if (Strings.isNullOrEmpty(signature.getAlgorithm())) {
+            throw new ThirdpartyException("Missing the signature algorithm of " + definition.getChannelType());
+        }
+        this.field = signature.getField();
+        this.algorithm = signature.getAlgorithm();
+        this.keyed = !algorithm.toLowerCase(Locale.ROOT).contains(SIGNATURE_ALGORITHM_MARK);
+        this.keyPrefix = Strings.nullToEmpty(signature.getKeyPrefix());
+        this.encoding = signature.getEncoding();
+        this.excluded = new HashSet<>(signature.getExcluded());
+        this.excluded.add(field);
+        this.verifyExcluded = new HashSet<>(signature.getVerifyExcluded());
+        this.verifyExcluded.add(field);
+        definition.getResponses().forEach((type, response) -> verifications.put(type, new Verification(response)));
+
+        try {
+            if (keyed) {
+                SecurityUtils.getMessageDigest(algorithm);
+            } else {
+                Signature.getInstance(algorithm);
+            }
+        } catch (SecurityException | NoSuchAlgorithmException ex) {
+            throw new ThirdpartyException("Unsupported signature algorithm '" + algorithm + "'", ex);
+        }
+    }
+
+    @Override
+    public String sign(String content, Request request) {
+        throw new ThirdpartyException("Rendered content is not supported by declarative adapters");
+    }
+
+    @Override
+    public void sign(FieldSet fields, Request request) {
+        Config config = request.getConfig();
+        byte[] data = canonicalize(fields, excluded).getBytes(Charset.forName(config.getEncoding()));
+        byte[] signature = keyed
+                ? digest(data, config)
+                : SecurityUtils.sign(algorithm, privateKey(config), data);
+        fields.set(field, encode(signature));
+    }
+
+    @Override
+    public void verify(String content, Request request) {
+        throw new ThirdpartyException("Rendered content is not supported by declarative adapters");
+    }
+
+    /**
+     * Verifies the raw text of root if the response has one, or the canonical form of the fields.
+     * An unsuccessful response is let go unsigned, as channels might reject a request before
+     * signing anything. Notifications are always verified, whatever their codes are.
+     */
+    @Override
+    public void verify(FieldSet fields, Request request) {
+        Verification verification = verifications.get(request.getType());
+        String originalSign = fields.get(field);
+        if (Strings.isNullOrEmpty(originalSign)) {
+            if (request.getType() != RequestType.TRANSACTION_NOTIFICATION
+                    && verification != null && !verification.isSuccessful(fields)) {
+                return;
+            }
+            log.error("No signature was found in response of channel '{}'!", request.getConfig().getChannelNo());
+            throw new ThirdpartyException("Missing signature in response");
+        }
+
+        Config config = request.getConfig();
+        String content = verification != null && verification.root != null
+                ? fields.get(verification.root)
+                : canonicalize(fields, verifyExcluded);
+        if (content == null) {
+            throw new ThirdpartyException("Missing signed content in response");
+        }
+        byte[] data = content.getBytes(Charset.forName(config.getEncoding()));
+        boolean valid;
+        if (keyed) {
+            valid = encode(digest(data, config)).equalsIgnoreCase(originalSign);
+        } else {
+            valid = SecurityUtils.verify(algorithm, publicKey(config), data, decode(originalSign));
+        }
+        if (!valid) {
+            log.error("The invalid signature '{}' was found in response '{}'!", originalSign, content);
+            throw new ThirdpartyException("Invalid signature found in response");
+        }
+    }
+
+    /**
+     * The 'name=value' pairs of non-empty fields joined by '&' in ASCII order of names.
+     */
+    private static String canonicalize(FieldSet fields, Set<String> excluded) {
+        StringBuilder buffer = new StringBuilder(256);
+        for (int index : fields.sorted()) {
+            String name = fields.name(index);
+            String value = fields.value(index);
+            if (excluded.contains(name) || Strings.isNullOrEmpty(value)) {
+                continue;
+            }
+            if (buffer.length() > 0) {
+                buffer.append(AMPERSAND);
+            }
+            buffer.append(name).append(EQUAL_SIGN).append(value);
+        }
+        return buffer.toString();
+    }
+
+    private byte[] digest(byte[] data, Config config) {
+        MessageDigest digest = SecurityUtils.getMessageDigest(algorithm);
+        digest.update(data);
+        digest.update((keyPrefix + config.getSecretKey()).getBytes(Charset.forName(config.getEncoding())));
+        return digest.digest();
+    }
+
+    private String encode(byte[] signature) {
+        switch (encoding) {
+            case HEX:
+                return Hex.encodeHexString(signature);
+            case BASE64:
+                return Base64.encodeBase64String(signature);
+            default:
+                return Hex.encodeHexString(signature).toUpperCase(Locale.ROOT);
+        }
+    }
+
+    private byte[] decode(String signature) {
+        try {
+            return encoding == SignatureEncoding.BASE64
+                    ? Base64.decodeBase64(signature) : Hex.decodeHex(signature.toCharArray());
+        } catch (DecoderException ex) {
+            throw new ThirdpartyException("Invalid signature found in response", ex);
+        }
+    }
+
+    private PrivateKey privateKey(Config config) {
+        try {
+            return privateKeys.computeIfAbsent(config.getPrivateKey(), key ->
+                    SecurityUtils.from(config.getPrivateKeyType(), key, config.getPrivateKeyPassword()));
+        } catch (SecurityException | IllegalArgumentException | NullPointerException ex) {
+            log.error("Failed to load the private key of channel '{}'!", config.getChannelNo(), ex);
+            throw new ThirdpartyException("Error loading the private key", ex);
+        }
+    }
+
+    private PublicKey publicKey(Config config) {
+        try {
+            return publicKeys.computeIfAbsent(config.getPublicKey(), key ->
+                    SecurityUtils.from(config.getPublicKeyType(), key));
+        } catch (SecurityException | IllegalArgumentException | NullPointerException ex) {
+            log.error("Failed to load the public key of channel '{}'!", config.getChannelNo(), ex);
+            throw new ThirdpartyException("Error loading the public key", ex);
+        }
+    }
+
+    private static final class Verification {
+        private final String root;
+        private final String code;
+        private final Set<String> successCodes;
+
+        private Verification(ResponseDefinition response) {
+            this.root = response.getRoot();
+            this.code = response.getCode();
+            this.successCodes = new HashSet<>(response.getSuccessCodes());
+        }
+
+        private boolean isSuccessful(FieldSet fields) {
+            return code == null || successCodes.contains(fields.get(code));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.jyasonx.jsxpay.channel.adapter;
+
+import io.jyasonx.jsxpay.channel.AbstractHttpProcessor;
+import io.jyasonx.jsxpay.channel.ChannelHttpClientRegistry;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.archive.MessageArchive;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.warmup.WarmUpUtils;
+import io.jyasonx.jsxpay.channel.warmup.Warmable;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.ssl.SSLContexts;
+
+/**
+ * The processor of a channel declared by an {@link AdapterDefinition}, which is compiled into
+ * its converter and cryptor once when constructed, so that a new channel runs through the same
+ * pipeline as WeChat does: the compiled writers, the reused write buffers, the asynchronous
+ * clients, the single pass decoding and verification, the phase metrics and the archive.
+ * <p>
+ * The key material of the declarative channels signs the messages only, their connections are
+ * made without client certificates.
+ */
+public class DeclarativeProcessor extends AbstractHttpProcessor implements Warmable {
+
+    private final AdapterDefinition definition;
+    private final DeclarativeConverter converter;
+    // not timed, so that the synthetic requests of warm-up stay out of the metrics
+    private final DeclarativeCryptor cryptor;
+
+    public DeclarativeProcessor(HttpClient httpClient, AdapterDefinition definition) {
+        this(httpClient, definition, null);
+    }
+
+    /**
+     * @throws ThirdpartyException if the definition refers to anything unknown
+     */
+    public DeclarativeProcessor(HttpClient httpClient, AdapterDefinition definition, MessageArchive archive) {
+        this(httpClient, definition, new DeclarativeConverter(definition), new DeclarativeCryptor(definition), archive);
+    }
+
+    private DeclarativeProcessor(HttpClient httpClient, AdapterDefinition definition, DeclarativeConverter converter,
+                                 DeclarativeCryptor cryptor, MessageArchive archive) {
+        super(httpClient, converter, cryptor,
+                new ChannelHttpClientRegistry(config -> SSLContexts.createDefault()), archive);
+        this.definition = definition;
+        this.converter = converter;
+        this.cryptor = cryptor;
+    }
+
+    public AdapterDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Returns the acknowledgement of a handled notification, so that it will not be sent again.
+     */
+    @Override
+    public String from(Request request) {
+        if (definition.getAcknowledgement() == null) {
+            throw new ThirdpartyException("Notification is not expected by this processor");
+        }
+        return definition.getAcknowledgement();
+    }
+
+    /**
+     * Builds the HTTP clients, and runs synthetic requests through the compiled writers and the
+     * signing of live ones, so that the JIT compiles them and the keys are parsed before live
+     * traffic comes.
+     */
+    @Override
+    public void warmUp(Config config) {
+        getHttpClientRegistry().getHttpClient(config);
+        getHttpClientRegistry().getHttpAsyncClient(config);
+
+        for (int i = 0; i < config.getWarmUpIterations(); i++) {
+            Transaction transaction = WarmUpUtils.transaction();
+            if (definition.getRequests().containsKey(RequestType.TRANSACTION)) {
+                TransactionRequest request = new TransactionRequest();
+                request.setConfig(config);
+                request.setTransaction(transaction);
+                WarmUpUtils.write(converter, cryptor, request);
+            }
+            if (definition.getRequests().containsKey(RequestType.TRANSACTION_QUERY)) {
+                TransactionQueryRequest queryRequest = new TransactionQueryRequest();
+                queryRequest.setConfig(config);
+                queryRequest.getTransactions().add(transaction);
+                WarmUpUtils.write(converter, cryptor, queryRequest);
+            }
+        }
+    }
+
+    @Override
+    protected HttpRequestBase compose(Request request, HttpEntity entity) {
+        String endpoint = definition.getEndpoints().get(request.getType());
+        if (endpoint == null) {
+            throw new IllegalArgumentException("Request type not supported by " + definition.getChannelType());
+        }
+        HttpPost post = new HttpPost(request.getConfig().getBaseUrl() + endpoint);
+        post.setHeader("Content-Type", converter.contentType(request.getConfig().getEncoding()));
+        post.setEntity(entity);
+        return post;
+    }
+}
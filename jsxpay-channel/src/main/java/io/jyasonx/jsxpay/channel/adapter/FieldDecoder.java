@@ -0,0 +1,35 @@
+package io.jyasonx.jsxpay.channel.adapter;
+
+import io.jyasonx.jsxpay.channel.FieldSet;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.adapter.AdapterDefinition.Format;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes the raw content of a channel into flat fields in a single pass, the names of nested
+ * fields are joined by '.'.
+ */
+@FunctionalInterface
+interface FieldDecoder {
+
+    /**
+     * @param root the name of JSON root object, of which the raw text is kept as the field of
+     *             the same name, null to decode the top level fields only
+     */
+    void decode(InputStream content, Charset charset, String root, FieldSet fields);
+
+    static FieldDecoder of(Format format) {
+        switch (format) {
+            case FORM:
+                return FieldDecoders::form;
+            case JSON:
+                return FieldDecoders::json;
+            case XML:
+                return FieldDecoders::xml;
+            default:
+                throw new ThirdpartyException("Unsupported format " + format);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.jyasonx.jsxpay.channel.adapter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.jyasonx.jsxpay.channel.FieldSet;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The {@link FieldDecoder} of each format.
+ */
+@Slf4j
+final class FieldDecoders {
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final char SEPARATOR = '.';
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    private FieldDecoders() {
+    }
+
+    static void form(InputStream content, Charset charset, String root, FieldSet fields) {
+        String text = read(content, charset);
+        try {
+            int start = 0;
+            while (start < text.length()) {
+                int end = text.indexOf('&', start);
+                if (end < 0) {
+                    end = text.length();
+                }
+                int equal = text.indexOf('=', start);
+                if (equal > start && equal < end) {
+                    fields.add(URLDecoder.decode(text.substring(start, equal), charset.name()),
+                            URLDecoder.decode(text.substring(equal + 1, end), charset.name()));
+                }
+                start = end + 1;
+            }
+        } catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+            log.error("Failed to decode the form due to an exception!", ex);
+            throw new ThirdpartyException("Error decoding the response", ex);
+        }
+    }
+
+    /**
+     * The raw text of root object is sliced by the offsets of its tokens, which is exactly
+     * what the channel signed, escapes included.
+     */
+    static void json(InputStream content, Charset charset, String root, FieldSet fields) {
+        String text = read(content, charset);
+        try (JsonParser parser = JSON_FACTORY.createParser(text)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ThirdpartyException("Error decoding the response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT && name.equals(root)) {
+                    int start = (int) parser.getTokenLocation().getCharOffset();
+                    object(parser, fields);
+                    int end = (int) parser.getTokenLocation().getCharOffset() + 1;
+                    fields.add(name, text.substring(start, end));
+                } else if (token.isScalarValue()) {
+                    fields.add(name, parser.getValueAsString());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Failed to decode the response due to an exception!", ex);
+            throw new ThirdpartyException("Error decoding the response", ex);
+        }
+    }
+
+    private static void object(JsonParser parser, FieldSet fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken().isScalarValue()) {
+                fields.add(name, parser.getValueAsString());
+            } else {
+                // nested objects and arrays are neither mapped nor signed separately
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Same as {@link io.jyasonx.jsxpay.channel.wechat.StaxResponseDecoder}, but the leaves
+     * nested deeper are kept by their paths under the root element.
+     */
+    static void xml(InputStream content, Charset charset, String root, FieldSet fields) {
+        XMLStreamReader reader = null;
+        try {
+            reader = INPUT_FACTORY.createXMLStreamReader(content, charset.name());
+            StringBuilder path = new StringBuilder();
+            int[] lengths = new int[16];
+            StringBuilder text = new StringBuilder();
+            boolean leaf = false;
+            int depth = 0;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (++depth > 1) {
+                            if (depth - 1 == lengths.length) {
+                                lengths = Arrays.copyOf(lengths, lengths.length << 1);
+                            }
+                            lengths[depth - 1] = path.length();
+                            if (path.length() > 0) {
+                                path.append(SEPARATOR);
+                            }
+                            path.append(reader.getLocalName());
+                        }
+                        text.setLength(0);
+                        leaf = true;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (leaf) {
+                            text.append(reader.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth-- > 1) {
+                            if (leaf) {
+                                fields.add(path.toString(), text.toString());
+                            }
+                            path.setLength(lengths[depth]);
+                        }
+                        leaf = false;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (XMLStreamException ex) {
+            log.error("Failed to decode the response due to an exception!", ex);
+            throw new ThirdpartyException("Error decoding the response", ex);
+        } finally {
+            close(reader);
+        }
+    }
+
+    private static String read(InputStream content, Charset charset) {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        try (Reader reader = new InputStreamReader(content, charset)) {
+            int count;
+            while ((count = reader.read(buffer)) >= 0) {
+                text.append(buffer, 0, count);
+            }
+        } catch (IOException ex) {
+            log.error("Failed to read the response due to an exception!", ex);
+            throw new ThirdpartyException("Error reading the response", ex);
+        }
+        return text.toString();
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException ex) {
+            log.warn("Failed to close the XML stream reader!", ex);
+        }
+    }
+}
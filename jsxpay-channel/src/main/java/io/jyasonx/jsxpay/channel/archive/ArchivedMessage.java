@@ -0,0 +1,20 @@
+package io.jyasonx.jsxpay.channel.archive;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class ArchivedMessage {
+
+    private final Instant archivedTime;
+    // channelType-channelNo
+    private final String channel;
+    private final String serialNo;
+    private final Direction direction;
+    private final String content;
+}
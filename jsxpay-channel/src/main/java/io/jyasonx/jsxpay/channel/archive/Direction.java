@@ -0,0 +1,16 @@
+package io.jyasonx.jsxpay.channel.archive;
+
+public enum Direction {
+    /**
+     * The signed request sent to the channel.
+     */
+    REQUEST,
+    /**
+     * The raw response of the channel.
+     */
+    RESPONSE,
+    /**
+     * The notification sent by the channel.
+     */
+    NOTIFICATION
+}
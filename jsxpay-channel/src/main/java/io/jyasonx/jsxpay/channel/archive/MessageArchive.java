@@ -0,0 +1,526 @@
+package io.jyasonx.jsxpay.channel.archive;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * An append-only archive of the raw messages exchanged with channels, so that the audit trail is
+ * kept without holding the content of every message on the heap.
+ * <p>
+ * The callers copy a message into a staging ring in direct memory and return at once, a message
+ * is dropped and counted by {@code jsxpay.channel.archive.dropped} if the ring is full. A single
+ * writer thread deflates the messages one by one into segment files, which are rolled once they
+ * reach the segment size. The positions of messages are indexed by serial number in an index file
+ * next to each segment. Only the index of the segment being written is also kept in memory, so the
+ * heap stays bounded by the segment size. Once sealed, a segment also gets a bloom filter of its
+ * serial numbers, and a lookup scans only the index files of the sealed segments whose filters
+ * might contain the serial number, or which were sealed without a filter such as at a crash.
+ * <p>
+ * The oldest segments are deleted once the archive grows beyond the maximum bytes, or once they
+ * are older than the maximum age. The retention is checked whenever a segment is rolled, and at
+ * least once a minute while idle.
+ */
+@Slf4j
+public class MessageArchive implements Closeable {
+
+    private static final int DEFAULT_STAGING_CAPACITY = 8 * 1024 * 1024;
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String FILTER_SUFFIX = ".bloom";
+    private static final Funnel<CharSequence> FILTER_FUNNEL = Funnels.stringFunnel(StandardCharsets.UTF_8);
+    private static final double FILTER_FPP = 0.01;
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024 * 1024;
+    private static final Duration DEFAULT_MAX_AGE = Duration.ofDays(90L);
+    private static final long RETENTION_CHECK_INTERVAL = 60000L;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final long POLL_TIMEOUT = 100L;
+    private static final long CLOSE_TIMEOUT = 10000L;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long maxBytes;
+    private final Duration maxAge;
+    private final StagingRing ring;
+    private final Counter dropped;
+    // the index of the segment being written, replaced once the segment is sealed
+    private volatile SegmentIndex current;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // owned by the writer thread
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[64 * 1024];
+    private int sequence;
+    private FileChannel segment;
+    private DataOutputStream segmentIndex;
+    private long segmentPosition;
+    private long retainedTime;
+
+    public MessageArchive(Path directory) {
+        this(directory, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE);
+    }
+
+    public MessageArchive(Path directory, long maxBytes, Duration maxAge) {
+        this(directory, DEFAULT_STAGING_CAPACITY, DEFAULT_SEGMENT_SIZE, maxBytes, maxAge, Metrics.globalRegistry);
+    }
+
+    public MessageArchive(Path directory, int stagingCapacity, long segmentSize, MeterRegistry registry) {
+        this(directory, stagingCapacity, segmentSize, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE, registry);
+    }
+
+    public MessageArchive(Path directory, int stagingCapacity, long segmentSize, long maxBytes, Duration maxAge,
+                          MeterRegistry registry) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        this.maxAge = maxAge;
+        this.ring = new StagingRing(stagingCapacity);
+        this.dropped = registry.counter("jsxpay.channel.archive.dropped");
+        try {
+            Files.createDirectories(directory);
+            sequence = lastSequence();
+            roll();
+        } catch (IOException ex) {
+            log.error("Failed to open the message archive at '{}'!", directory, ex);
+            throw new ThirdpartyException("Error opening the message archive", ex);
+        }
+        writer = new Thread(this::write, "channel-archive-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Archives the message encoded in the given bytes, which are copied before returning.
+     */
+    public void archive(Config config, String serialNo, Direction direction, byte[] content, int offset, int length) {
+        byte[] header = header(config, serialNo, direction);
+        if (!running || !ring.offer(header, content, offset, length)) {
+            dropped.increment();
+            log.warn("The {} of transaction '{}' was not archived for the staging ring is full!", direction, serialNo);
+        }
+    }
+
+    public void archive(Config config, String serialNo, Direction direction, String content) {
+        byte[] bytes = content.getBytes(Charset.forName(config.getEncoding()));
+        archive(config, serialNo, direction, bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the archived messages of the serial number in the order they were archived, the
+     * messages still staged are not included.
+     */
+    public List<ArchivedMessage> lookup(String serialNo) {
+        // taken first, the segments sealed afterwards are still covered by its positions
+        SegmentIndex segmentIndex = current;
+        List<ArchivedMessage> messages = new ArrayList<>();
+        Inflater inflater = new Inflater();
+        try {
+            for (int sealed : sealedSequences(segmentIndex.sequence)) {
+                try {
+                    if (!mightContain(sealed, serialNo)) {
+                        continue;
+                    }
+                    for (long offset : scan(sealed, serialNo)) {
+                        messages.add(read(pack(sealed, offset), inflater));
+                    }
+                } catch (NoSuchFileException ex) {
+                    log.debug("The archive segment {} was deleted during the lookup.", sealed);
+                }
+            }
+            for (long offset : segmentIndex.offsets(serialNo)) {
+                messages.add(read(pack(segmentIndex.sequence, offset), inflater));
+            }
+        } catch (IOException | DataFormatException ex) {
+            log.error("Failed to read the archived messages of transaction '{}'!", serialNo, ex);
+            throw new ThirdpartyException("Error reading the message archive", ex);
+        } finally {
+            inflater.end();
+        }
+        return messages;
+    }
+
+    /**
+     * Writes the staged messages and closes the segment, the messages archived afterwards are
+     * dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] header(Config config, String serialNo, Direction direction) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeLong(System.currentTimeMillis());
+            output.writeByte(direction.ordinal());
+            output.writeUTF(config.getChannelType().name() + DASH + config.getChannelNo());
+            output.writeUTF(serialNo == null ? "" : serialNo);
+            output.writeUTF(config.getEncoding());
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void write() {
+        StagingRing.Frame frame = new StagingRing.Frame(64 * 1024);
+        try {
+            while (running || !ring.isEmpty()) {
+                if (!ring.take(frame, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    flush();
+                    if (System.currentTimeMillis() - retainedTime >= RETENTION_CHECK_INTERVAL) {
+                        retain();
+                    }
+                    continue;
+                }
+                try {
+                    append(frame);
+                } catch (IOException ex) {
+                    log.error("Failed to write the message archive at '{}'!", directory, ex);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deflater.end();
+            closeSegment();
+        }
+    }
+
+    private void append(StagingRing.Frame frame) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(frame.bytes(), 0, frame.length()));
+        input.readLong();
+        input.readByte();
+        input.readUTF();
+        String serialNo = input.readUTF();
+        input.readUTF();
+        int headerLength = frame.length() - input.available();
+        int payloadLength = frame.length() - headerLength;
+
+        deflater.reset();
+        deflater.setInput(frame.bytes(), headerLength, payloadLength);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length << 1);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        ByteBuffer prefix = ByteBuffer.allocate(Integer.BYTES);
+        prefix.putInt(0, headerLength + Integer.BYTES + compressedLength);
+        ByteBuffer rawLength = ByteBuffer.allocate(Integer.BYTES);
+        rawLength.putInt(0, payloadLength);
+        ByteBuffer[] buffers = {prefix, ByteBuffer.wrap(frame.bytes(), 0, headerLength), rawLength,
+                ByteBuffer.wrap(compressed, 0, compressedLength)};
+        long offset = segmentPosition;
+        long total = Integer.BYTES * 2 + headerLength + compressedLength;
+        long written = 0;
+        while (written < total) {
+            written += segment.write(buffers);
+        }
+        segmentPosition += total;
+
+        if (!serialNo.isEmpty()) {
+            segmentIndex.writeUTF(serialNo);
+            segmentIndex.writeLong(offset);
+            current.add(serialNo, offset);
+        }
+        if (segmentPosition >= segmentSize) {
+            roll();
+        }
+    }
+
+    private ArchivedMessage read(long position, Inflater inflater) throws IOException, DataFormatException {
+        Path path = directory.resolve(segmentName(unpackSequence(position), SEGMENT_SUFFIX));
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(Integer.BYTES);
+            readFully(file, prefix, unpackOffset(position));
+            ByteBuffer record = ByteBuffer.allocate(prefix.getInt(0));
+            readFully(file, record, unpackOffset(position) + Integer.BYTES);
+
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(record.array()));
+            Instant archivedTime = Instant.ofEpochMilli(input.readLong());
+            Direction direction = Direction.values()[input.readByte()];
+            String channel = input.readUTF();
+            String serialNo = input.readUTF();
+            String encoding = input.readUTF();
+            byte[] content = new byte[input.readInt()];
+            int compressedOffset = record.capacity() - input.available();
+
+            inflater.reset();
+            inflater.setInput(record.array(), compressedOffset, record.capacity() - compressedOffset);
+            int inflated = 0;
+            while (inflated < content.length && !inflater.finished()) {
+                inflated += inflater.inflate(content, inflated, content.length - inflated);
+            }
+            return new ArchivedMessage(archivedTime, channel, serialNo, direction,
+                    new String(content, 0, inflated, Charset.forName(encoding)));
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of the archive segment");
+            }
+        }
+    }
+
+    /**
+     * Returns the last sequence of existing segments.
+     */
+    private int lastSequence() throws IOException {
+        int last = 0;
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : paths) {
+                last = Math.max(last, sequence(path, SEGMENT_SUFFIX));
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Returns the sequences of the index files before the given one in ascending order.
+     */
+    private List<Integer> sealedSequences(int before) throws IOException {
+        List<Integer> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + INDEX_SUFFIX)) {
+            for (Path path : paths) {
+                int sequence = sequence(path, INDEX_SUFFIX);
+                if (sequence < before) {
+                    sequences.add(sequence);
+                }
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    /**
+     * Returns whether the serial number might be in a sealed segment, by its bloom filter if any.
+     */
+    private boolean mightContain(int sequence, String serialNo) throws IOException {
+        Path filterPath = directory.resolve(segmentName(sequence, FILTER_SUFFIX));
+        if (!Files.exists(filterPath)) {
+            return true;
+        }
+        try (InputStream stream = Files.newInputStream(filterPath);
+             InputStream input = new BufferedInputStream(stream)) {
+            return BloomFilter.readFrom(input, FILTER_FUNNEL).mightContain(serialNo);
+        }
+    }
+
+    /**
+     * Returns the offsets of the serial number in the index file of a sealed segment.
+     */
+    private long[] scan(int sequence, String serialNo) throws IOException {
+        long[] offsets = new long[0];
+        Path indexPath = directory.resolve(segmentName(sequence, INDEX_SUFFIX));
+        try (InputStream stream = Files.newInputStream(indexPath);
+             DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            while (true) {
+                String indexed = input.readUTF();
+                long offset = input.readLong();
+                if (indexed.equals(serialNo)) {
+                    offsets = Arrays.copyOf(offsets, offsets.length + 1);
+                    offsets[offsets.length - 1] = offset;
+                }
+            }
+        } catch (EOFException ex) {
+            // the end of index, or a torn entry written at crash
+        }
+        return offsets;
+    }
+
+    private static int sequence(Path path, String suffix) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - suffix.length()));
+    }
+
+    private void roll() throws IOException {
+        closeSegment();
+        sequence++;
+        segment = FileChannel.open(directory.resolve(segmentName(sequence, SEGMENT_SUFFIX)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentIndex = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                directory.resolve(segmentName(sequence, INDEX_SUFFIX)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        segmentPosition = 0;
+        current = new SegmentIndex(sequence);
+        retain();
+    }
+
+    /**
+     * Deletes the oldest sealed segments beyond the maximum bytes or age.
+     */
+    private void retain() {
+        retainedTime = System.currentTimeMillis();
+        try {
+            List<Integer> sealed = sealedSequences(sequence);
+            long total = segmentPosition;
+            for (int sealedSequence : sealed) {
+                total += size(sealedSequence);
+            }
+            long expiredTime = retainedTime - maxAge.toMillis();
+            for (int sealedSequence : sealed) {
+                Path segmentPath = directory.resolve(segmentName(sealedSequence, SEGMENT_SUFFIX));
+                if (total <= maxBytes && Files.exists(segmentPath)
+                        && Files.getLastModifiedTime(segmentPath).toMillis() >= expiredTime) {
+                    break;
+                }
+                total -= size(sealedSequence);
+                // the index last, so that a deletion interrupted by a crash is picked up again
+                Files.deleteIfExists(segmentPath);
+                Files.deleteIfExists(directory.resolve(segmentName(sealedSequence, FILTER_SUFFIX)));
+                Files.deleteIfExists(directory.resolve(segmentName(sealedSequence, INDEX_SUFFIX)));
+                log.info("The archive segment {} was deleted by the retention.", sealedSequence);
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to apply the retention of the message archive at '{}'!", directory, ex);
+        }
+    }
+
+    private long size(int sequence) throws IOException {
+        long size = 0;
+        for (String suffix : new String[]{SEGMENT_SUFFIX, INDEX_SUFFIX, FILTER_SUFFIX}) {
+            Path path = directory.resolve(segmentName(sequence, suffix));
+            if (Files.exists(path)) {
+                size += Files.size(path);
+            }
+        }
+        return size;
+    }
+
+    private void flush() {
+        try {
+            segmentIndex.flush();
+        } catch (IOException ex) {
+            log.warn("Failed to flush the index of archive segment {}!", sequence, ex);
+        }
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segmentIndex.close();
+            segment.force(true);
+            segment.close();
+            writeFilter();
+        } catch (IOException ex) {
+            log.warn("Failed to close the archive segment {}!", sequence, ex);
+        }
+    }
+
+    private void writeFilter() throws IOException {
+        BloomFilter<CharSequence> filter = BloomFilter.create(FILTER_FUNNEL,
+                Math.max(current.offsets.size(), 1), FILTER_FPP);
+        current.offsets.keySet().forEach(filter::put);
+        // moved into place once written, so that lookups never read a partial filter
+        Path filterPath = directory.resolve(segmentName(sequence, FILTER_SUFFIX));
+        Path writingPath = directory.resolve(segmentName(sequence, FILTER_SUFFIX + ".tmp"));
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(writingPath))) {
+            filter.writeTo(output);
+        }
+        Files.move(writingPath, filterPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String segmentName(int sequence, String suffix) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, sequence, suffix);
+    }
+
+    private static long pack(int sequence, long offset) {
+        return ((long) sequence << OFFSET_BITS) | offset;
+    }
+
+    private static int unpackSequence(long position) {
+        return (int) (position >>> OFFSET_BITS);
+    }
+
+    private static long unpackOffset(long position) {
+        return position & OFFSET_MASK;
+    }
+
+    /**
+     * The positions of messages in a segment by serial number, in the order of archiving.
+     */
+    private static class SegmentIndex {
+        private static final long[] NONE = new long[0];
+
+        private final int sequence;
+        private final ConcurrentMap<String, long[]> offsets = new ConcurrentHashMap<>();
+
+        private SegmentIndex(int sequence) {
+            this.sequence = sequence;
+        }
+
+        private void add(String serialNo, long offset) {
+            offsets.compute(serialNo, (key, existing) -> {
+                if (existing == null) {
+                    return new long[]{offset};
+                }
+                long[] appended = Arrays.copyOf(existing, existing.length + 1);
+                appended[existing.length] = offset;
+                return appended;
+            });
+        }
+
+        private long[] offsets(String serialNo) {
+            return offsets.getOrDefault(serialNo, NONE);
+        }
+    }
+}
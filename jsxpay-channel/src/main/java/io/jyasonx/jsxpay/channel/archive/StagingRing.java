@@ -0,0 +1,131 @@
+package io.jyasonx.jsxpay.channel.archive;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded ring of length-prefixed frames in direct memory, filled by the callers and drained
+ * by the single writer of archive. A frame is dropped rather than waiting for room, so that the
+ * callers are never held by the disk.
+ */
+final class StagingRing {
+
+    private static final int LENGTH_SIZE = Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // guarded by the lock, as well as the positions of buffer
+    private final byte[] lengthBytes = new byte[LENGTH_SIZE];
+    // the total bytes ever written and read
+    private long head;
+    private long tail;
+
+    StagingRing(int capacity) {
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Appends a frame made of the header and the payload, returns false if there is no room.
+     */
+    boolean offer(byte[] header, byte[] payload, int offset, int length) {
+        int frameLength = header.length + length;
+        lock.lock();
+        try {
+            if (capacity - (head - tail) < LENGTH_SIZE + (long) frameLength) {
+                return false;
+            }
+            ByteBuffer.wrap(lengthBytes).putInt(frameLength);
+            long position = put(head, lengthBytes, 0, LENGTH_SIZE);
+            position = put(position, header, 0, header.length);
+            head = put(position, payload, offset, length);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next frame into the given one, waiting up to the timeout if the ring is empty.
+     *
+     * @return false if the ring stays empty
+     */
+    boolean take(Frame frame, long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            if (head == tail) {
+                notEmpty.await(timeout, unit);
+                if (head == tail) {
+                    return false;
+                }
+            }
+            long position = get(tail, lengthBytes, LENGTH_SIZE);
+            frame.length = ByteBuffer.wrap(lengthBytes).getInt();
+            if (frame.bytes.length < frame.length) {
+                frame.bytes = new byte[Math.max(frame.length, frame.bytes.length << 1)];
+            }
+            tail = get(position, frame.bytes, frame.length);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return head == tail;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long put(long position, byte[] src, int offset, int length) {
+        int index = (int) (position % capacity);
+        int first = Math.min(length, capacity - index);
+        buffer.position(index);
+        buffer.put(src, offset, first);
+        if (first < length) {
+            buffer.position(0);
+            buffer.put(src, offset + first, length - first);
+        }
+        return position + length;
+    }
+
+    private long get(long position, byte[] dst, int length) {
+        int index = (int) (position % capacity);
+        int first = Math.min(length, capacity - index);
+        buffer.position(index);
+        buffer.get(dst, 0, first);
+        if (first < length) {
+            buffer.position(0);
+            buffer.get(dst, first, length - first);
+        }
+        return position + length;
+    }
+
+    /**
+     * The reusable holder of a taken frame, the bytes are only valid up to the length.
+     */
+    static final class Frame {
+        private byte[] bytes;
+        private int length;
+
+        Frame(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int length() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package io.jyasonx.jsxpay.channel.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Decorates a {@link Processor} to answer the queries of transactions in terminal states, which
+ * never change once known, from a bounded cache instead of the channel.
+ * <p>
+ * The cache is filled with the transactions of query responses in
+ * {@link TransactionStatus#TERMINAL_STATUSES}, and the {@link TransactionStatus#SUCCEED} ones of handled
+ * notifications, whose signatures have been verified by the processor. A failed transaction is
+ * cached only for a real trade state such as closed, never for a code telling the trade does not
+ * exist, as the order might just not have reached the channel yet. Failed notifications are not
+ * cached either, as a failed payment does not close the order. Non-terminal states are never
+ * cached.
+ * <p>
+ * A query is answered from the cache only if all of its transactions are cached. When combined
+ * with {@code SingleFlightProcessor}, wrap it so that cached queries never wait for a flight.
+ * The cache is monitored as {@code jsxpay.channel.terminal}.
+ */
+@Slf4j
+public class CachingProcessor implements Processor {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 100_000L;
+    private static final Duration DEFAULT_EXPIRY = Duration.ofHours(24L);
+    // such as ORDERNOTEXIST of WeChat Pay and ACQ.TRADE_NOT_EXIST of Alipay
+    private static final Pattern CODE_NOT_EXIST = Pattern.compile("NOT_?EXIST", Pattern.CASE_INSENSITIVE);
+
+    private final Processor processor;
+    private final Cache<String, Outcome> cache;
+
+    public CachingProcessor(Processor processor) {
+        this(processor, DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRY, Metrics.globalRegistry);
+    }
+
+    public CachingProcessor(Processor processor, long maximumSize, Duration expiry, MeterRegistry registry) {
+        this.processor = processor;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expiry)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "jsxpay.channel.terminal");
+    }
+
+    @Override
+    public <T extends Response> T execute(Request request) {
+        T cached = lookup(request);
+        if (cached != null) {
+            return cached;
+        }
+        T response = processor.execute(request);
+        remember(request, response);
+        return response;
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> executeAsync(Request request) {
+        T cached = lookup(request);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<T> future = processor.executeAsync(request);
+        future.whenComplete((response, ex) -> {
+            if (ex == null) {
+                remember(request, response);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public <T extends Response> T handle(String notification, Request request) {
+        T response = processor.handle(notification, request);
+        remember(request, response);
+        return response;
+    }
+
+    @Override
+    public String from(Request request) {
+        return processor.from(request);
+    }
+
+    @Override
+    public <T extends Request> T handle(String notification, Request request, Function<Response, Request> function) {
+        return processor.handle(notification, request, response -> {
+            remember(request, response);
+            return function.apply(response);
+        });
+    }
+
+    /**
+     * Returns the response built from the cache if all of the queried transactions are cached,
+     * otherwise null.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Response> T lookup(Request request) {
+        if (request.getType() != RequestType.TRANSACTION_QUERY) {
+            return null;
+        }
+        List<Transaction> transactions = ((TransactionQueryRequest) request).getTransactions();
+        if (transactions.isEmpty()) {
+            return null;
+        }
+        List<Outcome> outcomes = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            Outcome outcome = cache.getIfPresent(key(request.getConfig(), transaction.getChannelSerialNo()));
+            if (outcome == null) {
+                return null;
+            }
+            outcomes.add(outcome);
+        }
+
+        TransactionQueryResponse response = new TransactionQueryResponse();
+        response.setCode(outcomes.get(0).code);
+        response.setMessage(outcomes.get(0).message);
+        outcomes.forEach(outcome -> response.getTransactions().add(outcome.copy()));
+        return (T) response;
+    }
+
+    private void remember(Request request, Response response) {
+        if (response instanceof TransactionQueryResponse && request instanceof TransactionQueryRequest) {
+            // the transactions of response are in the order of the queried ones
+            List<Transaction> queried = ((TransactionQueryRequest) request).getTransactions();
+            List<Transaction> answered = ((TransactionQueryResponse) response).getTransactions();
+            for (int i = 0; i < Math.min(queried.size(), answered.size()); i++) {
+                Transaction transaction = answered.get(i);
+                if (terminal(transaction)) {
+                    put(request.getConfig(), queried.get(i).getChannelSerialNo(), response, transaction);
+                }
+            }
+        } else if (response instanceof TransactionNotificationResponse) {
+            Transaction transaction = ((TransactionNotificationResponse) response).getTransaction();
+            if (transaction != null && transaction.getStatus() == TransactionStatus.SUCCEED) {
+                put(request.getConfig(), transaction.getChannelSerialNo(), response, transaction);
+            }
+        }
+    }
+
+    private void put(Config config, String channelSerialNo, Response response, Transaction transaction) {
+        if (channelSerialNo == null) {
+            return;
+        }
+        log.debug("The transaction '{}' of channel '{}' is {}, cached.",
+                channelSerialNo, config.getChannelNo(), transaction.getStatus());
+        cache.put(key(config, channelSerialNo), new Outcome(response.getCode(), response.getMessage(), transaction));
+    }
+
+    private static boolean terminal(Transaction transaction) {
+        if (transaction.getStatus() == TransactionStatus.FAILED) {
+            return transaction.getCode() == null || !CODE_NOT_EXIST.matcher(transaction.getCode()).find();
+        }
+        return TransactionStatus.TERMINAL_STATUSES.contains(transaction.getStatus());
+    }
+
+    private static String key(Config config, String channelSerialNo) {
+        return config.getChannelType().name() + DASH + config.getChannelNo() + DASH + channelSerialNo;
+    }
+
+    /**
+     * The terminal outcome of a transaction, copied in and out so that callers could never change
+     * the cached one.
+     */
+    private static class Outcome {
+        private final String code;
+        private final String message;
+        private final Transaction transaction;
+
+        private Outcome(String code, String message, Transaction transaction) {
+            this.code = code;
+            this.message = message;
+            this.transaction = copy(transaction);
+        }
+
+        private Transaction copy() {
+            return copy(transaction);
+        }
+
+        private static Transaction copy(Transaction transaction) {
+            return Transaction.builder()
+                    .channelNo(transaction.getChannelNo())
+                    .channelType(transaction.getChannelType())
+                    .channelSerialNo(transaction.getChannelSerialNo())
+                    .thirdpartySerialNo(transaction.getThirdpartySerialNo())
+                    .thirdpartyPrepayNo(transaction.getThirdpartyPrepayNo())
+                    .amount(transaction.getAmount())
+                    .completedTime(transaction.getCompletedTime())
+                    .settlementDate(transaction.getSettlementDate())
+                    .status(transaction.getStatus())
+                    .code(transaction.getCode())
+                    .message(transaction.getMessage())
+                    .build();
+        }
+    }
+}
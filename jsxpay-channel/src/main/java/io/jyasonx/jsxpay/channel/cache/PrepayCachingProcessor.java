@@ -0,0 +1,216 @@
+package io.jyasonx.jsxpay.channel.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.common.base.Strings;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionResponse;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+import static io.jyasonx.jsxpay.util.StringUtils.VERTICAL;
+
+/**
+ * Decorates a {@link Processor} to reuse the prepay result of a created transaction, so that
+ * the retries of the same transaction are answered without another round trip to the channel.
+ * <p>
+ * The prepay number and the code URL are cached until the expire time of transaction, and no
+ * longer than the given lifetime, which is the validity of prepay results of the channel. A retry
+ * of the same channel serial number with different parameters is rejected with
+ * {@link ThirdpartyException}, as the channel would reject it as a duplicate order anyway.
+ * Concurrent first attempts are not coalesced, both of them reach the channel.
+ * <p>
+ * The cache is monitored as {@code jsxpay.channel.prepay}.
+ */
+@Slf4j
+public class PrepayCachingProcessor implements Processor {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 100_000L;
+    // the prepay number of WeChat Pay is valid for 2 hours
+    private static final Duration DEFAULT_LIFETIME = Duration.ofHours(2L);
+
+    private final Processor processor;
+    private final Duration lifetime;
+    private final Cache<String, Prepay> cache;
+
+    public PrepayCachingProcessor(Processor processor) {
+        this(processor, DEFAULT_MAXIMUM_SIZE, DEFAULT_LIFETIME, Metrics.globalRegistry);
+    }
+
+    public PrepayCachingProcessor(Processor processor, long maximumSize, Duration lifetime, MeterRegistry registry) {
+        this.processor = processor;
+        this.lifetime = lifetime;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Prepay>() {
+                    @Override
+                    public long expireAfterCreate(String key, Prepay value, long currentTime) {
+                        return value.ttl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Prepay value, long currentTime, long currentDuration) {
+                        return value.ttl;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Prepay value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "jsxpay.channel.prepay");
+    }
+
+    @Override
+    public <T extends Response> T execute(Request request) {
+        T cached = lookup(request);
+        if (cached != null) {
+            return cached;
+        }
+        T response = processor.execute(request);
+        remember(request, response);
+        return response;
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> executeAsync(Request request) {
+        T cached = lookup(request);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<T> future = processor.executeAsync(request);
+        future.whenComplete((response, ex) -> {
+            if (ex == null) {
+                remember(request, response);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public <T extends Response> T handle(String notification, Request request) {
+        return processor.handle(notification, request);
+    }
+
+    @Override
+    public String from(Request request) {
+        return processor.from(request);
+    }
+
+    @Override
+    public <T extends Request> T handle(String notification, Request request, Function<Response, Request> function) {
+        return processor.handle(notification, request, function);
+    }
+
+    /**
+     * Returns the response built from the cached prepay result, or null if none is cached.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Response> T lookup(Request request) {
+        if (request.getType() != RequestType.TRANSACTION) {
+            return null;
+        }
+        TransactionRequest transactionRequest = (TransactionRequest) request;
+        Prepay prepay = cache.getIfPresent(key(transactionRequest));
+        if (prepay == null) {
+            return null;
+        }
+        if (!prepay.fingerprint.equals(fingerprint(transactionRequest))) {
+            log.warn("The transaction '{}' of channel '{}' was retried with different parameters!",
+                    transactionRequest.getTransaction().getChannelSerialNo(), request.getConfig().getChannelNo());
+            throw new ThirdpartyException("Transaction was created with different parameters");
+        }
+
+        TransactionResponse response = new TransactionResponse();
+        response.setCode(prepay.code);
+        response.setMessage(prepay.message);
+        response.setTransaction(Transaction.builder()
+                .status(TransactionStatus.PROCESSING)
+                .code(prepay.transactionCode)
+                .thirdpartyPrepayNo(prepay.thirdpartyPrepayNo)
+                .codeUrl(prepay.codeUrl)
+                .build());
+        return (T) response;
+    }
+
+    private void remember(Request request, Response response) {
+        if (!(request instanceof TransactionRequest) || !(response instanceof TransactionResponse)) {
+            return;
+        }
+        TransactionRequest transactionRequest = (TransactionRequest) request;
+        Transaction transaction = ((TransactionResponse) response).getTransaction();
+        if (transaction == null || transaction.getStatus() != TransactionStatus.PROCESSING
+                || Strings.isNullOrEmpty(transaction.getThirdpartyPrepayNo())) {
+            return;
+        }
+
+        Duration ttl = lifetime;
+        LocalDateTime expireTime = transactionRequest.getTransaction().getExpireTime();
+        if (expireTime != null) {
+            Duration remaining = Duration.between(LocalDateTime.now(), expireTime);
+            ttl = remaining.compareTo(lifetime) < 0 ? remaining : lifetime;
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            return;
+        }
+        cache.put(key(transactionRequest), new Prepay(fingerprint(transactionRequest), response, transaction, ttl));
+    }
+
+    private static String key(TransactionRequest request) {
+        Config config = request.getConfig();
+        return config.getChannelType().name() + DASH + config.getChannelNo() + DASH
+                + request.getTransaction().getChannelSerialNo();
+    }
+
+    /**
+     * The parameters which make a retry the same transaction, the created time and the nonce
+     * differ from attempt to attempt.
+     */
+    private static String fingerprint(TransactionRequest request) {
+        Transaction transaction = request.getTransaction();
+        return (transaction.getAmount() == null ? null : transaction.getAmount().stripTrailingZeros().toPlainString())
+                + VERTICAL + transaction.getDescription()
+                + VERTICAL + transaction.getExpireTime()
+                + VERTICAL + request.getConfig().getCallbackUrl();
+    }
+
+    private static class Prepay {
+        private final String fingerprint;
+        private final String code;
+        private final String message;
+        private final String transactionCode;
+        private final String thirdpartyPrepayNo;
+        private final String codeUrl;
+        // in nanoseconds
+        private final long ttl;
+
+        private Prepay(String fingerprint, Response response, Transaction transaction, Duration ttl) {
+            this.fingerprint = fingerprint;
+            this.code = response.getCode();
+            this.message = response.getMessage();
+            this.transactionCode = transaction.getCode();
+            this.thirdpartyPrepayNo = transaction.getThirdpartyPrepayNo();
+            this.codeUrl = transaction.getCodeUrl();
+            this.ttl = ttl.toNanos();
+        }
+    }
+}
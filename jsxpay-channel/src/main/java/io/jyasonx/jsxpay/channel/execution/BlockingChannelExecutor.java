@@ -0,0 +1,177 @@
+package io.jyasonx.jsxpay.channel.execution;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Runs {@link Processor#execute(Request)} on the threads of an {@link ExecutorService}, the calls
+ * in flight of each channel are capped by {@link Config#getMaxConcurrentCalls()}.
+ * <p>
+ * The virtual threads of JDK 21 are looked up reflectively as the module targets Java 8, a
+ * blocked virtual thread costs no platform thread so the cap of channel is the only limit. On
+ * older runtimes the calls run on a bounded pool of platform threads instead, and are rejected
+ * with {@link ThirdpartyException} once the pool is saturated. The permit of channel is taken
+ * before the call is submitted to the pool, so a saturated channel fails fast rather than holding
+ * the threads shared with other channels.
+ */
+@Slf4j
+public class BlockingChannelExecutor implements ChannelExecutor {
+
+    private static final int DEFAULT_PLATFORM_THREADS = 200;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = lookupVirtualThreadFactory();
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = lookupThreadPerTaskExecutor();
+
+    private final Processor processor;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public BlockingChannelExecutor(Processor processor, ExecutorService executor) {
+        this(processor, executor, false);
+    }
+
+    private BlockingChannelExecutor(Processor processor, ExecutorService executor, boolean virtual) {
+        this.processor = processor;
+        this.executor = executor;
+        this.virtual = virtual;
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_FACTORY != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates the executor which starts a virtual thread for each call.
+     *
+     * @throws UnsupportedOperationException if the runtime does not support virtual threads
+     */
+    public static BlockingChannelExecutor virtual(Processor processor) {
+        if (!isVirtualThreadSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by the runtime");
+        }
+        try {
+            return new BlockingChannelExecutor(processor,
+                    (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, VIRTUAL_THREAD_FACTORY), true);
+        } catch (ReflectiveOperationException ex) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by the runtime", ex);
+        }
+    }
+
+    public static BlockingChannelExecutor platform(Processor processor) {
+        return platform(processor, DEFAULT_PLATFORM_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public static BlockingChannelExecutor platform(Processor processor, int threads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("channel-platform-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return new BlockingChannelExecutor(processor, executor);
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> execute(Request request) {
+        Config config = request.getConfig();
+        Semaphore semaphore = permits.computeIfAbsent(config.getChannelType().name() + DASH + config.getChannelNo(),
+                key -> new Semaphore(config.getMaxConcurrentCalls()));
+        if (virtual) {
+            try {
+                return CompletableFuture.supplyAsync(() -> call(request, semaphore), executor);
+            } catch (RejectedExecutionException ex) {
+                return saturated(config, ex);
+            }
+        }
+        if (!semaphore.tryAcquire()) {
+            log.warn("The call to channel '{}' was rejected for too many concurrent calls!", config.getChannelNo());
+            return failed(new ThirdpartyException("Too many concurrent calls to channel"));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> run(request, semaphore), executor);
+        } catch (RejectedExecutionException ex) {
+            semaphore.release();
+            return saturated(config, ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for the permit of channel in the virtual thread, which costs no platform thread.
+     */
+    private <T extends Response> T call(Request request, Semaphore semaphore) {
+        Config config = request.getConfig();
+        try {
+            if (!semaphore.tryAcquire(config.getConnectionRequestTimeout(), TimeUnit.MILLISECONDS)) {
+                throw new ThirdpartyException("Too many concurrent calls to channel");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ThirdpartyException("Interrupted waiting for the channel", ex);
+        }
+        return run(request, semaphore);
+    }
+
+    private <T extends Response> T run(Request request, Semaphore semaphore) {
+        try {
+            return processor.execute(request);
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private static <T extends Response> CompletableFuture<T> saturated(Config config, RejectedExecutionException ex) {
+        log.warn("The call to channel '{}' was rejected for the executor is saturated!", config.getChannelNo());
+        return failed(new ThirdpartyException("Channel executor is saturated", ex));
+    }
+
+    private static <T extends Response> CompletableFuture<T> failed(ThirdpartyException ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    private static ThreadFactory lookupVirtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "channel-virtual-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // absent before JDK 21, or a preview feature not enabled on JDK 19 and 20
+            return null;
+        }
+    }
+
+    private static Method lookupThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.jyasonx.jsxpay.channel.execution;
+
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dispatches the blocking {@link Processor#execute(Request)} to threads owned by the executor, so
+ * that the callers keep the simple blocking code without holding their own threads.
+ */
+public interface ChannelExecutor extends Closeable {
+
+    <T extends Response> CompletableFuture<T> execute(Request request);
+
+    @Override
+    void close();
+
+    /**
+     * Creates the executor on virtual threads if the runtime supports them, or on a bounded pool
+     * of platform threads otherwise.
+     */
+    static ChannelExecutor create(Processor processor) {
+        return BlockingChannelExecutor.isVirtualThreadSupported()
+                ? BlockingChannelExecutor.virtual(processor) : BlockingChannelExecutor.platform(processor);
+    }
+}
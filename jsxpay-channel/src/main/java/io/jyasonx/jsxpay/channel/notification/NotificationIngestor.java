@@ -0,0 +1,114 @@
+package io.jyasonx.jsxpay.channel.notification;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+import static io.jyasonx.jsxpay.util.StringUtils.VERTICAL;
+
+/**
+ * Ingests the notifications of channels: verifies and decodes each one on the calling thread,
+ * hands it to a bounded pool of workers and returns the acknowledgement right away.
+ * <p>
+ * The retried notifications of a transaction, identified by the serial numbers of both sides,
+ * are acknowledged without being handled again within the dedupe window. Once the pipeline is
+ * saturated, the notification is rejected with {@link ThirdpartyException} so that the channel
+ * will send it again later.
+ * <p>
+ * An acknowledged notification is lost if the process exits before it is handled, the status
+ * polling of processing transactions is expected to cover that.
+ */
+@Slf4j
+public class NotificationIngestor implements Closeable {
+
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    // WeChat Pay retries a notification for about 24 hours
+    private static final long DEFAULT_DEDUPE_WINDOW = TimeUnit.HOURS.toMillis(25L);
+    private static final long DEFAULT_MAX_DEDUPE_SIZE = 1000000L;
+
+    private final Processor processor;
+    private final Consumer<TransactionNotificationResponse> handler;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, Boolean> handled;
+
+    public NotificationIngestor(Processor processor, Consumer<TransactionNotificationResponse> handler) {
+        this(processor, handler, DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY, DEFAULT_DEDUPE_WINDOW, DEFAULT_MAX_DEDUPE_SIZE);
+    }
+
+    public NotificationIngestor(Processor processor, Consumer<TransactionNotificationResponse> handler,
+                                int workers, int queueCapacity, long dedupeWindow, long maxDedupeSize) {
+        this.processor = processor;
+        this.handler = handler;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("channel-notification-%d").setDaemon(true).build());
+        this.handled = Caffeine.newBuilder()
+                .expireAfterWrite(dedupeWindow, TimeUnit.MILLISECONDS)
+                .maximumSize(maxDedupeSize)
+                .build();
+    }
+
+    /**
+     * Ingests the notification of channel.
+     *
+     * @param notification the raw notification
+     * @param config       the config of channel
+     * @return the acknowledgement to be responded to the channel
+     * @throws ThirdpartyException if the notification is invalid or the pipeline is saturated
+     */
+    public String ingest(String notification, Config config) {
+        TransactionNotificationRequest request = new TransactionNotificationRequest();
+        request.setConfig(config);
+        TransactionNotificationResponse response = processor.handle(notification, request);
+
+        String keyName = keyName(config, response.getTransaction());
+        if (handled.asMap().putIfAbsent(keyName, Boolean.TRUE) != null) {
+            log.info("The duplicate notification '{}' was acknowledged.", keyName);
+            return processor.from(request);
+        }
+        try {
+            executor.execute(() -> dispatch(keyName, response));
+        } catch (RejectedExecutionException ex) {
+            handled.invalidate(keyName);
+            log.warn("The notification '{}' was rejected for the pipeline is saturated!", keyName);
+            throw new ThirdpartyException("Notification pipeline is saturated", ex);
+        }
+        return processor.from(request);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private void dispatch(String keyName, TransactionNotificationResponse response) {
+        try {
+            handler.accept(response);
+        } catch (RuntimeException ex) {
+            // let the retried notification be handled again
+            handled.invalidate(keyName);
+            log.error("Failed to handle the notification '{}' due to an exception!", keyName, ex);
+        }
+    }
+
+    private static String keyName(Config config, Transaction transaction) {
+        return config.getChannelType().name() + DASH + config.getChannelNo() + VERTICAL
+                + transaction.getChannelSerialNo() + VERTICAL + transaction.getThirdpartySerialNo();
+    }
+}
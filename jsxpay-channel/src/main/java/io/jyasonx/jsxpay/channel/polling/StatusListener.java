@@ -0,0 +1,23 @@
+package io.jyasonx.jsxpay.channel.polling;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Transaction;
+
+/**
+ * Receives the outcome of transactions polled by {@link StatusPoller}, called from the threads
+ * completing the queries so it should return quickly.
+ */
+public interface StatusListener {
+
+    /**
+     * Called once the transaction reached a terminal status.
+     */
+    void onCompleted(Config config, Transaction transaction);
+
+    /**
+     * Called once the polling schedule of channel is exhausted while the transaction is still
+     * processing.
+     */
+    default void onAbandoned(Config config, String channelSerialNo) {
+    }
+}
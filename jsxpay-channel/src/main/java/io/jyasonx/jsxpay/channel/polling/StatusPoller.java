@@ -0,0 +1,229 @@
+package io.jyasonx.jsxpay.channel.polling;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.jyasonx.jsxpay.channel.BatchQueryExecutor;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static io.jyasonx.jsxpay.channel.polling.TimingWheel.NONE;
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Polls the status of processing transactions until they reach a terminal status, following the
+ * polling intervals of each channel.
+ * <p>
+ * The pending transactions are kept in a {@link TimingWheel}. On every tick the expired ones are
+ * grouped by channel into batch queries of {@link BatchQueryExecutor}, which bounds the
+ * concurrency of each channel. Transactions which are still processing are scheduled again,
+ * the terminal ones are dropped and reported to the {@link StatusListener}.
+ * <p>
+ * The batches are dispatched without blocking, the queries of a saturated or slow channel wait in
+ * the queue of that channel, so they never hold up the polling of other channels. Its pending
+ * transactions are not scheduled again until their queries are completed, which keeps the
+ * polling intervals as the backoff of that channel.
+ */
+@Slf4j
+public class StatusPoller implements Closeable {
+
+    private static final long DEFAULT_TICK_DURATION = 100L;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final BatchQueryExecutor executor;
+    private final StatusListener listener;
+    private final long tickDuration;
+
+    // guarded by itself
+    private final TimingWheel wheel = new TimingWheel(INITIAL_CAPACITY);
+    private final List<Channel> channels = new ArrayList<>();
+    private final Map<String, Integer> channelIndexes = new HashMap<>();
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(
+            daemon("status-poller-ticker"));
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(
+            daemon("status-poller-dispatcher"));
+
+    public StatusPoller(Processor processor, StatusListener listener) {
+        this(new BatchQueryExecutor(processor), listener, DEFAULT_TICK_DURATION);
+    }
+
+    public StatusPoller(BatchQueryExecutor executor, StatusListener listener, long tickDuration) {
+        this.executor = executor;
+        this.listener = listener;
+        this.tickDuration = tickDuration;
+        ticker.scheduleAtFixedRate(this::tick, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts polling the transaction after the first interval of channel. The same transaction
+     * should not be polled twice.
+     */
+    public void poll(Config config, String channelSerialNo) {
+        synchronized (wheel) {
+            int channel = channel(config);
+            int id = wheel.allocate(channelSerialNo, channel);
+            wheel.schedule(id, channels.get(channel).delay(0));
+        }
+    }
+
+    /**
+     * Returns the number of transactions being polled.
+     */
+    public int size() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    private void tick() {
+        try {
+            List<Batch> batches = new ArrayList<>();
+            synchronized (wheel) {
+                int id = wheel.advance();
+                while (id != NONE) {
+                    int following = wheel.next(id);
+                    channels.get(wheel.channel(id)).expire(id);
+                    id = following;
+                }
+                for (Channel channel : channels) {
+                    if (channel.expiredCount > 0) {
+                        batches.add(channel.drain(wheel));
+                    }
+                }
+            }
+            batches.forEach(batch -> dispatcher.execute(() -> query(batch)));
+        } catch (RuntimeException ex) {
+            // an exception would cancel the subsequent ticks
+            log.error("Failed to turn the timing wheel due to an exception!", ex);
+        }
+    }
+
+    private void query(Batch batch) {
+        try {
+            executor.executeAsync(batch.request).whenComplete((response, ex) -> complete(batch, response));
+        } catch (RuntimeException ex) {
+            log.error("Failed to query the transactions of channel '{}'!", batch.channel.config.getChannelNo(), ex);
+            complete(batch, null);
+        }
+    }
+
+    private void complete(Batch batch, TransactionQueryResponse response) {
+        List<Transaction> completed = new ArrayList<>();
+        List<String> abandoned = new ArrayList<>();
+        synchronized (wheel) {
+            for (int i = 0; i < batch.ids.length; i++) {
+                int id = batch.ids[i];
+                Transaction transaction = response == null ? null : response.getTransactions().get(i);
+                if (transaction != null && TransactionStatus.TERMINAL_STATUSES.contains(transaction.getStatus())) {
+                    completed.add(transaction);
+                    wheel.release(id);
+                    continue;
+                }
+                int attempts = wheel.incrementAttempts(id);
+                if (attempts >= batch.channel.config.getMaxPollingAttempts()) {
+                    abandoned.add(wheel.serialNo(id));
+                    wheel.release(id);
+                } else {
+                    wheel.schedule(id, batch.channel.delay(attempts));
+                }
+            }
+        }
+
+        Config config = batch.channel.config;
+        try {
+            completed.forEach(transaction -> listener.onCompleted(config, transaction));
+            abandoned.forEach(serialNo -> listener.onAbandoned(config, serialNo));
+        } catch (RuntimeException ex) {
+            log.error("Failed to notify the status of channel '{}'!", config.getChannelNo(), ex);
+        }
+    }
+
+    private int channel(Config config) {
+        String keyName = config.getChannelType().name() + DASH + config.getChannelNo();
+        return channelIndexes.computeIfAbsent(keyName, key -> {
+            channels.add(new Channel(config, tickDuration));
+            return channels.size() - 1;
+        });
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return new ThreadFactoryBuilder().setNameFormat(name).setDaemon(true).build();
+    }
+
+    private static class Channel {
+        private final Config config;
+        private final long[] delays;
+        private int[] expired = new int[16];
+        private int expiredCount;
+
+        private Channel(Config config, long tickDuration) {
+            this.config = config;
+            long[] intervals = config.getPollingIntervals();
+            delays = new long[intervals.length];
+            for (int i = 0; i < intervals.length; i++) {
+                delays[i] = (intervals[i] + tickDuration - 1) / tickDuration;
+            }
+        }
+
+        private long delay(int attempts) {
+            return delays[Math.min(attempts, delays.length - 1)];
+        }
+
+        private void expire(int id) {
+            if (expiredCount == expired.length) {
+                expired = Arrays.copyOf(expired, expiredCount << 1);
+            }
+            expired[expiredCount++] = id;
+        }
+
+        private Batch drain(TimingWheel wheel) {
+            TransactionQueryRequest request = new TransactionQueryRequest();
+            request.setConfig(config);
+            request.setBatch(true);
+            int[] ids = Arrays.copyOf(expired, expiredCount);
+            for (int id : ids) {
+                request.getTransactions().add(Transaction.builder()
+                        .channelNo(config.getChannelNo())
+                        .channelType(config.getChannelType())
+                        .channelSerialNo(wheel.serialNo(id))
+                        .build());
+            }
+            expiredCount = 0;
+            return new Batch(this, ids, request);
+        }
+    }
+
+    private static class Batch {
+        private final Channel channel;
+        private final int[] ids;
+        private final TransactionQueryRequest request;
+
+        private Batch(Channel channel, int[] ids, TransactionQueryRequest request) {
+            this.channel = channel;
+            this.ids = ids;
+            this.request = request;
+        }
+    }
+}
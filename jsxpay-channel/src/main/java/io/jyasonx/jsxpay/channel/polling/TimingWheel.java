@@ -0,0 +1,160 @@
+package io.jyasonx.jsxpay.channel.polling;
+
+import java.util.Arrays;
+
+/**
+ * A hierarchical timing wheel whose timers are stored in parallel primitive arrays instead of
+ * node objects, so millions of timers cost a few dozen bytes each besides their serial numbers.
+ * <p>
+ * Each of the {@value #LEVELS} levels has {@value #SLOTS} buckets, a bucket is a singly linked
+ * list of timer ids threaded through {@link #next}. A timer is put into the lowest level that
+ * covers its delay, and falls down to lower levels as the wheel turns. Not thread-safe.
+ */
+final class TimingWheel {
+
+    static final int NONE = -1;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final int[][] buckets = new int[LEVELS][SLOTS];
+
+    private String[] serialNos;
+    private int[] channels;
+    private short[] attempts;
+    private long[] deadlines;
+    private int[] next;
+
+    private int free = NONE;
+    private int allocated;
+    private int size;
+    private long tick;
+
+    TimingWheel(int initialCapacity) {
+        serialNos = new String[initialCapacity];
+        channels = new int[initialCapacity];
+        attempts = new short[initialCapacity];
+        deadlines = new long[initialCapacity];
+        next = new int[initialCapacity];
+        for (int[] bucket : buckets) {
+            Arrays.fill(bucket, NONE);
+        }
+    }
+
+    /**
+     * Allocates a timer which is not scheduled yet.
+     */
+    int allocate(String serialNo, int channel) {
+        int id;
+        if (free != NONE) {
+            id = free;
+            free = next[id];
+        } else {
+            if (allocated == serialNos.length) {
+                grow();
+            }
+            id = allocated++;
+        }
+        serialNos[id] = serialNo;
+        channels[id] = channel;
+        attempts[id] = 0;
+        next[id] = NONE;
+        size++;
+        return id;
+    }
+
+    void release(int id) {
+        serialNos[id] = null;
+        next[id] = free;
+        free = id;
+        size--;
+    }
+
+    /**
+     * Schedules the timer to be expired after the ticks, at least one tick later.
+     */
+    void schedule(int id, long delay) {
+        deadlines[id] = tick + Math.min(Math.max(delay, 1L), MAX_DELAY);
+        insert(id);
+    }
+
+    /**
+     * Turns the wheel by one tick.
+     *
+     * @return the first id of the expired timers linked through {@link #next(int)}, or
+     * {@link #NONE} if nothing is expired
+     */
+    int advance() {
+        tick++;
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                cascade(level, (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            }
+        }
+        int slot = (int) tick & SLOT_MASK;
+        int expired = buckets[0][slot];
+        buckets[0][slot] = NONE;
+        return expired;
+    }
+
+    int next(int id) {
+        return next[id];
+    }
+
+    String serialNo(int id) {
+        return serialNos[id];
+    }
+
+    int channel(int id) {
+        return channels[id];
+    }
+
+    int attempts(int id) {
+        return attempts[id];
+    }
+
+    int incrementAttempts(int id) {
+        return attempts[id] == Short.MAX_VALUE ? Short.MAX_VALUE : ++attempts[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long tick() {
+        return tick;
+    }
+
+    private void insert(int id) {
+        long delay = deadlines[id] - tick;
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) (Math.max(deadlines[id], tick) >>> (SLOT_BITS * level)) & SLOT_MASK;
+        next[id] = buckets[level][slot];
+        buckets[level][slot] = id;
+    }
+
+    private void cascade(int level, int slot) {
+        int id = buckets[level][slot];
+        buckets[level][slot] = NONE;
+        while (id != NONE) {
+            int following = next[id];
+            insert(id);
+            id = following;
+        }
+    }
+
+    private void grow() {
+        int capacity = serialNos.length << 1;
+        serialNos = Arrays.copyOf(serialNos, capacity);
+        channels = Arrays.copyOf(channels, capacity);
+        attempts = Arrays.copyOf(attempts, capacity);
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        next = Arrays.copyOf(next, capacity);
+    }
+}
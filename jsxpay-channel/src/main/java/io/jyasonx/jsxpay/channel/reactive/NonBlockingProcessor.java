@@ -0,0 +1,66 @@
+package io.jyasonx.jsxpay.channel.reactive;
+
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Adapts {@link Processor#executeAsync(Request)}, which exchanges over the non-blocking HTTP
+ * client, to a {@link ReactiveProcessor}.
+ * <p>
+ * The request is written and signed on a bounded scheduler instead of the subscribing thread,
+ * which is usually an I/O thread of the server. The response is verified and decoded by the
+ * processor once it has been buffered, on the I/O dispatcher of the client. Notifications are
+ * verified and decoded on the bounded scheduler as well.
+ */
+public class NonBlockingProcessor implements ReactiveProcessor {
+
+    private static final Scheduler DEFAULT_SCHEDULER = Schedulers.newParallel("channel-signing",
+            Runtime.getRuntime().availableProcessors(), true);
+
+    private final Processor processor;
+    private final Scheduler scheduler;
+
+    public NonBlockingProcessor(Processor processor) {
+        this(processor, DEFAULT_SCHEDULER);
+    }
+
+    public NonBlockingProcessor(Processor processor, Scheduler scheduler) {
+        this.processor = processor;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public <T extends Response> Mono<T> execute(Request request) {
+        return Mono.<T>create(sink -> {
+            CompletableFuture<T> future = processor.executeAsync(request);
+            sink.onCancel(() -> future.cancel(true));
+            future.whenComplete((response, ex) -> {
+                if (future.isCancelled()) {
+                    return;
+                }
+                if (ex == null) {
+                    sink.success(response);
+                } else {
+                    sink.error(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                }
+            });
+        }).subscribeOn(scheduler);
+    }
+
+    @Override
+    public <T extends Response> Mono<T> handle(String notification, Request request) {
+        return Mono.fromCallable(() -> processor.<T>handle(notification, request)).subscribeOn(scheduler);
+    }
+
+    @Override
+    public String from(Request request) {
+        return processor.from(request);
+    }
+}
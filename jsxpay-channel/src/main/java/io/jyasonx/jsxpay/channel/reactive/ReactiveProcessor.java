@@ -0,0 +1,19 @@
+package io.jyasonx.jsxpay.channel.reactive;
+
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+import reactor.core.publisher.Mono;
+
+/**
+ * The non-blocking variant of {@link io.jyasonx.jsxpay.channel.Processor}, no thread is held
+ * while a channel call is in flight. Nothing is sent until the returned {@link Mono} is
+ * subscribed, and cancelling the subscription aborts the call.
+ */
+public interface ReactiveProcessor {
+
+    <T extends Response> Mono<T> execute(Request request);
+
+    <T extends Response> Mono<T> handle(String notification, Request request);
+
+    String from(Request request);
+}
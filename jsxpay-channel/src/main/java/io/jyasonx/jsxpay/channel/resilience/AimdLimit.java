@@ -0,0 +1,76 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+import io.jyasonx.jsxpay.channel.Config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit adjusted by additive increase and multiplicative decrease: the limit grows
+ * by one for each fast call made while at least half of it is in use, and shrinks by
+ * {@value #BACKOFF_RATIO} for each call which is slower than the latency threshold or failed.
+ */
+class AimdLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThreshold;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    AimdLimit(Config config) {
+        minLimit = config.getMinConcurrencyLimit();
+        maxLimit = config.getMaxConcurrencyLimit();
+        latencyThreshold = TimeUnit.MILLISECONDS.toNanos(config.getLatencyThreshold());
+        limit = Math.max(minLimit, Math.min(maxLimit, config.getInitialConcurrencyLimit()));
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases the permit, and adjusts the limit with the latency of call.
+     *
+     * @param latency the latency in nanoseconds
+     * @param dropped whether the call failed
+     */
+    void release(long latency, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        if (dropped || latency > latencyThreshold) {
+            synchronized (this) {
+                limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+            }
+        } else if (current * 2 >= limit) {
+            synchronized (this) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+    }
+
+    /**
+     * Releases the permit of a cancelled call, which tells nothing about the channel, so the limit
+     * is left as it is.
+     */
+    void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,112 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+import io.jyasonx.jsxpay.channel.Config;
+
+/**
+ * A circuit breaker over the outcomes of the last calls. It opens once the failure rate of a
+ * full window reaches the threshold, rejects all calls for the open duration, then lets a single
+ * trial call through to decide whether to close again.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final boolean[] outcomes;
+    private final double failureRate;
+    private final long openDuration;
+
+    private State state = State.CLOSED;
+    private int position;
+    private int calls;
+    private int failures;
+    private long openedTime;
+    private boolean trialInFlight;
+
+    CircuitBreaker(Config config) {
+        outcomes = new boolean[config.getCircuitBreakerWindowSize()];
+        failureRate = config.getCircuitBreakerFailureRate();
+        openDuration = config.getCircuitBreakerOpenDuration();
+    }
+
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedTime < openDuration) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset(State.CLOSED);
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (calls == outcomes.length && failures >= failureRate * calls) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Gives up the acquired call without an outcome, so that another trial call could be made.
+     */
+    synchronized void onRejected() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (calls == outcomes.length) {
+            if (outcomes[position]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[position] = failed;
+        if (failed) {
+            failures++;
+        }
+        position = (position + 1) % outcomes.length;
+    }
+
+    private void open() {
+        reset(State.OPEN);
+        openedTime = System.currentTimeMillis();
+    }
+
+    private void reset(State state) {
+        this.state = state;
+        position = 0;
+        calls = 0;
+        failures = 0;
+        trialInFlight = false;
+    }
+}
@@ -0,0 +1,29 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+/**
+ * A token bucket which earns a fraction of token for each primary call and spends a whole one
+ * for each hedged call, so the extra load is capped at that fraction of the primary calls.
+ */
+class HedgingBudget {
+
+    private static final double MAX_TOKENS = 10.0;
+
+    private final double ratio;
+    private double tokens;
+
+    HedgingBudget(double ratio) {
+        this.ratio = ratio;
+    }
+
+    synchronized void deposit() {
+        tokens = Math.min(MAX_TOKENS, tokens + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+}
@@ -0,0 +1,164 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Decorates a {@link Processor} to hedge the idempotent requests of channels which enabled
+ * {@link Config#isHedgingEnabled()}: once the first attempt takes longer than the latency
+ * percentile of the channel, a second attempt is made, the first response wins and the other
+ * one is cancelled. The hedged attempts are capped by {@link Config#getHedgingBudget()}.
+ * <p>
+ * Only {@link RequestType#TRANSACTION_QUERY} is hedged, other requests are passed through.
+ * When combined with {@link ResilientProcessor}, wrap it so that hedged attempts are limited too,
+ * the cancelled attempts are neutral to its limit and circuit breaker.
+ * <p>
+ * The latency of failed attempts is tracked as well as the successful ones, and so is the elapsed
+ * time of a slow first attempt cancelled by its hedge, so that the percentile is not biased low.
+ */
+@Slf4j
+public class HedgingProcessor implements Processor {
+
+    private static final Set<RequestType> IDEMPOTENT_TYPES = EnumSet.of(RequestType.TRANSACTION_QUERY);
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("channel-hedging-timer").setDaemon(true).build());
+
+    private final Processor processor;
+    private final ConcurrentMap<String, Policy> policies = new ConcurrentHashMap<>();
+
+    public HedgingProcessor(Processor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public <T extends Response> T execute(Request request) {
+        if (!hedged(request)) {
+            return processor.execute(request);
+        }
+        try {
+            return this.<T>executeAsync(request).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new ThirdpartyException("Error executing the request", ex.getCause());
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> executeAsync(Request request) {
+        if (!hedged(request)) {
+            return processor.executeAsync(request);
+        }
+        Config config = request.getConfig();
+        Policy policy = policies.computeIfAbsent(config.getChannelType().name() + DASH + config.getChannelNo(),
+                key -> new Policy(config));
+        policy.budget.deposit();
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger(1);
+        CompletableFuture<T> primary = attempt(request, policy, result, attempts, true);
+
+        long percentile = policy.tracker.get();
+        if (percentile < 0) {
+            // not enough samples to tell a slow attempt yet
+            return result;
+        }
+        long delay = Math.max(TimeUnit.MILLISECONDS.toNanos(config.getHedgingMinDelay()), percentile);
+        ScheduledFuture<?> timer = TIMER.schedule(() -> {
+            if (result.isDone() || !policy.budget.tryWithdraw()) {
+                return;
+            }
+            log.debug("Hedging the request of channel '{}' after {} ns...", config.getChannelNo(), delay);
+            attempts.incrementAndGet();
+            CompletableFuture<T> hedge = attempt(request, policy, result, attempts, false);
+            result.whenComplete((response, ex) -> hedge.cancel(true));
+        }, delay, TimeUnit.NANOSECONDS);
+        result.whenComplete((response, ex) -> {
+            timer.cancel(false);
+            primary.cancel(true);
+        });
+        return result;
+    }
+
+    @Override
+    public <T extends Response> T handle(String notification, Request request) {
+        return processor.handle(notification, request);
+    }
+
+    @Override
+    public String from(Request request) {
+        return processor.from(request);
+    }
+
+    @Override
+    public <T extends Request> T handle(String notification, Request request, Function<Response, Request> function) {
+        return processor.handle(notification, request, function);
+    }
+
+    private static boolean hedged(Request request) {
+        return request.getConfig().isHedgingEnabled() && IDEMPOTENT_TYPES.contains(request.getType());
+    }
+
+    /**
+     * Makes an attempt whose response completes the result, and whose failure completes the
+     * result only if it is the last outstanding attempt. A hedge cancelled for the first attempt
+     * has won is not tracked, as its elapsed time is shorter than its latency.
+     */
+    private <T extends Response> CompletableFuture<T> attempt(Request request, Policy policy,
+                                                              CompletableFuture<T> result, AtomicInteger attempts,
+                                                              boolean primary) {
+        long startTime = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = processor.executeAsync(request);
+        } catch (RuntimeException ex) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+        }
+        future.whenComplete((response, ex) -> {
+            if (primary || !ResilientProcessor.isCancelled(ex)) {
+                policy.tracker.record(System.nanoTime() - startTime);
+            }
+            if (ex == null) {
+                result.complete(response);
+            } else if (attempts.decrementAndGet() == 0) {
+                result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null
+                        ? ex.getCause() : ex);
+            }
+        });
+        return future;
+    }
+
+    private static class Policy {
+        private final LatencyTracker tracker;
+        private final HedgingBudget budget;
+
+        private Policy(Config config) {
+            tracker = new LatencyTracker(config.getHedgingPercentile());
+            budget = new HedgingBudget(config.getHedgingBudget());
+        }
+    }
+}
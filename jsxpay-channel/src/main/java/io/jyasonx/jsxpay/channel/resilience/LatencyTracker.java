@@ -0,0 +1,44 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the latency percentile of the most recent calls in a ring of samples, the percentile is
+ * recomputed once every {@value #REFRESH_INTERVAL} samples instead of on each read.
+ */
+class LatencyTracker {
+
+    private static final int SAMPLES = 512;
+    private static final int REFRESH_INTERVAL = 64;
+
+    private final long[] samples = new long[SAMPLES];
+    private final long[] sorted = new long[SAMPLES];
+    private final double percentile;
+    private int count;
+    private int position;
+    private volatile long value = -1L;
+
+    LatencyTracker(double percentile) {
+        this.percentile = percentile;
+    }
+
+    synchronized void record(long latency) {
+        samples[position] = latency;
+        position = (position + 1) % SAMPLES;
+        if (count < SAMPLES) {
+            count++;
+        }
+        if (position % REFRESH_INTERVAL == 0) {
+            System.arraycopy(samples, 0, sorted, 0, count);
+            Arrays.sort(sorted, 0, count);
+            value = sorted[Math.min(count - 1, (int) (percentile * count))];
+        }
+    }
+
+    /**
+     * Returns the latency percentile, or -1 if not enough samples are recorded.
+     */
+    long get() {
+        return value;
+    }
+}
@@ -0,0 +1,162 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+import io.jyasonx.jsxpay.channel.ChannelMetrics;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Decorates a {@link Processor} with an adaptive concurrency limit and a circuit breaker for
+ * each channel, so that a slow or failing channel is rejected fast with
+ * {@link ThirdpartyException} instead of holding the threads of callers.
+ * <p>
+ * The following metrics tagged with the channel type and number are published:
+ * <ul>
+ * <li>{@code jsxpay.channel.limit}: the current concurrency limit</li>
+ * <li>{@code jsxpay.channel.in.flight}: the number of calls in flight</li>
+ * <li>{@code jsxpay.channel.circuit.state}: 0 for closed, 1 for open and 2 for half-open</li>
+ * <li>{@code jsxpay.channel.rejections}: the rejected calls tagged with the reason</li>
+ * </ul>
+ * Notifications are passed through without limitation. A cancelled call, like the losing attempt
+ * of {@link HedgingProcessor}, releases its permit without counting as a failure.
+ */
+@Slf4j
+public class ResilientProcessor implements Processor {
+
+    private static final String TAG_REASON = "reason";
+
+    private final Processor processor;
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, Guard> guards = new ConcurrentHashMap<>();
+
+    public ResilientProcessor(Processor processor) {
+        this(processor, Metrics.globalRegistry);
+    }
+
+    public ResilientProcessor(Processor processor, MeterRegistry registry) {
+        this.processor = processor;
+        this.registry = registry;
+    }
+
+    @Override
+    public <T extends Response> T execute(Request request) {
+        Guard guard = acquire(request.getConfig());
+        long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            T response = processor.execute(request);
+            failed = false;
+            return response;
+        } finally {
+            guard.release(System.nanoTime() - startTime, failed);
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> executeAsync(Request request) {
+        Guard guard = acquire(request.getConfig());
+        long startTime = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = processor.executeAsync(request);
+        } catch (RuntimeException ex) {
+            guard.release(System.nanoTime() - startTime, true);
+            throw ex;
+        }
+        future.whenComplete((response, ex) -> {
+            if (isCancelled(ex)) {
+                guard.cancel();
+            } else {
+                guard.release(System.nanoTime() - startTime, ex != null);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public <T extends Response> T handle(String notification, Request request) {
+        return processor.handle(notification, request);
+    }
+
+    @Override
+    public String from(Request request) {
+        return processor.from(request);
+    }
+
+    @Override
+    public <T extends Request> T handle(String notification, Request request, Function<Response, Request> function) {
+        return processor.handle(notification, request, function);
+    }
+
+    static boolean isCancelled(Throwable ex) {
+        return ex instanceof CancellationException
+                || ex instanceof CompletionException && ex.getCause() instanceof CancellationException;
+    }
+
+    private Guard acquire(Config config) {
+        String channel = config.getChannelType().name() + DASH + config.getChannelNo();
+        Guard guard = guards.computeIfAbsent(channel, key -> new Guard(config));
+
+        if (!guard.breaker.tryAcquire()) {
+            guard.circuitRejections.increment();
+            throw new ThirdpartyException("Channel '" + channel + "' is unavailable for the circuit breaker is open");
+        }
+        if (!guard.limit.tryAcquire()) {
+            guard.breaker.onRejected();
+            guard.limitRejections.increment();
+            throw new ThirdpartyException("Channel '" + channel + "' is overloaded for the concurrency limit is reached");
+        }
+        return guard;
+    }
+
+    private class Guard {
+        private final AimdLimit limit;
+        private final CircuitBreaker breaker;
+        private final Counter limitRejections;
+        private final Counter circuitRejections;
+
+        private Guard(Config config) {
+            limit = new AimdLimit(config);
+            breaker = new CircuitBreaker(config);
+
+            Tags tags = ChannelMetrics.channelTags(config);
+            Gauge.builder("jsxpay.channel.limit", limit, AimdLimit::getLimit).tags(tags).register(registry);
+            Gauge.builder("jsxpay.channel.in.flight", limit, AimdLimit::getInFlight).tags(tags).register(registry);
+            Gauge.builder("jsxpay.channel.circuit.state", breaker, value -> value.getState().ordinal())
+                    .tags(tags).register(registry);
+            limitRejections = registry.counter("jsxpay.channel.rejections", tags.and(TAG_REASON, "limit"));
+            circuitRejections = registry.counter("jsxpay.channel.rejections", tags.and(TAG_REASON, "circuit"));
+        }
+
+        private void release(long latency, boolean failed) {
+            limit.release(latency, failed);
+            if (failed) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+
+        private void cancel() {
+            limit.cancel();
+            breaker.onRejected();
+        }
+    }
+}
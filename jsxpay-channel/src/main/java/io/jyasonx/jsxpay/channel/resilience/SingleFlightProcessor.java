@@ -0,0 +1,235 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.jyasonx.jsxpay.channel.ChannelMetrics;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Decorates a {@link Processor} to coalesce the concurrent queries of the same transaction: the
+ * first caller makes the call, the others join it and share its response instead of querying the
+ * channel again. The joined callers wait no longer than {@link Config#getSingleFlightTimeout()},
+ * or the socket timeout if it is not positive, while the first caller is bounded by the timeouts
+ * of the call only. The call is cancelled once all of its asynchronous callers have given up.
+ * <p>
+ * Only {@link RequestType#TRANSACTION_QUERY} of a single transaction is coalesced, other requests
+ * are passed through. The shared response must be treated as read-only by callers, and the
+ * content is captured into the request of the first caller only.
+ * <p>
+ * The joined callers are counted by {@code jsxpay.channel.coalesced} tagged with the channel type
+ * and number.
+ */
+@Slf4j
+public class SingleFlightProcessor implements Processor {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("channel-single-flight-timer").setDaemon(true).build());
+
+    private final Processor processor;
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    public SingleFlightProcessor(Processor processor) {
+        this(processor, Metrics.globalRegistry);
+    }
+
+    public SingleFlightProcessor(Processor processor, MeterRegistry registry) {
+        this.processor = processor;
+        this.registry = registry;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Response> T execute(Request request) {
+        if (!coalesced(request)) {
+            return processor.execute(request);
+        }
+        String key = key(request);
+        Flight created = new Flight();
+        Flight flight = join(key, created, request);
+        if (flight == created) {
+            try {
+                T response = processor.execute(request);
+                land(key, flight, response, null);
+                return response;
+            } catch (RuntimeException ex) {
+                land(key, flight, null, ex);
+                throw ex;
+            }
+        }
+
+        try {
+            return (T) flight.shared.get(timeout(request.getConfig()), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new ThirdpartyException("Error executing the request", ex.getCause());
+        } catch (TimeoutException ex) {
+            leave(key, flight);
+            throw new ThirdpartyException("Timed out waiting for the in-flight query", ex);
+        } catch (InterruptedException ex) {
+            leave(key, flight);
+            Thread.currentThread().interrupt();
+            throw new ThirdpartyException("Interrupted waiting for the in-flight query", ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Response> CompletableFuture<T> executeAsync(Request request) {
+        if (!coalesced(request)) {
+            return processor.executeAsync(request);
+        }
+        String key = key(request);
+        Flight created = new Flight();
+        Flight flight = join(key, created, request);
+        if (flight == created) {
+            CompletableFuture<T> future;
+            try {
+                future = processor.executeAsync(request);
+            } catch (RuntimeException ex) {
+                land(key, flight, null, ex);
+                throw ex;
+            }
+            flight.call = future;
+            future.whenComplete((response, ex) -> land(key, flight, response, ex));
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        flight.shared.whenComplete((response, ex) -> {
+            if (ex == null) {
+                result.complete((T) response);
+            } else {
+                result.completeExceptionally(ex);
+            }
+        });
+        ScheduledFuture<?> timer = flight == created ? null : TIMER.schedule(() -> result.completeExceptionally(
+                new ThirdpartyException("Timed out waiting for the in-flight query")),
+                timeout(request.getConfig()), TimeUnit.MILLISECONDS);
+        result.whenComplete((response, ex) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (!flight.shared.isDone()) {
+                // cancelled or timed out before the call completes
+                leave(key, flight);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public <T extends Response> T handle(String notification, Request request) {
+        return processor.handle(notification, request);
+    }
+
+    @Override
+    public String from(Request request) {
+        return processor.from(request);
+    }
+
+    @Override
+    public <T extends Request> T handle(String notification, Request request, Function<Response, Request> function) {
+        return processor.handle(notification, request, function);
+    }
+
+    private static boolean coalesced(Request request) {
+        return request.getType() == RequestType.TRANSACTION_QUERY
+                && ((TransactionQueryRequest) request).getTransactions().size() == 1;
+    }
+
+    private static long timeout(Config config) {
+        return config.getSingleFlightTimeout() > 0 ? config.getSingleFlightTimeout() : config.getSocketTimeout();
+    }
+
+    private static String key(Request request) {
+        Config config = request.getConfig();
+        return config.getChannelType().name() + DASH + config.getChannelNo() + DASH
+                + ((TransactionQueryRequest) request).getTransactions().get(0).getChannelSerialNo();
+    }
+
+    /**
+     * Joins the flight of the key, or takes off the created one if there is none or the existing
+     * one has been abandoned.
+     */
+    private Flight join(String key, Flight created, Request request) {
+        Flight flight = flights.compute(key, (k, current) -> current != null && current.join() ? current : created);
+        if (flight != created) {
+            registry.counter("jsxpay.channel.coalesced", ChannelMetrics.channelTags(request.getConfig())).increment();
+        }
+        return flight;
+    }
+
+    private void land(String key, Flight flight, Response response, Throwable ex) {
+        // removed first, so that the callers coming after the response make a new call
+        flights.remove(key, flight);
+        if (ex == null) {
+            flight.shared.complete(response);
+        } else {
+            flight.shared.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null
+                    ? ex.getCause() : ex);
+        }
+    }
+
+    private void leave(String key, Flight flight) {
+        if (flight.leave()) {
+            log.debug("The in-flight query '{}' was abandoned by all of its callers.", key);
+            flights.remove(key, flight);
+        }
+    }
+
+    private static class Flight {
+        private final CompletableFuture<Response> shared = new CompletableFuture<>();
+        // the asynchronous call, which is cancelled once abandoned
+        private volatile CompletableFuture<? extends Response> call;
+        private int callers = 1;
+        private boolean abandoned;
+
+        private synchronized boolean join() {
+            if (abandoned) {
+                return false;
+            }
+            callers++;
+            return true;
+        }
+
+        /**
+         * Returns true if the current caller is the last one, and the call is cancelled.
+         */
+        private synchronized boolean leave() {
+            if (--callers > 0 || shared.isDone()) {
+                return false;
+            }
+            abandoned = true;
+            if (call != null) {
+                call.cancel(true);
+            }
+            shared.completeExceptionally(new CancellationException("Abandoned by all of the callers"));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.jyasonx.jsxpay.channel.routing;
+
+import io.jyasonx.jsxpay.channel.Config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of a channel number, the EWMA values are stored as the bits of doubles in
+ * atomic longs and updated with CAS loops.
+ */
+final class Candidate {
+
+    private static final double ALPHA = 0.3;
+    private static final double MIN_SUCCESS_RATE = 0.01;
+    private static final double DECAY_TIME = TimeUnit.SECONDS.toNanos(10L);
+
+    final Config config;
+
+    private final double initialLatency;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong latency;
+    private final AtomicLong errorRate = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    private final AtomicLong updatedTime = new AtomicLong(System.nanoTime());
+
+    Candidate(Config config, long initialLatency) {
+        this.config = config;
+        this.initialLatency = initialLatency;
+        this.latency = new AtomicLong(Double.doubleToRawLongBits(initialLatency));
+    }
+
+    long start() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void complete(long startTime, boolean failed) {
+        long now = System.nanoTime();
+        inFlight.decrementAndGet();
+        if (failed) {
+            // failing fast must not make the channel look fast
+            update(latency, Math.max(now - startTime, Double.longBitsToDouble(latency.get())));
+            update(errorRate, 1.0);
+        } else {
+            update(latency, now - startTime);
+            update(errorRate, 0.0);
+        }
+        updatedTime.set(now);
+    }
+
+    /**
+     * Returns the cost of sending one more call, the statistics decay to the initial values
+     * since the last call completed.
+     */
+    double cost(long now) {
+        double decay = Math.exp(-Math.max(0L, now - updatedTime.get()) / DECAY_TIME);
+        double currentLatency = initialLatency + (Double.longBitsToDouble(latency.get()) - initialLatency) * decay;
+        double currentErrorRate = Double.longBitsToDouble(errorRate.get()) * decay;
+        return currentLatency * (inFlight.get() + 1) / Math.max(MIN_SUCCESS_RATE, 1.0 - currentErrorRate);
+    }
+
+    private static void update(AtomicLong average, double sample) {
+        while (true) {
+            long current = average.get();
+            double value = Double.longBitsToDouble(current);
+            long updated = Double.doubleToRawLongBits(value + ALPHA * (sample - value));
+            if (average.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+}
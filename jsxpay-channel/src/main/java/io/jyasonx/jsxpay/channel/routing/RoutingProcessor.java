@@ -0,0 +1,156 @@
+package io.jyasonx.jsxpay.channel.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Processor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.common.ChannelType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Decorates a {@link Processor} to route each {@link TransactionRequest} to the best of the
+ * channel numbers of its {@link ChannelType}, the chosen config replaces the one of request and
+ * the channel number is written back to the transaction.
+ * <p>
+ * Two candidates are picked at random and the one with the lower cost wins, the cost grows with
+ * the EWMA latency, the EWMA error rate and the calls in flight. The statistics decay to the
+ * initial latency while a candidate is idle, so a degraded one gets traffic again later. All the
+ * state is kept in atomic variables.
+ * <p>
+ * A transaction sticks to the channel number chosen for its first attempt, so that a retry with
+ * the same channel serial number never creates a second order at another merchant. The pins are
+ * kept for the pin window, or until there are too many of them.
+ * <p>
+ * Other requests, which must go to the channel number of their transactions, are passed through.
+ */
+@Slf4j
+public class RoutingProcessor implements Processor {
+
+    private static final long DEFAULT_INITIAL_LATENCY = TimeUnit.MILLISECONDS.toNanos(100L);
+    private static final long DEFAULT_PIN_WINDOW = TimeUnit.HOURS.toMillis(25L);
+    private static final long DEFAULT_MAX_PINS = 1000000L;
+
+    private final Processor processor;
+    private final Map<ChannelType, Candidate[]> candidates = new EnumMap<>(ChannelType.class);
+    private final Cache<String, Candidate> pinned = Caffeine.newBuilder()
+            .expireAfterAccess(DEFAULT_PIN_WINDOW, TimeUnit.MILLISECONDS)
+            .maximumSize(DEFAULT_MAX_PINS)
+            .build();
+
+    public RoutingProcessor(Processor processor, Collection<Config> configs) {
+        this(processor, configs, DEFAULT_INITIAL_LATENCY);
+    }
+
+    public RoutingProcessor(Processor processor, Collection<Config> configs, long initialLatency) {
+        this.processor = processor;
+        for (Config config : configs) {
+            candidates.merge(config.getChannelType(), new Candidate[]{new Candidate(config, initialLatency)},
+                    (current, added) -> {
+                        Candidate[] merged = new Candidate[current.length + 1];
+                        System.arraycopy(current, 0, merged, 0, current.length);
+                        merged[current.length] = added[0];
+                        return merged;
+                    });
+        }
+    }
+
+    @Override
+    public <T extends Response> T execute(Request request) {
+        Candidate candidate = route(request);
+        if (candidate == null) {
+            return processor.execute(request);
+        }
+        long startTime = candidate.start();
+        boolean failed = true;
+        try {
+            T response = processor.execute(request);
+            failed = false;
+            return response;
+        } finally {
+            candidate.complete(startTime, failed);
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> executeAsync(Request request) {
+        Candidate candidate = route(request);
+        if (candidate == null) {
+            return processor.executeAsync(request);
+        }
+        long startTime = candidate.start();
+        CompletableFuture<T> future;
+        try {
+            future = processor.executeAsync(request);
+        } catch (RuntimeException ex) {
+            candidate.complete(startTime, true);
+            throw ex;
+        }
+        future.whenComplete((response, ex) -> candidate.complete(startTime, ex != null));
+        return future;
+    }
+
+    @Override
+    public <T extends Response> T handle(String notification, Request request) {
+        return processor.handle(notification, request);
+    }
+
+    @Override
+    public String from(Request request) {
+        return processor.from(request);
+    }
+
+    @Override
+    public <T extends Request> T handle(String notification, Request request, Function<Response, Request> function) {
+        return processor.handle(notification, request, function);
+    }
+
+    private Candidate route(Request request) {
+        if (request.getType() != RequestType.TRANSACTION) {
+            return null;
+        }
+        Candidate[] available = candidates.get(request.getConfig().getChannelType());
+        if (available == null) {
+            return null;
+        }
+        TransactionRequest transactionRequest = (TransactionRequest) request;
+        Transaction transaction = transactionRequest.getTransaction();
+        Candidate candidate = transaction == null || transaction.getChannelSerialNo() == null ? select(available)
+                : pinned.asMap().computeIfAbsent(request.getConfig().getChannelType().name() + DASH
+                + transaction.getChannelSerialNo(), key -> select(available));
+        request.setConfig(candidate.config);
+        if (transaction != null) {
+            transaction.setChannelNo(candidate.config.getChannelNo());
+        }
+        log.debug("The transaction request was routed to channel '{}'.", candidate.config.getChannelNo());
+        return candidate;
+    }
+
+    private static Candidate select(Candidate[] available) {
+        if (available.length == 1) {
+            return available[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(available.length);
+        int second = random.nextInt(available.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        long now = System.nanoTime();
+        return available[first].cost(now) <= available[second].cost(now) ? available[first] : available[second];
+    }
+}
@@ -0,0 +1,97 @@
+package io.jyasonx.jsxpay.channel.warmup;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.common.ChannelType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+
+/**
+ * Warms up the configured channels with their {@link Warmable} processors, and keeps the stage
+ * of each channel so that the application reports ready only after all of them are warm.
+ */
+@Slf4j
+public class ChannelWarmer {
+
+    public enum Stage {
+        PENDING,
+        WARMING,
+        READY,
+        FAILED
+    }
+
+    private final Map<ChannelType, ? extends Warmable> warmables;
+    private final ConcurrentMap<String, Stage> stages = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, String> errors = new ConcurrentSkipListMap<>();
+    private volatile boolean started;
+
+    public ChannelWarmer(Map<ChannelType, ? extends Warmable> warmables) {
+        this.warmables = warmables;
+    }
+
+    /**
+     * Warms up the channels on the executor, the returned future completes once all of them are
+     * either ready or failed.
+     */
+    public CompletableFuture<Void> warmUp(Collection<Config> configs, Executor executor) {
+        configs.forEach(config -> stages.put(key(config), Stage.PENDING));
+        started = true;
+        return CompletableFuture.allOf(configs.stream()
+                .map(config -> CompletableFuture.runAsync(() -> warmUp(config), executor))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Returns the stages keyed by 'channelType-channelNo'.
+     */
+    public Map<String, Stage> getStages() {
+        return Collections.unmodifiableMap(stages);
+    }
+
+    /**
+     * Returns the errors of failed channels keyed by 'channelType-channelNo'.
+     */
+    public Map<String, String> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    private void warmUp(Config config) {
+        String key = key(config);
+        Warmable warmable = warmables.get(config.getChannelType());
+        if (warmable == null) {
+            log.info("Nothing to warm up for channel '{}'.", key);
+            stages.put(key, Stage.READY);
+            return;
+        }
+
+        stages.put(key, Stage.WARMING);
+        long startTime = System.nanoTime();
+        try {
+            warmable.warmUp(config);
+            stages.put(key, Stage.READY);
+            log.info("Channel '{}' was warmed up in {} ms.", key,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } catch (RuntimeException ex) {
+            log.error("Failed to warm up channel '{}'!", key, ex);
+            errors.put(key, String.valueOf(ex.getMessage()));
+            stages.put(key, Stage.FAILED);
+        }
+    }
+
+    private static String key(Config config) {
+        return config.getChannelType().name() + DASH + config.getChannelNo();
+    }
+}
@@ -0,0 +1,54 @@
+package io.jyasonx.jsxpay.channel.warmup;
+
+import io.jyasonx.jsxpay.channel.ByteConverter;
+import io.jyasonx.jsxpay.channel.Converter;
+import io.jyasonx.jsxpay.channel.Cryptor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.WriteBuffer;
+import io.jyasonx.jsxpay.util.IdUtils;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+
+/**
+ * Runs synthetic requests and responses through the codec of a {@link Warmable} processor, the
+ * cryptor given should be the untimed one, so that they stay out of the metrics.
+ */
+public class WarmUpUtils {
+
+    private static final String DESCRIPTION = "warm-up";
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private WarmUpUtils() {
+        // private constructor for util class...
+    }
+
+    /**
+     * Returns a synthetic transaction, which is never sent.
+     */
+    public static Transaction transaction() {
+        return Transaction.builder()
+                .channelSerialNo(IdUtils.uuidWithoutDash())
+                .description(DESCRIPTION)
+                .amount(AMOUNT)
+                .expireTime(LocalDateTime.now().plusHours(1L))
+                .build();
+    }
+
+    public static void write(ByteConverter converter, Cryptor cryptor, Request request) {
+        WriteBuffer buffer = WriteBuffer.acquire();
+        try {
+            converter.writeTo(request, cryptor, buffer);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    public static void read(Converter converter, Cryptor cryptor, String response, Request request) {
+        Charset charset = Charset.forName(request.getConfig().getEncoding());
+        converter.readFrom(new ByteArrayInputStream(response.getBytes(charset)), request, cryptor);
+    }
+}
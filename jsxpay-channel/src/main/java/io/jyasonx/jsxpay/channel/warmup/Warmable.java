@@ -0,0 +1,16 @@
+package io.jyasonx.jsxpay.channel.warmup;
+
+import io.jyasonx.jsxpay.channel.Config;
+
+/**
+ * Implemented by the processors which do expensive work lazily on the first requests, such as
+ * compiling templates, parsing key material or opening connections.
+ */
+public interface Warmable {
+
+    /**
+     * Does the lazy work of channel up front, throws {@link io.jyasonx.jsxpay.channel.ThirdpartyException}
+     * if the channel could not serve requests at all.
+     */
+    void warmUp(Config config);
+}
@@ -0,0 +1,139 @@
+package io.jyasonx.jsxpay.channel.wechat;
+
+import io.jyasonx.jsxpay.channel.Cryptor;
+import io.jyasonx.jsxpay.channel.FieldSet;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.ResponseDecoder;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.wechat.mapper.ResponseMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Decodes the WeChat response by walking through the StAX events once, the text of each element
+ * is assigned to the {@link ResponseMapper} with a precomputed setter instead of reflection.
+ * <p>
+ * Only flat fields are supported, which is all the WeChat Pay API v2 responds.
+ */
+@Slf4j
+public class StaxResponseDecoder implements ResponseDecoder<ResponseMapper> {
+
+    private static final int DEPTH_FIELD = 2;
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final Map<String, BiConsumer<ResponseMapper, String>> SETTERS = new HashMap<>();
+    private static final ThreadLocal<FieldSet> FIELDS = ThreadLocal.withInitial(FieldSet::new);
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+        SETTERS.put("return_code", ResponseMapper::setCode);
+        SETTERS.put("return_msg", ResponseMapper::setMessage);
+        SETTERS.put("appid", ResponseMapper::setAppId);
+        SETTERS.put("mch_id", ResponseMapper::setMerchantNo);
+        SETTERS.put("device_info", ResponseMapper::setDeviceInfo);
+        SETTERS.put("nonce_str", ResponseMapper::setNonceString);
+        SETTERS.put("sign", ResponseMapper::setSignature);
+        SETTERS.put("out_trade_no", ResponseMapper::setOutTradeNo);
+        SETTERS.put("attach", ResponseMapper::setAttach);
+        SETTERS.put("result_code", ResponseMapper::setResultCode);
+        SETTERS.put("trade_state", ResponseMapper::setTradeState);
+        SETTERS.put("err_code", ResponseMapper::setErrorCode);
+        SETTERS.put("err_code_des", ResponseMapper::setErrorMessage);
+        SETTERS.put("trade_type", ResponseMapper::setTradeType);
+        SETTERS.put("prepay_id", ResponseMapper::setPrepayId);
+        SETTERS.put("code_url", ResponseMapper::setCodeUrl);
+        SETTERS.put("time_end", ResponseMapper::setFinishedTime);
+        SETTERS.put("trade_state_desc", ResponseMapper::setTradeStatusDescription);
+        SETTERS.put("transaction_id", ResponseMapper::setTransactionId);
+        SETTERS.put("total_fee", ResponseMapper::setTotalFee);
+    }
+
+    @Override
+    public ResponseMapper decode(InputStream response, Request request) {
+        return decode(response, request, null);
+    }
+
+    /**
+     * Collects the flat fields while populating the mapper, and verifies them with the cryptor
+     * at the end of document, so that the response is parsed only once.
+     */
+    @Override
+    public ResponseMapper decode(InputStream response, Request request, Cryptor cryptor) {
+        FieldSet fields = FIELDS.get();
+        fields.clear();
+        XMLStreamReader reader = null;
+        try {
+            reader = INPUT_FACTORY.createXMLStreamReader(response, request.getConfig().getEncoding());
+
+            ResponseMapper mapper = new ResponseMapper();
+            StringBuilder text = new StringBuilder();
+            String name = null;
+            int depth = 0;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (++depth == DEPTH_FIELD) {
+                            name = reader.getLocalName();
+                            text.setLength(0);
+                        } else if (depth > DEPTH_FIELD) {
+                            // nested elements are neither mapped nor signed
+                            name = null;
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (depth == DEPTH_FIELD && name != null) {
+                            text.append(reader.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth-- == DEPTH_FIELD && name != null) {
+                            String value = text.toString();
+                            BiConsumer<ResponseMapper, String> setter = SETTERS.get(name);
+                            if (setter != null) {
+                                setter.accept(mapper, value);
+                            }
+                            fields.add(name, value);
+                            name = null;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (cryptor != null) {
+                cryptor.verify(fields, request);
+            }
+            return mapper;
+        } catch (XMLStreamException ex) {
+            log.error("Failed to decode the response due to an exception!", ex);
+            throw new ThirdpartyException("Error decoding the response", ex);
+        } finally {
+            close(reader);
+            fields.clear();
+        }
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException ex) {
+            log.warn("Failed to close the XML stream reader!", ex);
+        }
+    }
+}
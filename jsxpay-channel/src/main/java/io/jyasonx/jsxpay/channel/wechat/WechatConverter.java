@@ -1,17 +1,23 @@
 package io.jyasonx.jsxpay.channel.wechat;
 
 import com.google.common.base.Strings;
-import com.thoughtworks.xstream.XStream;
 import freemarker.ext.beans.BeansWrapper;
 import freemarker.ext.beans.BeansWrapperBuilder;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
 import io.jyasonx.jsxpay.channel.AbstractConverter;
+import io.jyasonx.jsxpay.channel.Cryptor;
+import io.jyasonx.jsxpay.channel.FieldSet;
 import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.ResponseDecoder;
 import io.jyasonx.jsxpay.channel.ThirdpartyException;
 import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationResponse;
 import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
 import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
 import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
@@ -22,8 +28,13 @@ import io.jyasonx.jsxpay.util.DateUtils;
 import io.jyasonx.jsxpay.util.IdUtils;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,6 +44,8 @@ import java.util.Objects;
 public class WechatConverter extends AbstractConverter {
 
     private static final String TEMPLATE_ATTRIBUTE_REQUEST = "request";
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final String XML_NODE_ROOT = "xml";
 
     protected static final String CODE_SUCCESS = "SUCCESS";
     private static final String CODE_ORDER_NOT_EXIST = "ORDERNOTEXIST";
@@ -40,9 +53,16 @@ public class WechatConverter extends AbstractConverter {
 
     private final Template transactionTemplate;
     private final Template transactionQueryTemplate;
-    private final XStream stream;
+    private final TemplateModel idUtilsModel;
+    private final TemplateModel dateUtilsModel;
+    private final TemplateModel dateTimeFormatterModel;
+    private final ResponseDecoder<ResponseMapper> decoder;
 
     public WechatConverter() {
+        this(new StaxResponseDecoder());
+    }
+
+    public WechatConverter(ResponseDecoder<ResponseMapper> decoder) {
         Configuration configuration = FREEMARKER_HELPER.getConfiguration();
         try {
             transactionTemplate = configuration.getTemplate("WECHAT_Transaction.ftl");
@@ -51,34 +71,77 @@ public class WechatConverter extends AbstractConverter {
             throw new ThirdpartyException("Failed to initialize templates.", ex);
         }
 
-        stream = new XStream();
-        XStream.setupDefaultSecurity(stream);
-        stream.allowTypes(new Class[]{ResponseMapper.class});
-        stream.processAnnotations(ResponseMapper.class);
-        stream.ignoreUnknownElements();
+        try {
+            BeansWrapper wrapper = new BeansWrapperBuilder(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS).build();
+            TemplateHashModel templateHashModel = wrapper.getStaticModels();
+            idUtilsModel = templateHashModel.get(IdUtils.class.getName());
+            dateUtilsModel = templateHashModel.get(DateUtils.class.getName());
+            dateTimeFormatterModel = templateHashModel.get(DateTimeFormatter.class.getName());
+        } catch (TemplateModelException ex) {
+            throw new ThirdpartyException("Failed to initialize template models.", ex);
+        }
+
+        register(RequestType.TRANSACTION, WechatRequestWriters::transaction);
+        register(RequestType.TRANSACTION_QUERY, WechatRequestWriters::transactionQuery);
+
+        this.decoder = decoder;
     }
 
+    /**
+     * Same as the single line XML rendered by the templates, values are not escaped either.
+     */
     @Override
-    protected String from(TransactionRequest request) {
+    protected void serialize(FieldSet fields, StringBuilder buffer) {
+        buffer.append(XML_DECLARATION).append('<').append(XML_NODE_ROOT).append('>');
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.name(i);
+            buffer.append('<').append(name).append('>').append(fields.value(i)).append("</").append(name).append('>');
+        }
+        buffer.append("</").append(XML_NODE_ROOT).append('>');
+    }
 
-        try {
-            BeansWrapper wrapper = new BeansWrapperBuilder(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS).build();
-            TemplateHashModel templateHashModel = wrapper.getStaticModels();
+    @Override
+    public Response readFrom(InputStream response, Request request) {
+        return toResponse(decoder.decode(response, request), request);
+    }
 
-            Map<String, Object> data = new HashMap<>();
-            data.put(TEMPLATE_ATTRIBUTE_REQUEST, request);
-            data.put(IdUtils.class.getSimpleName(), templateHashModel.get(IdUtils.class.getName()));
-            data.put(DateUtils.class.getSimpleName(), templateHashModel.get(DateUtils.class.getName()));
-            data.put(DateTimeFormatter.class.getSimpleName(), templateHashModel.get(DateTimeFormatter.class.getName()));
-            return render(transactionTemplate, data);
-        } catch (TemplateModelException ex) {
-            throw new ThirdpartyException(ex.getMessage(), ex);
+    /**
+     * Verifies and decodes the response in a single pass of the decoder.
+     */
+    @Override
+    public Response readFrom(InputStream response, Request request, Cryptor cryptor) {
+        return toResponse(decoder.decode(response, request, cryptor), request);
+    }
+
+    private Response toResponse(ResponseMapper mapper, Request request) {
+        switch (request.getType()) {
+            case TRANSACTION:
+                return toTransactionResponse(mapper);
+            case TRANSACTION_QUERY:
+                return toTransactionQueryResponse(mapper);
+            case TRANSACTION_NOTIFICATION:
+                return toTransactionNotificationResponse(mapper);
+            default:
+                throw new UnsupportedOperationException("Unsupported request type was used!");
         }
     }
 
+    @Override
+    protected String from(TransactionRequest request) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(TEMPLATE_ATTRIBUTE_REQUEST, request);
+        data.put(IdUtils.class.getSimpleName(), idUtilsModel);
+        data.put(DateUtils.class.getSimpleName(), dateUtilsModel);
+        data.put(DateTimeFormatter.class.getSimpleName(), dateTimeFormatterModel);
+        return render(transactionTemplate, data);
+    }
+
     @Override
     protected TransactionResponse toTransactionResponse(String content, Request request) {
-        ResponseMapper mapper = (ResponseMapper) stream.fromXML(content);
+        return toTransactionResponse(decode(content, request));
+    }
+
+    private TransactionResponse toTransactionResponse(ResponseMapper mapper) {
         TransactionResponse response = new TransactionResponse();
         response.setCode(mapper.getCode());
         response.setMessage(mapper.getMessage());
@@ -100,22 +163,18 @@ public class WechatConverter extends AbstractConverter {
 
     @Override
     protected String from(TransactionQueryRequest request) {
-        try {
-            BeansWrapper wrapper = new BeansWrapperBuilder(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS).build();
-            TemplateHashModel templateHashModel = wrapper.getStaticModels();
-
-            Map<String, Object> data = new HashMap<>();
-            data.put(TEMPLATE_ATTRIBUTE_REQUEST, request);
-            data.put(IdUtils.class.getSimpleName(), templateHashModel.get(IdUtils.class.getName()));
-            return render(transactionQueryTemplate, data);
-        } catch (TemplateModelException ex) {
-            throw new ThirdpartyException(ex.getMessage(), ex);
-        }
+        Map<String, Object> data = new HashMap<>();
+        data.put(TEMPLATE_ATTRIBUTE_REQUEST, request);
+        data.put(IdUtils.class.getSimpleName(), idUtilsModel);
+        return render(transactionQueryTemplate, data);
     }
 
     @Override
     protected TransactionQueryResponse toTransactionQueryResponse(String content, Request request) {
-        ResponseMapper mapper = (ResponseMapper) stream.fromXML(content);
+        return toTransactionQueryResponse(decode(content, request));
+    }
+
+    private TransactionQueryResponse toTransactionQueryResponse(ResponseMapper mapper) {
         TransactionQueryResponse response = new TransactionQueryResponse();
         response.setCode(mapper.getCode());
         response.setMessage(mapper.getMessage());
@@ -131,7 +190,7 @@ public class WechatConverter extends AbstractConverter {
                 status = TransactionStatus.SUCCEED;
             } else if (CODE_ORDER_NOT_EXIST.equals(mapper.getErrorCode())) {
                 status = TransactionStatus.FAILED;
-            } else if (CODES_FAILED.contains(mapper.getTradeState())) {
+            } else if (!Strings.isNullOrEmpty(mapper.getTradeState()) && CODES_FAILED.contains(mapper.getTradeState())) {
                 status = TransactionStatus.FAILED;
             } else {
                 status = TransactionStatus.PROCESSING;
@@ -148,4 +207,36 @@ public class WechatConverter extends AbstractConverter {
                 .build());
         return response;
     }
+
+    @Override
+    protected TransactionNotificationResponse toTransactionNotificationResponse(String content, Request request) {
+        return toTransactionNotificationResponse(decode(content, request));
+    }
+
+    private TransactionNotificationResponse toTransactionNotificationResponse(ResponseMapper mapper) {
+        TransactionNotificationResponse response = new TransactionNotificationResponse();
+        response.setCode(mapper.getCode());
+        response.setMessage(mapper.getMessage());
+
+        boolean succeed = CODE_SUCCESS.equals(mapper.getCode()) && CODE_SUCCESS.equals(mapper.getResultCode());
+        LocalDateTime completedTime = Objects.nonNull(mapper.getFinishedTime())
+                ? LocalDateTime.parse(mapper.getFinishedTime(), DateUtils.DATE_TIME) : null;
+        response.setTransaction(Transaction.builder()
+                .status(succeed ? TransactionStatus.SUCCEED : TransactionStatus.FAILED)
+                .channelSerialNo(mapper.getOutTradeNo())
+                .thirdpartySerialNo(mapper.getTransactionId())
+                .amount(Strings.isNullOrEmpty(mapper.getTotalFee())
+                        ? null : new BigDecimal(mapper.getTotalFee()).movePointLeft(2))
+                .completedTime(completedTime)
+                .settlementDate(Objects.nonNull(completedTime) ? completedTime.toLocalDate() : null)
+                .code(Strings.isNullOrEmpty(mapper.getErrorCode()) ? mapper.getResultCode() : mapper.getErrorCode())
+                .message(mapper.getErrorMessage())
+                .build());
+        return response;
+    }
+
+    private ResponseMapper decode(String content, Request request) {
+        Charset charset = Charset.forName(request.getConfig().getEncoding());
+        return decoder.decode(new ByteArrayInputStream(content.getBytes(charset)), request);
+    }
 }
@@ -1,7 +1,11 @@
 package io.jyasonx.jsxpay.channel.wechat;
 
+import com.google.common.base.Strings;
 import com.thoughtworks.xstream.XStream;
+import io.jyasonx.jsxpay.channel.Cryptor;
+import io.jyasonx.jsxpay.channel.FieldSet;
 import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.RequestType;
 import io.jyasonx.jsxpay.channel.ThirdpartyException;
 import io.jyasonx.jsxpay.util.SecurityUtils;
 import io.jyasonx.jsxpay.util.StringUtils;
@@ -11,6 +15,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.binary.Hex;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.regex.Pattern;
@@ -20,13 +26,16 @@ import static io.jyasonx.jsxpay.util.StringUtils.AMPERSAND;
 import static io.jyasonx.jsxpay.util.StringUtils.EQUAL_SIGN;
 
 @Slf4j
-public class WechatCryptor {
+public class WechatCryptor implements Cryptor {
 
     private static final String XML_NODE_ROOT = "xml";
     private static final String XML_NODE_SIGN = "sign";
     private static final String XML_NAME_KEY = "key";
 
-    private static final String XML_NODE_CODE = "result_code";
+    private static final String XML_NODE_CODE = "return_code";
+
+    private static final byte BYTE_EQUAL_SIGN = '=';
+    private static final byte BYTE_AMPERSAND = '&';
 
     private static final Pattern SIGNATURE_REPLACEMENT = Pattern.compile("(?<=<sign>)(.*?)(?=</sign>)");
 
@@ -40,6 +49,7 @@ public class WechatCryptor {
         stream.registerConverter(new NestedMapConverter(OrdinalType.ASCII));
     }
 
+    @Override
     public String sign(String content, Request request) {
 
         try {
@@ -57,12 +67,22 @@ public class WechatCryptor {
         }
     }
 
+    /**
+     * Signs the fields in the same canonical form as {@link #sign(String, Request)} does, fields
+     * with empty values and the signature itself are excluded.
+     */
+    @Override
+    public void sign(FieldSet fields, Request request) {
+        fields.set(XML_NODE_SIGN, digest(fields, request));
+    }
+
+    @Override
     public void verify(String content, Request request) {
         try {
             @SuppressWarnings("unchecked")
             Map<String, String> elements = (Map) stream.fromXML(content);
 
-            if (!CODE_SUCCESS.equals(elements.get(XML_NODE_CODE))) {
+            if (!isSigned(elements.get(XML_NODE_CODE), request)) {
                 return;
             }
             String originalSign = elements.remove(XML_NODE_SIGN);
@@ -81,4 +101,61 @@ public class WechatCryptor {
         }
     }
 
+    /**
+     * Verifies the fields in the same way as {@link #verify(String, Request)} does, without
+     * parsing the response again.
+     */
+    @Override
+    public void verify(FieldSet fields, Request request) {
+        if (!isSigned(fields.get(XML_NODE_CODE), request)) {
+            return;
+        }
+        String originalSign = fields.get(XML_NODE_SIGN);
+        String sign = digest(fields, request);
+
+        if (!sign.equalsIgnoreCase(originalSign)) {
+            log.error("The invalid signature '{}' was found in response!", originalSign);
+            throw new ThirdpartyException("Invalid signature found in response");
+        }
+    }
+
+    /**
+     * WeChat Pay signs everything but the responses of failed communications, whose return code is
+     * not successful. A notification is always sent with the successful return code, the one
+     * without it is rejected, instead of being trusted without a signature.
+     */
+    private static boolean isSigned(String code, Request request) {
+        if (CODE_SUCCESS.equals(code)) {
+            return true;
+        }
+        if (request.getType() == RequestType.TRANSACTION_NOTIFICATION) {
+            log.error("The notification with unexpected return code '{}' was rejected!", code);
+            throw new ThirdpartyException("Unexpected return code found in notification");
+        }
+        return false;
+    }
+
+    /**
+     * Digests the canonical form 'name=value&...&key=secret' of fields in ASCII order of names
+     * incrementally without building the whole string.
+     */
+    private String digest(FieldSet fields, Request request) {
+        Charset charset = Charset.forName(request.getConfig().getEncoding());
+        MessageDigest digest = SecurityUtils.getMessageDigest(request.getConfig().getSignatureAlgorithm());
+        for (int index : fields.sorted()) {
+            String name = fields.name(index);
+            String value = fields.value(index);
+            if (XML_NODE_SIGN.equals(name) || Strings.isNullOrEmpty(value)) {
+                continue;
+            }
+            digest.update(name.getBytes(charset));
+            digest.update(BYTE_EQUAL_SIGN);
+            digest.update(value.getBytes(charset));
+            digest.update(BYTE_AMPERSAND);
+        }
+        digest.update(XML_NAME_KEY.getBytes(charset));
+        digest.update(BYTE_EQUAL_SIGN);
+        digest.update(request.getConfig().getSecretKey().getBytes(charset));
+        return Hex.encodeHexString(digest.digest()).toUpperCase();
+    }
 }
@@ -1,83 +1,177 @@
 package io.jyasonx.jsxpay.channel.wechat;
 
+import com.google.common.base.Strings;
 import io.jyasonx.jsxpay.channel.AbstractHttpProcessor;
+import io.jyasonx.jsxpay.channel.ChannelHttpClientRegistry;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.FieldSet;
 import io.jyasonx.jsxpay.channel.Request;
-import io.jyasonx.jsxpay.channel.Response;
 import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.archive.MessageArchive;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.warmup.WarmUpUtils;
+import io.jyasonx.jsxpay.channel.warmup.Warmable;
 import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.util.DateUtils;
+import io.jyasonx.jsxpay.util.IdUtils;
 import io.jyasonx.jsxpay.util.SecurityUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.util.EntityUtils;
 
+import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.security.*;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static io.jyasonx.jsxpay.util.StringUtils.DASH;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
-public class WechatProcessor extends AbstractHttpProcessor {
+public class WechatProcessor extends AbstractHttpProcessor implements Warmable {
     public static final String BEAN_NAME = ChannelType.WECHAT_NAME + NAME_SUFFIX;
     private static final String URL_UNIFIED_ORDER = "/unifiedorder";
     private static final String URL_ORDER_QUERY = "/orderquery";
 
+    private static final String NOTIFICATION_ACKNOWLEDGEMENT
+            = "<xml><return_code><![CDATA[SUCCESS]]></return_code><return_msg><![CDATA[OK]]></return_msg></xml>";
+
     private static final Header HEADER_XML
             = new BasicHeader("Content-Type", "text/xml; charset=utf8");
 
-    private static final Map<String, HttpClient> httpClients = new ConcurrentHashMap<>();
+    private static final ChannelHttpClientRegistry DEFAULT_HTTP_CLIENT_REGISTRY
+            = new ChannelHttpClientRegistry(WechatProcessor::createSslContext);
 
-    private WechatConverter converter;
-    private WechatCryptor cryptor;
+    private final WechatConverter converter;
+    // not timed, so that the synthetic requests of warm-up stay out of the metrics
+    private final WechatCryptor cryptor;
 
     public WechatProcessor(HttpClient httpClient, WechatConverter converter, WechatCryptor cryptor) {
-        // This httpClient will not be used.
-        super(httpClient);
+        this(httpClient, converter, cryptor, DEFAULT_HTTP_CLIENT_REGISTRY);
+    }
+
+    public WechatProcessor(HttpClient httpClient, WechatConverter converter, WechatCryptor cryptor,
+                           MessageArchive archive) {
+        this(httpClient, converter, cryptor, DEFAULT_HTTP_CLIENT_REGISTRY, archive);
+    }
+
+    public WechatProcessor(HttpClient httpClient, WechatConverter converter, WechatCryptor cryptor,
+                           ChannelHttpClientRegistry httpClientRegistry) {
+        this(httpClient, converter, cryptor, httpClientRegistry, null);
+    }
+
+    /**
+     * With the archive, the raw messages are no longer logged. Disable
+     * {@link Config#isCaptureContent()} to keep them off the heap too.
+     */
+    public WechatProcessor(HttpClient httpClient, WechatConverter converter, WechatCryptor cryptor,
+                           ChannelHttpClientRegistry httpClientRegistry, MessageArchive archive) {
+        super(httpClient, converter, cryptor, httpClientRegistry, archive);
         this.converter = converter;
         this.cryptor = cryptor;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Returns the acknowledgement of a handled notification, so that it will not be sent again.
+     */
     @Override
-    public <T extends Response> T execute(Request request) {
-        try {
-            String requestString = converter.writeTo(request);
-            String signedRequestString = cryptor.sign(requestString, request);
-            log.info("signed string: {}", signedRequestString);
-
-            request.setContent(signedRequestString);
-
-            HttpRequestBase requestBase = compose(request, signedRequestString);
+    public String from(Request request) {
+        return NOTIFICATION_ACKNOWLEDGEMENT;
+    }
 
-            HttpEntity responseEntity = doExecute(requestBase);
-            String responseString = EntityUtils.toString(responseEntity, request.getConfig().getEncoding());
-            log.info("response string: {}", responseString);
+    /**
+     * Builds the HTTP clients with the key material parsed, opens a connection to the channel if
+     * {@link Config#isWarmUpConnections()}, and runs synthetic requests and responses through the
+     * encoding, signing, verification and decoding of live ones, so that the JIT compiles them
+     * before live traffic comes.
+     */
+    @Override
+    public void warmUp(Config config) {
+        HttpClient httpClient = getHttpClientRegistry().getHttpClient(config);
+        CloseableHttpAsyncClient httpAsyncClient = getHttpClientRegistry().getHttpAsyncClient(config);
+        if (config.isWarmUpConnections() && !Strings.isNullOrEmpty(config.getBaseUrl())) {
+            connect(config, httpClient, httpAsyncClient);
+        }
 
-            cryptor.verify(responseString, request);
+        FieldSet fields = new FieldSet();
+        for (int i = 0; i < config.getWarmUpIterations(); i++) {
+            Transaction transaction = WarmUpUtils.transaction();
+            TransactionRequest request = new TransactionRequest();
+            request.setConfig(config);
+            request.setTransaction(transaction);
+            TransactionQueryRequest queryRequest = new TransactionQueryRequest();
+            queryRequest.setConfig(config);
+            queryRequest.getTransactions().add(transaction);
+            TransactionNotificationRequest notificationRequest = new TransactionNotificationRequest();
+            notificationRequest.setConfig(config);
+
+            WarmUpUtils.write(converter, cryptor, request);
+            WarmUpUtils.write(converter, cryptor, queryRequest);
+            String response = responseOf(transaction, request, fields);
+            WarmUpUtils.read(converter, cryptor, response, request);
+            WarmUpUtils.read(converter, cryptor, response, queryRequest);
+            WarmUpUtils.read(converter, cryptor, response, notificationRequest);
+        }
+    }
 
-            Response response = converter.readFrom(responseString, request);
-            response.setContent(responseString);
+    /**
+     * Returns the signed response of a paid transaction, which is decoded as the response of any
+     * request type.
+     */
+    @SuppressWarnings("SpellCheckingInspection")
+    private String responseOf(Transaction transaction, Request request, FieldSet fields) {
+        Config config = request.getConfig();
+        fields.clear();
+        fields.add("return_code", WechatConverter.CODE_SUCCESS)
+                .add("return_msg", "OK")
+                .add("appid", config.getAppId())
+                .add("mch_id", config.getMerchantNo())
+                .add("nonce_str", IdUtils.uuidWithoutDash())
+                .add("sign", "")
+                .add("result_code", WechatConverter.CODE_SUCCESS)
+                .add("prepay_id", "wx" + IdUtils.uuidWithoutDash())
+                .add("trade_type", "NATIVE")
+                .add("out_trade_no", transaction.getChannelSerialNo())
+                .add("transaction_id", IdUtils.uuidWithoutDash())
+                .add("total_fee", transaction.getAmount().movePointRight(2).toPlainString())
+                .add("time_end", LocalDateTime.now().format(DateUtils.DATE_TIME))
+                .add("trade_state", WechatConverter.CODE_SUCCESS);
+        cryptor.sign(fields, request);
+        StringBuilder content = new StringBuilder();
+        converter.serialize(fields, content);
+        return content.toString();
+    }
 
-            return (T) response;
-        } catch (IOException ex) {
-            log.error("Failed to read the HTTP entity from response!", ex);
-            throw new ThirdpartyException("Error reading the HTTP entity from response", ex);
+    /**
+     * Opens a connection of each HTTP client by a GET of the base URL, the TLS handshake is done
+     * and the connection is kept alive in the pool. It is only best effort, as the channel might
+     * not serve the base URL, hence opted in by the config.
+     */
+    private void connect(Config config, HttpClient httpClient, CloseableHttpAsyncClient httpAsyncClient) {
+        try {
+            EntityUtils.consume(httpClient.execute(new HttpGet(config.getBaseUrl())).getEntity());
+            httpAsyncClient.execute(new HttpGet(config.getBaseUrl()), null)
+                    .get(config.getSocketTimeout(), TimeUnit.MILLISECONDS);
+        } catch (IOException | ExecutionException | TimeoutException ex) {
+            log.warn("Failed to connect to channel '{}' ahead of requests!", config.getChannelNo(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
-
     }
 
-    private HttpRequestBase compose(Request request, String content) {
+    @Override
+    protected HttpRequestBase compose(Request request, HttpEntity entity) {
         String contextUrl;
         switch (request.getType()) {
             case TRANSACTION:
@@ -91,42 +185,21 @@ public class WechatProcessor extends AbstractHttpProcessor {
         }
         HttpPost post = new HttpPost(request.getConfig().getBaseUrl() + contextUrl);
         post.setHeader(HEADER_XML);
-        post.setEntity(new StringEntity(content, request.getConfig().getEncoding()));
+        post.setEntity(entity);
         return post;
     }
 
-    /**
-     * used when http client need certificate
-     */
-    private HttpClient getHttpClient(Request request) {
-
-        String keyName = request.getConfig().getChannelType().name() + DASH + request.getConfig().getChannelNo();
-        if (httpClients.containsKey(keyName)) {
-            return httpClients.get(keyName);
-        }
-
+    private static SSLContext createSslContext(Config config) {
         try {
-            KeyStore keyStore = SecurityUtils.getKeyStore(request.getConfig().getPrivateKeyType(),
-                    request.getConfig().getPrivateKey(), request.getConfig().getPrivateKeyPassword(),
+            KeyStore keyStore = SecurityUtils.getKeyStore(config.getPrivateKeyType(),
+                    config.getPrivateKey(), config.getPrivateKeyPassword(),
                     SecurityUtils.DEFAULT_PROVIDER);
 
-            HttpClient httpClient = HttpClients
-                    .custom()
-                    .setDefaultRequestConfig(RequestConfig
-                            .custom()
-                            .setConnectTimeout(30000)
-                            .setConnectionRequestTimeout(30000)
-                            .setSocketTimeout(30000)
-                            .build())
-                    .setSSLContext(SSLContextBuilder
-                            .create()
-                            .setProtocol("TLSv1")
-                            .loadKeyMaterial(keyStore, request.getConfig().getPrivateKeyPassword().toCharArray())
-                            .build())
-                    .setSSLHostnameVerifier(SSLConnectionSocketFactory.getDefaultHostnameVerifier())
+            return SSLContextBuilder
+                    .create()
+                    .setProtocol("TLSv1")
+                    .loadKeyMaterial(keyStore, config.getPrivateKeyPassword().toCharArray())
                     .build();
-            httpClients.put(keyName, httpClient);
-            return httpClient;
         } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException | UnrecoverableKeyException ex) {
             log.error("Wechat httpClient building failed.", ex);
             throw new ThirdpartyException(ex.getMessage(), ex);
@@ -0,0 +1,102 @@
+package io.jyasonx.jsxpay.channel.wechat;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.FieldSet;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.util.DateUtils;
+import io.jyasonx.jsxpay.util.IdUtils;
+import io.jyasonx.jsxpay.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled writers of WeChat requests, each of them writes the same fields in the same order
+ * as the template of the same request type does.
+ */
+@SuppressWarnings("SpellCheckingInspection")
+final class WechatRequestWriters {
+
+    static final String XML_NODE_SIGN = "sign";
+
+    private static final String FEE_TYPE = "CNY";
+    private static final String TRADE_TYPE = "NATIVE";
+    // the same expression as 'compress_single_line' in "WECHAT_Macro.ftl"
+    private static final Pattern SINGLE_LINE = Pattern.compile("^\\s+|\\s+$|\\n|\\r", Pattern.MULTILINE);
+
+    private WechatRequestWriters() {
+    }
+
+    /**
+     * @see "WECHAT_Transaction.ftl"
+     */
+    static void transaction(TransactionRequest request, FieldSet fields) {
+        Config config = request.getConfig();
+        Transaction transaction = request.getTransaction();
+
+        field(fields, "appid", config.getAppId());
+        field(fields, "mch_id", config.getMerchantNo());
+        field(fields, "nonce_str", IdUtils.uuidWithoutDash());
+        field(fields, "out_trade_no", transaction.getChannelSerialNo());
+        field(fields, "product_id", transaction.getChannelSerialNo());
+        field(fields, "sign_type", config.getSignatureAlgorithm());
+        field(fields, "body", transaction.getDescription());
+        field(fields, "detail", transaction.getDescription());
+        field(fields, "notify_url", config.getCallbackUrl());
+        field(fields, "fee_type", FEE_TYPE);
+        field(fields, "total_fee", fee(transaction.getAmount()));
+        field(fields, "time_start", request.getCreatedTime().format(DateUtils.DATE_TIME));
+        field(fields, "time_expire", transaction.getExpireTime() == null
+                ? null : transaction.getExpireTime().format(DateUtils.DATE_TIME));
+        field(fields, "trade_type", TRADE_TYPE);
+        fields.add(XML_NODE_SIGN, StringUtils.EMPTY);
+    }
+
+    /**
+     * @see "WECHAT_TransactionQuery.ftl"
+     */
+    static void transactionQuery(TransactionQueryRequest request, FieldSet fields) {
+        Config config = request.getConfig();
+
+        field(fields, "appid", config.getAppId());
+        field(fields, "mch_id", config.getMerchantNo());
+        field(fields, "nonce_str", IdUtils.uuidWithoutDash());
+        field(fields, "out_trade_no", request.getTransactions().get(0).getChannelSerialNo());
+        fields.add(XML_NODE_SIGN, StringUtils.EMPTY);
+    }
+
+    /**
+     * Same as '${amount * 100}' with the number format '######0'.
+     */
+    private static String fee(BigDecimal amount) {
+        return amount == null ? null : amount.movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).toPlainString();
+    }
+
+    private static void field(FieldSet fields, String name, String value) {
+        if (value == null) {
+            throw new ThirdpartyException("Missing the value of element '" + name + "'");
+        }
+        fields.add(name, singleLine(value));
+    }
+
+    /**
+     * Same as the value compressed by 'compress_single_line' in its template, where the value is
+     * enclosed by tags, so the whitespace around line breaks is removed with the breaks, while
+     * the leading and trailing whitespace of a single line value is kept.
+     */
+    private static String singleLine(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                // the enclosing characters stand for the tags
+                String compressed = SINGLE_LINE.matcher('>' + value + '<').replaceAll(StringUtils.EMPTY);
+                return compressed.substring(1, compressed.length() - 1);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,53 @@
+package io.jyasonx.jsxpay.channel.wechat;
+
+import com.google.common.io.ByteStreams;
+import com.thoughtworks.xstream.XStream;
+import io.jyasonx.jsxpay.channel.Cryptor;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.ResponseDecoder;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.wechat.mapper.ResponseMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes the WeChat response with the annotations of {@link ResponseMapper} through XStream.
+ */
+@Slf4j
+public class XStreamResponseDecoder implements ResponseDecoder<ResponseMapper> {
+
+    private final XStream stream;
+
+    public XStreamResponseDecoder() {
+        stream = new XStream();
+        XStream.setupDefaultSecurity(stream);
+        stream.allowTypes(new Class[]{ResponseMapper.class});
+        stream.processAnnotations(ResponseMapper.class);
+        stream.ignoreUnknownElements();
+    }
+
+    @Override
+    public ResponseMapper decode(InputStream response, Request request) {
+        return (ResponseMapper) stream.fromXML(new InputStreamReader(response,
+                Charset.forName(request.getConfig().getEncoding())));
+    }
+
+    /**
+     * Verifies the whole content with the cryptor before decoding, the response is parsed twice.
+     */
+    @Override
+    public ResponseMapper decode(InputStream response, Request request, Cryptor cryptor) {
+        try {
+            String content = new String(ByteStreams.toByteArray(response), request.getConfig().getEncoding());
+            cryptor.verify(content, request);
+            return (ResponseMapper) stream.fromXML(content);
+        } catch (IOException ex) {
+            log.error("Failed to read the response due to an exception!", ex);
+            throw new ThirdpartyException("Error reading the response", ex);
+        }
+    }
+}
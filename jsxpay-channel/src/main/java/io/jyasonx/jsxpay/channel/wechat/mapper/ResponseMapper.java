@@ -66,4 +66,11 @@ public class ResponseMapper {
 
     @XStreamAlias("trade_state_desc")
     private String tradeStatusDescription;
+
+    // only in the notification & query of paid transaction
+    @XStreamAlias("transaction_id")
+    private String transactionId;
+
+    @XStreamAlias("total_fee")
+    private String totalFee;
 }
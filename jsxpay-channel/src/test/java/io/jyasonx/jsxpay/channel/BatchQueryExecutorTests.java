@@ -0,0 +1,129 @@
+package io.jyasonx.jsxpay.channel;
+
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchQueryExecutorTests {
+
+    private ScheduledExecutorService scheduler;
+    private AtomicInteger inFlight;
+    private AtomicInteger maxInFlight;
+    private Config config;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newScheduledThreadPool(8);
+        inFlight = new AtomicInteger();
+        maxInFlight = new AtomicInteger();
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setMaxConcurrentQueries(4);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testBoundedAndOrdered() {
+        BatchQueryExecutor executor = new BatchQueryExecutor(new StubProcessor().onExecuteAsync(this::query));
+        TransactionQueryResponse response = executor.execute(batch(50));
+
+        assertThat(response.getCode()).isEqualTo(BatchQueryExecutor.CODE_SUCCESS);
+        assertThat(response.getTransactions().stream().map(Transaction::getChannelSerialNo).collect(Collectors.toList()))
+                .isEqualTo(batch(50).getTransactions().stream().map(Transaction::getChannelSerialNo).collect(Collectors.toList()));
+        assertThat(response.getTransactions()).allMatch(transaction -> transaction.getStatus() == TransactionStatus.SUCCEED);
+        assertThat(maxInFlight.get()).isBetween(1, 4);
+    }
+
+    @Test
+    public void testPartialFailure() {
+        BatchQueryExecutor executor = new BatchQueryExecutor(new StubProcessor().onExecuteAsync(this::query));
+        TransactionQueryRequest request = batch(10);
+        request.getTransactions().get(3).setChannelSerialNo("FAIL-3");
+        request.getTransactions().get(7).setChannelSerialNo("FAIL-7");
+
+        TransactionQueryResponse response = executor.execute(request);
+        List<Transaction> failed = response.getTransactions().stream()
+                .filter(transaction -> BatchQueryExecutor.CODE_ERROR.equals(transaction.getCode()))
+                .collect(Collectors.toList());
+
+        assertThat(response.getCode()).isEqualTo(BatchQueryExecutor.CODE_PARTIAL);
+        assertThat(response.getMessage()).isEqualTo("2 of 10 queries failed");
+        assertThat(failed).extracting(Transaction::getChannelSerialNo).containsExactly("FAIL-3", "FAIL-7");
+        assertThat(failed).allMatch(transaction -> transaction.getStatus() == TransactionStatus.PROCESSING
+                && "Error connecting to remote server".equals(transaction.getMessage()));
+    }
+
+    @Test
+    public void testSaturatedNotBlocking() throws Exception {
+        config.setMaxConcurrentQueries(1);
+        config.setQueryRateLimit(50);
+        BatchQueryExecutor executor = new BatchQueryExecutor(new StubProcessor().onExecuteAsync(this::query));
+
+        CompletableFuture<TransactionQueryResponse> future = executor.executeAsync(batch(10));
+
+        // the 10 queries take at least 180 ms by the rate
+        assertThat(future).isNotDone();
+        assertThat(future.get(5L, TimeUnit.SECONDS).getCode()).isEqualTo(BatchQueryExecutor.CODE_SUCCESS);
+        assertThat(maxInFlight.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSharedResponseNotModified() {
+        TransactionQueryResponse shared = new TransactionQueryResponse();
+        shared.getTransactions().add(Transaction.builder().status(TransactionStatus.SUCCEED).build());
+        BatchQueryExecutor executor = new BatchQueryExecutor(new StubProcessor().onExecute(request -> shared));
+
+        TransactionQueryResponse response = executor.execute(batch(2));
+
+        assertThat(response.getTransactions()).extracting(Transaction::getChannelSerialNo)
+                .containsExactly("SERIAL-0", "SERIAL-1");
+        assertThat(shared.getTransactions().get(0).getChannelSerialNo()).isNull();
+    }
+
+    private TransactionQueryRequest batch(int size) {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        request.setBatch(true);
+        for (int i = 0; i < size; i++) {
+            request.getTransactions().add(Transaction.builder().channelSerialNo("SERIAL-" + i).build());
+        }
+        return request;
+    }
+
+    private CompletableFuture<TransactionQueryResponse> query(Request request) {
+        String serialNo = ((TransactionQueryRequest) request).getTransactions().get(0).getChannelSerialNo();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+        CompletableFuture<TransactionQueryResponse> future = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            inFlight.decrementAndGet();
+            if (serialNo.startsWith("FAIL")) {
+                future.completeExceptionally(new ThirdpartyException("Error connecting to remote server"));
+                return;
+            }
+            TransactionQueryResponse response = new TransactionQueryResponse();
+            response.getTransactions().add(Transaction.builder().status(TransactionStatus.SUCCEED).build());
+            future.complete(response);
+        }, 5, TimeUnit.MILLISECONDS);
+        return future;
+    }
+}
@@ -0,0 +1,117 @@
+package io.jyasonx.jsxpay.channel;
+
+import io.jyasonx.jsxpay.common.ChannelType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.ssl.SSLContexts;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChannelHttpClientRegistryTests {
+
+    private AtomicInteger builds;
+    private ChannelHttpClientRegistry registry;
+
+    @Before
+    public void setUp() {
+        builds = new AtomicInteger();
+        registry = new ChannelHttpClientRegistry(config -> {
+            builds.incrementAndGet();
+            return SSLContexts.createDefault();
+        }, 100L);
+    }
+
+    @After
+    public void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    public void testBuildOnceUnderContention() throws Exception {
+        Config config = config("key-material");
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Callable<CloseableHttpClient>> tasks = IntStream.range(0, 64)
+                    .mapToObj(i -> (Callable<CloseableHttpClient>) () -> registry.getHttpClient(config))
+                    .collect(Collectors.toList());
+            List<CloseableHttpClient> clients = executor.invokeAll(tasks).stream()
+                    .map(this::get)
+                    .distinct()
+                    .collect(Collectors.toList());
+
+            assertThat(clients).hasSize(1);
+            assertThat(builds.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRotateOnKeyMaterialChanged() {
+        CloseableHttpClient original = registry.getHttpClient(config("key-material"));
+        assertThat(registry.getHttpClient(config(new String("key-material")))).isSameAs(original);
+
+        CloseableHttpClient rotated = registry.getHttpClient(config("rotated-key-material"));
+        assertThat(rotated).isNotSameAs(original);
+        assertThat(registry.getHttpClient(config("rotated-key-material"))).isSameAs(rotated);
+        assertThat(builds.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRebuildOnSettingsChanged() {
+        CloseableHttpClient original = registry.getHttpClient(config("key-material"));
+        Config resized = config("key-material");
+        resized.setMaxConnections(resized.getMaxConnections() * 2);
+        CloseableHttpClient rebuilt = registry.getHttpClient(resized);
+        assertThat(rebuilt).isNotSameAs(original);
+
+        Config timeout = config("key-material");
+        timeout.setMaxConnections(resized.getMaxConnections());
+        timeout.setSocketTimeout(timeout.getSocketTimeout() / 2);
+        assertThat(registry.getHttpClient(timeout)).isNotSameAs(rebuilt);
+        assertThat(builds.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testAsyncClientsArePerChannel() {
+        Config config = config(null);
+        Config another = config(null);
+        another.setChannelNo("ANOTHER");
+
+        CloseableHttpAsyncClient client = registry.getHttpAsyncClient(config);
+        assertThat(client.isRunning()).isTrue();
+        assertThat(registry.getHttpAsyncClient(config)).isSameAs(client);
+        assertThat(registry.getHttpAsyncClient(another)).isNotSameAs(client);
+        assertThat(builds.get()).isEqualTo(0);
+    }
+
+    private Config config(String privateKey) {
+        Config config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setPrivateKeyType("PKCS12");
+        config.setPrivateKey(privateKey);
+        config.setPrivateKeyPassword("password");
+        return config;
+    }
+
+    private <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
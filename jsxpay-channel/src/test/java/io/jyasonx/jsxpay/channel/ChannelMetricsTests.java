@@ -0,0 +1,106 @@
+package io.jyasonx.jsxpay.channel;
+
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChannelMetricsTests {
+
+    private SimpleMeterRegistry registry;
+    private ChannelHttpClientRegistry httpClientRegistry;
+    private Config config;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        httpClientRegistry = new ChannelHttpClientRegistry(config -> null);
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("METRICS");
+        config.setMaxConnections(8);
+    }
+
+    @After
+    public void tearDown() {
+        httpClientRegistry.close();
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    public void testPhaseTimedByCryptor() {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        FieldSet fields = new FieldSet().add("sign", "");
+
+        Cryptor cryptor = new TimedCryptor(new Cryptor() {
+            @Override
+            public String sign(String content, Request request) {
+                return content;
+            }
+
+            @Override
+            public void sign(FieldSet fields, Request request) {
+                fields.set("sign", "SIGNED");
+            }
+
+            @Override
+            public void verify(String content, Request request) {
+            }
+
+            @Override
+            public void verify(FieldSet fields, Request request) {
+            }
+        });
+        cryptor.sign(fields, request);
+        cryptor.verify(fields, request);
+
+        assertThat(fields.get("sign")).isEqualTo("SIGNED");
+        assertThat(registry.get(ChannelMetrics.PHASE)
+                .tags("channelNo", "METRICS", "requestType", "TRANSACTION_QUERY", "phase", ChannelMetrics.PHASE_SIGN)
+                .timer().count()).isEqualTo(1L);
+        assertThat(registry.get(ChannelMetrics.PHASE).tag("phase", ChannelMetrics.PHASE_VERIFY)
+                .timer().count()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testPoolGauges() {
+        httpClientRegistry.getHttpAsyncClient(config);
+
+        assertThat(registry.get(ChannelMetrics.POOL).tags("channelNo", "METRICS", "client", "async", "state", "max")
+                .gauge().value()).isEqualTo(8.0);
+        assertThat(registry.get(ChannelMetrics.POOL).tags("channelNo", "METRICS", "client", "async", "state", "leased")
+                .gauge().value()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void testPhaseTimerCached() {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        Timer timer = ChannelMetrics.phase(request, ChannelMetrics.PHASE_WRITE);
+
+        assertThat(ChannelMetrics.phase(request, ChannelMetrics.PHASE_WRITE)).isSameAs(timer);
+        assertThat(ChannelMetrics.phase(request, ChannelMetrics.PHASE_READ)).isNotSameAs(timer);
+    }
+
+    @Test
+    public void testPhaseWithoutChannelNo() {
+        Config anonymous = new Config();
+        anonymous.setChannelType(ChannelType.WECHAT);
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(anonymous);
+        ChannelMetrics.phase(request, ChannelMetrics.PHASE_WRITE).record(1L, TimeUnit.MILLISECONDS);
+
+        assertThat(registry.find(ChannelMetrics.PHASE).tag("channelNo", "unknown").timer().count()).isEqualTo(1L);
+    }
+}
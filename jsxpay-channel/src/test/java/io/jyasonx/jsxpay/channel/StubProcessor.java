@@ -0,0 +1,72 @@
+package io.jyasonx.jsxpay.channel;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The processor of tests, which answers with the given functions instead of a channel. The
+ * operations without a function are not expected, as the ones of {@link AbstractHttpProcessor}.
+ * The asynchronous execution falls back to the synchronous function if only that one is given.
+ */
+public class StubProcessor extends AbstractHttpProcessor {
+
+    private Function<Request, ? extends Response> execute;
+    private Function<Request, ? extends CompletableFuture<? extends Response>> executeAsync;
+    private BiFunction<String, Request, ? extends Response> handle;
+
+    public StubProcessor() {
+        super(null);
+    }
+
+    public StubProcessor onExecute(Function<Request, ? extends Response> execute) {
+        this.execute = execute;
+        return this;
+    }
+
+    public StubProcessor onExecuteAsync(Function<Request, ? extends CompletableFuture<? extends Response>> executeAsync) {
+        this.executeAsync = executeAsync;
+        return this;
+    }
+
+    public StubProcessor onHandle(BiFunction<String, Request, ? extends Response> handle) {
+        this.handle = handle;
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Response> T execute(Request request) {
+        if (execute == null) {
+            return super.execute(request);
+        }
+        return (T) execute.apply(request);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Response> CompletableFuture<T> executeAsync(Request request) {
+        if (executeAsync != null) {
+            return (CompletableFuture<T>) executeAsync.apply(request);
+        }
+        if (execute != null) {
+            return CompletableFuture.completedFuture(execute(request));
+        }
+        return super.executeAsync(request);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Response> T handle(String notification, Request request) {
+        if (handle == null) {
+            return super.handle(notification, request);
+        }
+        return (T) handle.apply(notification, request);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Request> T handle(String notification, Request request, Function<Response, Request> function) {
+        return (T) function.apply(handle(notification, request));
+    }
+}
@@ -0,0 +1,75 @@
+package io.jyasonx.jsxpay.channel;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteBufferTests {
+
+    private static final String CONTENT = "<xml><body>测试交易</body><attach>😀</attach></xml>";
+
+    @Test
+    public void testAppendSameAsGetBytes() {
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, Charset.forName("GBK"), StandardCharsets.ISO_8859_1}) {
+            WriteBuffer buffer = WriteBuffer.acquire();
+            try {
+                buffer.append(CONTENT, charset).append(new StringBuilder(CONTENT), charset);
+
+                byte[] expected = (CONTENT + CONTENT).getBytes(charset);
+                assertThat(Arrays.copyOf(buffer.array(), buffer.length())).isEqualTo(expected);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    @Test
+    public void testGrowAndEntity() throws Exception {
+        String content = Strings.repeat(CONTENT, 1000);
+        WriteBuffer buffer = WriteBuffer.acquire();
+        try {
+            buffer.append(content, StandardCharsets.UTF_8);
+            assertThat(buffer.toString(StandardCharsets.UTF_8)).isEqualTo(content);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            buffer.asEntity().writeTo(output);
+            assertThat(output.toByteArray()).isEqualTo(content.getBytes(StandardCharsets.UTF_8));
+            assertThat(ByteStreams.toByteArray(buffer.asEntity().getContent())).isEqualTo(output.toByteArray());
+            assertThat(buffer.asEntity().getContentLength()).isEqualTo(output.size());
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testReleasedBufferIsEmpty() {
+        WriteBuffer buffer = WriteBuffer.acquire();
+        buffer.append(CONTENT, StandardCharsets.UTF_8);
+        buffer.release();
+
+        assertThat(WriteBuffer.acquire().length()).isEqualTo(0);
+    }
+
+    @Test
+    public void testReleasedOnlyOnce() {
+        WriteBuffer buffer = WriteBuffer.acquire();
+        buffer.release();
+        buffer.release();
+
+        WriteBuffer first = WriteBuffer.acquire();
+        WriteBuffer second = WriteBuffer.acquire();
+        try {
+            assertThat(first).isNotSameAs(second);
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package io.jyasonx.jsxpay.channel.adapter;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import io.jyasonx.jsxpay.util.SecurityUtils;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("SpellCheckingInspection")
+public class DeclarativeConverterTests {
+
+    private static final String XML_ADAPTER = "/adapters/XML_Adapter.yml";
+
+    private KeyPair keyPair;
+    private Config config;
+    private DeclarativeConverter converter;
+    private DeclarativeCryptor cryptor;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        config = new Config();
+        config.setChannelType(ChannelType.ALIPAY);
+        config.setChannelNo("DEFAULT");
+        config.setAppId("2019050100000001");
+        config.setCallbackUrl("http://127.0.0.1/notify");
+        config.setPrivateKeyType("RSA");
+        config.setPrivateKey(Base64.encodeBase64String(keyPair.getPrivate().getEncoded()));
+        config.setPublicKeyType("RSA");
+        config.setPublicKey(Base64.encodeBase64String(keyPair.getPublic().getEncoded()));
+
+        AdapterDefinition definition = AdapterDefinition.load(ChannelType.ALIPAY);
+        converter = new DeclarativeConverter(definition);
+        cryptor = new DeclarativeCryptor(definition);
+    }
+
+    @Test
+    public void testWriteTransaction() throws Exception {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setTransaction(Transaction.builder()
+                .channelSerialNo("c91592e61b2f4fe98bb9af530b2831e4")
+                .amount(new BigDecimal("88.8"))
+                .description("测试 \"订单\"")
+                .build());
+
+        Map<String, String> form = parse(converter.writeTo(request, cryptor));
+
+        assertThat(form).containsEntry("app_id", "2019050100000001")
+                .containsEntry("method", "alipay.trade.precreate")
+                .containsEntry("charset", "UTF-8")
+                .containsEntry("notify_url", "http://127.0.0.1/notify")
+                .containsEntry("biz_content", "{\"out_trade_no\":\"c91592e61b2f4fe98bb9af530b2831e4\","
+                        + "\"total_amount\":\"88.80\",\"subject\":\"测试 \\\"订单\\\"\"}")
+                .containsEntry("sign_type", "RSA2");
+
+        // sign_type is signed in requests, though not in notifications
+        String content = form.entrySet().stream()
+                .filter(entry -> !entry.getKey().equals("sign"))
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining("&"));
+        assertThat(SecurityUtils.verify("SHA256withRSA", keyPair.getPublic(),
+                content.getBytes(StandardCharsets.UTF_8), Base64.decodeBase64(form.get("sign")))).isTrue();
+    }
+
+    @Test
+    public void testMissingValueRejected() {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setTransaction(Transaction.builder().amount(BigDecimal.ONE).description("test").build());
+
+        assertThatThrownBy(() -> converter.writeTo(request, cryptor))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Missing the value of element 'out_trade_no'");
+    }
+
+    @Test
+    public void testReadQueryResponse() {
+        String root = "{\"code\":\"10000\",\"msg\":\"Success\",\"buyer_logon_id\":\"159****5620\","
+                + "\"out_trade_no\":\"c91592e61b2f4fe98bb9af530b2831e4\",\"send_pay_date\":\"2019-05-01 12:00:00\","
+                + "\"total_amount\":\"88.80\",\"trade_no\":\"2019050122001400000000000001\","
+                + "\"trade_status\":\"TRADE_SUCCESS\",\"fund_bill_list\":[{\"amount\":\"88.80\"}]}";
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+
+        TransactionQueryResponse response = (TransactionQueryResponse) converter.readFrom(
+                stream("{\"alipay_trade_query_response\":" + root + ",\"sign\":\"" + sign(root) + "\"}"),
+                request, cryptor);
+
+        assertThat(response.getCode()).isEqualTo("10000");
+        Transaction transaction = response.getTransactions().get(0);
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.SUCCEED);
+        assertThat(transaction.getThirdpartySerialNo()).isEqualTo("2019050122001400000000000001");
+        assertThat(transaction.getAmount()).isEqualByComparingTo("88.8");
+        assertThat(transaction.getCompletedTime()).isEqualTo(LocalDateTime.of(2019, 5, 1, 12, 0, 0));
+    }
+
+    @Test
+    public void testReadTamperedResponse() {
+        String root = "{\"code\":\"10000\",\"msg\":\"Success\",\"out_trade_no\":\"c91592e61b2f4fe98bb9af530b2831e4\","
+                + "\"trade_status\":\"WAIT_BUYER_PAY\"}";
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        String response = "{\"alipay_trade_query_response\":" + root.replace("WAIT_BUYER_PAY", "TRADE_SUCCESS")
+                + ",\"sign\":\"" + sign(root) + "\"}";
+
+        assertThatThrownBy(() -> converter.readFrom(stream(response), request, cryptor))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Invalid signature found in response");
+    }
+
+    @Test
+    public void testReadUnsignedFailure() {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+
+        TransactionResponse response = (TransactionResponse) converter.readFrom(stream(
+                "{\"alipay_trade_precreate_response\":{\"code\":\"40002\",\"msg\":\"Invalid Arguments\","
+                        + "\"sub_code\":\"isv.invalid-app-id\",\"sub_msg\":\"无效的AppID参数\"}}"), request, cryptor);
+
+        assertThat(response.getCode()).isEqualTo("40002");
+        assertThat(response.getTransaction().getStatus()).isEqualTo(TransactionStatus.FAILED);
+        assertThat(response.getTransaction().getCode()).isEqualTo("isv.invalid-app-id");
+    }
+
+    @Test
+    public void testReadUnsuccessfulStatusIgnored() {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+
+        TransactionQueryResponse response = (TransactionQueryResponse) converter.readFrom(stream(
+                "{\"alipay_trade_query_response\":{\"code\":\"40004\",\"msg\":\"Business Failed\","
+                        + "\"sub_code\":\"ACQ.TRADE_NOT_EXIST\",\"trade_status\":\"TRADE_SUCCESS\"}}"),
+                request, cryptor);
+
+        assertThat(response.getTransactions().get(0).getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+    }
+
+    @Test
+    public void testRejectUnsignedNotification() {
+        TransactionNotificationRequest request = new TransactionNotificationRequest();
+        request.setConfig(config);
+
+        assertThatThrownBy(() -> converter.readFrom(stream("out_trade_no=c91592e61b2f4fe98bb9af530b2831e4"
+                + "&trade_status=TRADE_CLOSED&sign_type=RSA2"), request, cryptor))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Missing signature in response");
+    }
+
+    @Test
+    public void testReadNotification() throws Exception {
+        String pairs = "gmt_payment=2019-05-01 12:00:00&out_trade_no=c91592e61b2f4fe98bb9af530b2831e4"
+                + "&total_amount=88.80&trade_no=2019050122001400000000000001&trade_status=TRADE_SUCCESS";
+        StringBuilder notification = new StringBuilder();
+        for (String pair : pairs.split("&")) {
+            String[] parts = pair.split("=");
+            notification.append(parts[0]).append('=').append(URLEncoder.encode(parts[1], "UTF-8")).append('&');
+        }
+        notification.append("sign_type=RSA2&sign=").append(URLEncoder.encode(sign(pairs), "UTF-8"));
+        TransactionNotificationRequest request = new TransactionNotificationRequest();
+        request.setConfig(config);
+
+        TransactionNotificationResponse response = (TransactionNotificationResponse) converter.readFrom(
+                stream(notification.toString()), request, cryptor);
+
+        assertThat(response.getTransaction().getStatus()).isEqualTo(TransactionStatus.SUCCEED);
+        assertThat(response.getTransaction().getChannelSerialNo()).isEqualTo("c91592e61b2f4fe98bb9af530b2831e4");
+        assertThat(response.getTransaction().getSettlementDate()).isEqualTo("2019-05-01");
+    }
+
+    @Test
+    public void testReadNestedXml() {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+
+        TransactionQueryResponse response = (TransactionQueryResponse) new DeclarativeConverter(
+                AdapterDefinition.load(XML_ADAPTER)).readFrom(stream(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?><response><version>V2.0</version>"
+                        + "<result><code>000000</code><desc>成功</desc></result><tradeNum>c91592e6</tradeNum>"
+                        + "<amount>8880</amount><status>2</status><payFinishTime>20190501120000</payFinishTime>"
+                        + "</response>"), request);
+
+        assertThat(response.getCode()).isEqualTo("000000");
+        assertThat(response.getMessage()).isEqualTo("成功");
+        Transaction transaction = response.getTransactions().get(0);
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.SUCCEED);
+        assertThat(transaction.getAmount()).isEqualByComparingTo("88.8");
+        assertThat(transaction.getChannelSerialNo()).isEqualTo("c91592e6");
+    }
+
+    @Test
+    public void testRejectForgedXmlFailure() {
+        TransactionNotificationRequest request = new TransactionNotificationRequest();
+        request.setConfig(config);
+        AdapterDefinition definition = AdapterDefinition.load(XML_ADAPTER);
+        DeclarativeConverter xmlConverter = new DeclarativeConverter(definition);
+        String notification = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><response><version>V2.0</version>"
+                + "<result><code>FAIL</code><desc>失败</desc></result><tradeNum>c91592e6</tradeNum>"
+                + "<amount>8880</amount><status>2</status></response>";
+
+        assertThatThrownBy(() -> xmlConverter.readFrom(stream(notification), request, new DeclarativeCryptor(definition)))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Missing signature in response");
+
+        TransactionNotificationResponse response = (TransactionNotificationResponse) xmlConverter.readFrom(
+                stream(notification), request);
+        assertThat(response.getTransaction().getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+    }
+
+    @Test
+    public void testUnknownSourceRejected() {
+        AdapterDefinition definition = AdapterDefinition.load(ChannelType.ALIPAY);
+        definition.getRequests().values().iterator().next().get(0).setSource("transaction.unknown");
+
+        assertThatThrownBy(() -> new DeclarativeConverter(definition))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Unknown source 'transaction.unknown' of field 'app_id'");
+    }
+
+    private String sign(String content) {
+        return Base64.encodeBase64String(SecurityUtils.sign("SHA256withRSA", keyPair.getPrivate(),
+                content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> parse(String form) throws Exception {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (String pair : form.split("&")) {
+            int index = pair.indexOf('=');
+            fields.put(pair.substring(0, index), URLDecoder.decode(pair.substring(index + 1), "UTF-8"));
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,105 @@
+package io.jyasonx.jsxpay.channel.adapter;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.FieldSet;
+import io.jyasonx.jsxpay.channel.RequestType;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.adapter.AdapterDefinition.ResponseDefinition;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.wechat.WechatCryptor;
+import io.jyasonx.jsxpay.common.ChannelType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("SpellCheckingInspection")
+public class DeclarativeCryptorTests {
+
+    private Config config;
+    private AdapterDefinition definition;
+
+    @Before
+    public void setUp() {
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setSignatureAlgorithm("MD5");
+        config.setSecretKey("192006250b4c09247ec02edce69f6a2d");
+
+        definition = new AdapterDefinition();
+        definition.setChannelType(ChannelType.WECHAT);
+        definition.getSignature().setAlgorithm("MD5");
+        ResponseDefinition response = new ResponseDefinition();
+        response.setCode("return_code");
+        response.setSuccessCodes(Collections.singletonList("SUCCESS"));
+        definition.getResponses().put(RequestType.TRANSACTION_QUERY, response);
+    }
+
+    @Test
+    public void testSignSameAsWechat() {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        FieldSet fields = fields();
+        FieldSet expected = fields();
+
+        new DeclarativeCryptor(definition).sign(fields, request);
+        new WechatCryptor().sign(expected, request);
+
+        assertThat(fields.get("sign")).isEqualTo(expected.get("sign")).hasSize(32);
+    }
+
+    @Test
+    public void testVerify() {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        DeclarativeCryptor cryptor = new DeclarativeCryptor(definition);
+        FieldSet fields = fields().add("return_code", "SUCCESS");
+        cryptor.sign(fields, request);
+
+        cryptor.verify(fields, request);
+
+        fields.set("total_fee", "1");
+        assertThatThrownBy(() -> cryptor.verify(fields, request))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Invalid signature found in response");
+    }
+
+    @Test
+    public void testMissingSignatureRejected() {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        DeclarativeCryptor cryptor = new DeclarativeCryptor(definition);
+
+        cryptor.verify(fields().add("return_code", "FAIL"), request);
+
+        assertThatThrownBy(() -> cryptor.verify(fields().add("return_code", "SUCCESS"), request))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Missing signature in response");
+    }
+
+    @Test
+    public void testUnsupportedAlgorithmRejected() {
+        definition.getSignature().setAlgorithm("SHA256withUNKNOWN");
+
+        assertThatThrownBy(() -> new DeclarativeCryptor(definition))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Unsupported signature algorithm 'SHA256withUNKNOWN'");
+    }
+
+    private static FieldSet fields() {
+        return new FieldSet()
+                .add("appid", "wx99bcf174724d0ae0")
+                .add("mch_id", "1251462001")
+                .add("nonce_str", "52dfdd18186a42cabb96f98882c4e69d")
+                .add("out_trade_no", "c91592e61b2f4fe98bb9af530b2831e4")
+                .add("body", "test transaction")
+                .add("detail", "")
+                .add("total_fee", "100")
+                .add("sign", "");
+    }
+}
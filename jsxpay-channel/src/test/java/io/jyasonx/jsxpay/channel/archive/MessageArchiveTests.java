@@ -0,0 +1,169 @@
+package io.jyasonx.jsxpay.channel.archive;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageArchiveTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private MeterRegistry registry;
+    private Config config;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder("archive").toPath();
+        registry = new SimpleMeterRegistry();
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+    }
+
+    @Test
+    public void testLookupBySerialNo() {
+        MessageArchive archive = new MessageArchive(directory, 1024 * 1024, 1024 * 1024, registry);
+        archive.archive(config, "20190101000001", Direction.REQUEST, "<xml><a>请求</a></xml>");
+        archive.archive(config, "20190101000002", Direction.REQUEST, "<xml><b/></xml>");
+        byte[] response = "..<xml><return_code>SUCCESS</return_code></xml>..".getBytes(StandardCharsets.UTF_8);
+        archive.archive(config, "20190101000001", Direction.RESPONSE, response, 2, response.length - 4);
+        archive.close();
+
+        List<ArchivedMessage> messages = archive.lookup("20190101000001");
+
+        assertThat(messages).extracting(ArchivedMessage::getDirection)
+                .containsExactly(Direction.REQUEST, Direction.RESPONSE);
+        assertThat(messages).extracting(ArchivedMessage::getContent)
+                .containsExactly("<xml><a>请求</a></xml>", "<xml><return_code>SUCCESS</return_code></xml>");
+        assertThat(messages.get(0).getChannel()).isEqualTo("WECHAT-DEFAULT");
+        assertThat(messages.get(0).getSerialNo()).isEqualTo("20190101000001");
+        assertThat(archive.lookup("20190101000003")).isEmpty();
+    }
+
+    @Test
+    public void testIndexReloaded() {
+        MessageArchive archive = new MessageArchive(directory, 1024 * 1024, 1024 * 1024, registry);
+        archive.archive(config, "20190101000001", Direction.REQUEST, "<xml><a/></xml>");
+        archive.close();
+
+        MessageArchive reopened = new MessageArchive(directory, 1024 * 1024, 1024 * 1024, registry);
+        reopened.archive(config, "20190101000001", Direction.NOTIFICATION, "<xml><c/></xml>");
+        reopened.close();
+
+        assertThat(reopened.lookup("20190101000001")).extracting(ArchivedMessage::getContent)
+                .containsExactly("<xml><a/></xml>", "<xml><c/></xml>");
+    }
+
+    @Test
+    public void testSegmentRolled() throws Exception {
+        MessageArchive archive = new MessageArchive(directory, 1024 * 1024, 256, registry);
+        for (int i = 0; i < 10; i++) {
+            archive.archive(config, "2019010100000" + i, Direction.REQUEST, "<xml><index>" + i + "</index></xml>");
+        }
+        archive.close();
+
+        try (Stream<Path> paths = Files.list(directory)) {
+            assertThat(paths.filter(it -> it.getFileName().toString().endsWith(".log")).count()).isGreaterThan(1L);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertThat(archive.lookup("2019010100000" + i)).extracting(ArchivedMessage::getContent)
+                    .containsExactly("<xml><index>" + i + "</index></xml>");
+        }
+    }
+
+    @Test
+    public void testLookupAcrossSealedSegments() {
+        MessageArchive archive = new MessageArchive(directory, 1024 * 1024, 256, registry);
+        archive.archive(config, "20190101000001", Direction.REQUEST, "<xml><a/></xml>");
+        for (int i = 0; i < 10; i++) {
+            archive.archive(config, "2019010200000" + i, Direction.REQUEST, "<xml><index>" + i + "</index></xml>");
+        }
+        archive.archive(config, "20190101000001", Direction.RESPONSE, "<xml><b/></xml>");
+        archive.close();
+
+        assertThat(archive.lookup("20190101000001")).extracting(ArchivedMessage::getContent)
+                .containsExactly("<xml><a/></xml>", "<xml><b/></xml>");
+    }
+
+    @Test
+    public void testFilteredBySealedSegment() throws Exception {
+        MessageArchive archive = new MessageArchive(directory, 1024 * 1024, 256, registry);
+        for (int i = 0; i < 10; i++) {
+            archive.archive(config, "2019010100000" + i, Direction.REQUEST, "<xml><index>" + i + "</index></xml>");
+        }
+        archive.close();
+
+        try (Stream<Path> paths = Files.list(directory)) {
+            assertThat(paths.filter(it -> it.getFileName().toString().endsWith(".bloom")).count())
+                    .isGreaterThan(1L);
+        }
+        assertThat(archive.lookup("20190101000010")).isEmpty();
+
+        // segments sealed without a filter are scanned
+        Files.delete(directory.resolve("segment-00000001.bloom"));
+        assertThat(archive.lookup("20190101000000")).extracting(ArchivedMessage::getContent)
+                .containsExactly("<xml><index>0</index></xml>");
+    }
+
+    @Test
+    public void testRetainedByMaxBytes() throws Exception {
+        MessageArchive archive = new MessageArchive(directory, 1024 * 1024, 256, 1024, Duration.ofDays(1L), registry);
+        for (int i = 0; i < 40; i++) {
+            archive.archive(config, String.format("201901010000%02d", i), Direction.REQUEST,
+                    "<xml><index>" + i + "</index></xml>");
+        }
+        archive.close();
+
+        try (Stream<Path> paths = Files.list(directory)) {
+            assertThat(paths.mapToLong(it -> it.toFile().length()).sum()).isLessThanOrEqualTo(1024L + 256L);
+        }
+        assertThat(archive.lookup("20190101000000")).isEmpty();
+        assertThat(archive.lookup("20190101000039")).isNotEmpty();
+    }
+
+    @Test
+    public void testRetainedByMaxAge() throws Exception {
+        MessageArchive archive = new MessageArchive(directory, 1024 * 1024, 1024 * 1024, registry);
+        archive.archive(config, "20190101000001", Direction.REQUEST, "<xml><a/></xml>");
+        archive.close();
+        Files.setLastModifiedTime(directory.resolve("segment-00000001.log"),
+                FileTime.from(Instant.now().minus(Duration.ofDays(2L))));
+
+        MessageArchive reopened = new MessageArchive(directory, 1024 * 1024, 1024 * 1024, Long.MAX_VALUE,
+                Duration.ofDays(1L), registry);
+        reopened.close();
+
+        assertThat(reopened.lookup("20190101000001")).isEmpty();
+        assertThat(Files.exists(directory.resolve("segment-00000001.idx"))).isFalse();
+    }
+
+    @Test
+    public void testDroppedIfStagingFull() {
+        MessageArchive archive = new MessageArchive(directory, 64, 1024 * 1024, registry);
+        byte[] content = new byte[128];
+
+        archive.archive(config, "20190101000001", Direction.REQUEST, content, 0, content.length);
+        archive.close();
+
+        assertThat(registry.counter("jsxpay.channel.archive.dropped").count()).isEqualTo(1.0);
+        assertThat(archive.lookup("20190101000001")).isEmpty();
+    }
+}
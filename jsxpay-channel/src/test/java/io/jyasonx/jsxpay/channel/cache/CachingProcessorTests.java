@@ -0,0 +1,167 @@
+package io.jyasonx.jsxpay.channel.cache;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.StubProcessor;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachingProcessorTests {
+
+    private final Map<String, TransactionStatus> statuses = new HashMap<>();
+    private final Map<String, String> codes = new HashMap<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private CachingProcessor processor;
+    private Config config;
+
+    @Before
+    public void setUp() {
+        processor = new CachingProcessor(new StubProcessor().onExecute(this::execute).onHandle(this::handle), 100L, Duration.ofMinutes(1L), new SimpleMeterRegistry());
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+    }
+
+    @Test
+    public void testTerminalQueryCached() {
+        statuses.put("a", TransactionStatus.SUCCEED);
+        statuses.put("b", TransactionStatus.FAILED);
+
+        TransactionQueryResponse first = processor.execute(query("a"));
+        TransactionQueryResponse second = processor.execute(query("a"));
+        processor.executeAsync(query("b")).join();
+        TransactionQueryResponse third = processor.<TransactionQueryResponse>executeAsync(query("b")).join();
+
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(second.getCode()).isEqualTo("SUCCESS");
+        assertThat(second.getTransactions()).hasSize(1);
+        assertThat(second.getTransactions().get(0).getStatus()).isEqualTo(TransactionStatus.SUCCEED);
+        assertThat(second.getTransactions().get(0)).isNotSameAs(first.getTransactions().get(0));
+        assertThat(third.getTransactions().get(0).getStatus()).isEqualTo(TransactionStatus.FAILED);
+
+        statuses.put("c", TransactionStatus.CLOSED);
+        processor.execute(query("c"));
+        TransactionQueryResponse fourth = processor.execute(query("c"));
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(fourth.getTransactions().get(0).getStatus()).isEqualTo(TransactionStatus.CLOSED);
+
+        // another channel never shares the cached result
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("OTHER");
+        processor.execute(query("a"));
+        assertThat(calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testProcessingNeverCached() {
+        statuses.put("a", TransactionStatus.PROCESSING);
+
+        processor.execute(query("a"));
+        processor.execute(query("a"));
+        assertThat(calls.get()).isEqualTo(2);
+
+        statuses.put("a", TransactionStatus.SUCCEED);
+        processor.execute(query("a"));
+        processor.execute(query("a"));
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testNotExistNeverCached() {
+        statuses.put("a", TransactionStatus.FAILED);
+        codes.put("a", "ORDERNOTEXIST");
+        statuses.put("b", TransactionStatus.FAILED);
+        codes.put("b", "ACQ.TRADE_NOT_EXIST");
+        statuses.put("c", TransactionStatus.FAILED);
+        codes.put("c", "SUCCESS");
+
+        for (int i = 0; i < 2; i++) {
+            processor.execute(query("a"));
+            processor.execute(query("b"));
+            processor.execute(query("c"));
+        }
+        assertThat(calls.get()).isEqualTo(5);
+    }
+
+    @Test
+    public void testPartiallyCachedQuery() {
+        statuses.put("a", TransactionStatus.SUCCEED);
+        statuses.put("b", TransactionStatus.PROCESSING);
+        processor.execute(query("a"));
+
+        TransactionQueryResponse response = processor.execute(query("a", "b"));
+
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(response.getTransactions()).extracting(Transaction::getStatus)
+                .containsExactly(TransactionStatus.SUCCEED, TransactionStatus.PROCESSING);
+    }
+
+    @Test
+    public void testFilledFromNotifications() {
+        statuses.put("a", TransactionStatus.SUCCEED);
+        statuses.put("b", TransactionStatus.FAILED);
+        TransactionNotificationRequest request = new TransactionNotificationRequest();
+        request.setConfig(config);
+
+        processor.handle("a", request);
+        processor.handle("b", request, response -> request);
+
+        TransactionQueryResponse response = processor.execute(query("a"));
+        assertThat(calls.get()).isEqualTo(0);
+        assertThat(response.getTransactions().get(0).getChannelSerialNo()).isEqualTo("a");
+        assertThat(response.getTransactions().get(0).getThirdpartySerialNo()).isEqualTo("4200000301201905016123456789");
+
+        // a failed payment does not close the order
+        processor.execute(query("b"));
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    private TransactionQueryRequest query(String... channelSerialNos) {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        for (String channelSerialNo : channelSerialNos) {
+            request.getTransactions().add(Transaction.builder().channelSerialNo(channelSerialNo).build());
+        }
+        return request;
+    }
+
+    private TransactionQueryResponse execute(Request request) {
+        calls.incrementAndGet();
+        TransactionQueryResponse response = new TransactionQueryResponse();
+        response.setCode("SUCCESS");
+        for (Transaction transaction : ((TransactionQueryRequest) request).getTransactions()) {
+            response.getTransactions().add(Transaction.builder()
+                    .status(statuses.get(transaction.getChannelSerialNo()))
+                    .code(codes.get(transaction.getChannelSerialNo()))
+                    .build());
+        }
+        return response;
+    }
+
+    private TransactionNotificationResponse handle(String notification, Request request) {
+        TransactionNotificationResponse response = new TransactionNotificationResponse();
+        response.setCode("SUCCESS");
+        response.setTransaction(Transaction.builder()
+                .status(statuses.get(notification))
+                .channelSerialNo(notification)
+                .thirdpartySerialNo("4200000301201905016123456789")
+                .build());
+        return response;
+    }
+}
@@ -0,0 +1,121 @@
+package io.jyasonx.jsxpay.channel.cache;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.StubProcessor;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PrepayCachingProcessorTests {
+
+    private static final LocalDateTime EXPIRE_TIME = LocalDateTime.now().plusHours(1L);
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile TransactionStatus status = TransactionStatus.PROCESSING;
+    private PrepayCachingProcessor processor;
+    private Config config;
+
+    @Before
+    public void setUp() {
+        processor = new PrepayCachingProcessor(new StubProcessor().onExecute(this::execute), 100L, Duration.ofHours(2L), new SimpleMeterRegistry());
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setCallbackUrl("https://pay.example.com/notifications");
+    }
+
+    @Test
+    public void testRetryReused() {
+        TransactionResponse first = processor.execute(transaction("a", "12.30", EXPIRE_TIME));
+        TransactionResponse second = processor.execute(transaction("a", "12.3", EXPIRE_TIME));
+        TransactionResponse third = processor.<TransactionResponse>executeAsync(
+                transaction("a", "12.30", EXPIRE_TIME)).join();
+
+        assertThat(calls.get()).isEqualTo(1);
+        for (TransactionResponse response : new TransactionResponse[]{second, third}) {
+            assertThat(response.getCode()).isEqualTo("SUCCESS");
+            assertThat(response.getTransaction().getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+            assertThat(response.getTransaction().getThirdpartyPrepayNo())
+                    .isEqualTo(first.getTransaction().getThirdpartyPrepayNo());
+            assertThat(response.getTransaction().getCodeUrl()).isEqualTo(first.getTransaction().getCodeUrl());
+        }
+
+        processor.execute(transaction("b", "12.30", EXPIRE_TIME));
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testChangedRetryRejected() {
+        processor.execute(transaction("a", "12.30", EXPIRE_TIME));
+
+        assertThatThrownBy(() -> processor.execute(transaction("a", "12.31", EXPIRE_TIME)))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Transaction was created with different parameters");
+        assertThatThrownBy(() -> processor.execute(transaction("a", "12.30", EXPIRE_TIME.plusMinutes(1L))))
+                .isInstanceOf(ThirdpartyException.class);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailureNotCached() {
+        status = TransactionStatus.FAILED;
+        processor.execute(transaction("a", "12.30", EXPIRE_TIME));
+        processor.execute(transaction("a", "12.30", EXPIRE_TIME));
+
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testExpiredWithTransaction() throws Exception {
+        LocalDateTime expireTime = LocalDateTime.now().plusNanos(Duration.ofMillis(100L).toNanos());
+        processor.execute(transaction("a", "12.30", expireTime));
+        processor.execute(transaction("a", "12.30", expireTime));
+        assertThat(calls.get()).isEqualTo(1);
+
+        Thread.sleep(150L);
+        processor.execute(transaction("a", "12.30", expireTime));
+        processor.execute(transaction("a", "12.30", expireTime));
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    private TransactionRequest transaction(String channelSerialNo, String amount, LocalDateTime expireTime) {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setTransaction(Transaction.builder()
+                .channelSerialNo(channelSerialNo)
+                .description("测试交易")
+                .amount(new BigDecimal(amount))
+                .expireTime(expireTime)
+                .build());
+        return request;
+    }
+
+    private TransactionResponse execute(Request request) {
+        int call = calls.incrementAndGet();
+        TransactionResponse response = new TransactionResponse();
+        response.setCode("SUCCESS");
+        response.setMessage("OK");
+        response.setTransaction(Transaction.builder()
+                .status(status)
+                .code("SUCCESS")
+                .thirdpartyPrepayNo("wx3016571557788" + call)
+                .codeUrl("weixin://wxpay/bizpayurl?pr=dSLgwq" + call)
+                .build());
+        return response;
+    }
+}
@@ -0,0 +1,125 @@
+package io.jyasonx.jsxpay.channel.execution;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.StubProcessor;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BlockingChannelExecutorTests {
+
+    private final Response expected = new TransactionQueryResponse();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile String thread;
+    private StubProcessor stub;
+    private ChannelExecutor executor;
+    private TransactionQueryRequest request;
+
+    @Before
+    public void setUp() {
+        stub = new StubProcessor().onExecute(this::execute);
+        executor = ChannelExecutor.create(stub);
+        Config config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setConnectionRequestTimeout(100);
+        request = new TransactionQueryRequest();
+        request.setConfig(config);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.close();
+    }
+
+    @Test
+    public void testExecute() {
+        release.countDown();
+
+        Response response = executor.execute(request).join();
+
+        assertThat(response).isSameAs(expected);
+        if (BlockingChannelExecutor.isVirtualThreadSupported()) {
+            assertThat(thread).startsWith("channel-virtual-");
+        } else {
+            assertThat(thread).startsWith("channel-platform-");
+        }
+    }
+
+    @Test
+    public void testConcurrentCallsCapped() throws Exception {
+        request.getConfig().setMaxConcurrentCalls(1);
+
+        CompletableFuture<Response> first = executor.execute(request);
+        assertThat(started.await(1L, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Response> second = executor.execute(request);
+
+        assertThatThrownBy(second::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(ThirdpartyException.class)
+                .hasMessageContaining("Too many concurrent calls to channel");
+
+        // the permit is given back once the call in flight completes
+        release.countDown();
+        assertThat(first.join()).isSameAs(expected);
+        assertThat(executor.execute(request).join()).isSameAs(expected);
+    }
+
+    @Test
+    public void testPlatformPoolSaturated() throws Exception {
+        executor.close();
+        executor = BlockingChannelExecutor.platform(stub, 1, 1);
+
+        executor.execute(request);
+        assertThat(started.await(1L, TimeUnit.SECONDS)).isTrue();
+        executor.execute(request);
+
+        assertThatThrownBy(() -> executor.execute(request).join())
+                .hasCauseInstanceOf(ThirdpartyException.class)
+                .hasMessageContaining("Channel executor is saturated");
+    }
+
+    @Test
+    public void testSaturatedChannelFailsFastOnPlatform() throws Exception {
+        executor.close();
+        executor = BlockingChannelExecutor.platform(stub, 2, 1);
+        request.getConfig().setMaxConcurrentCalls(1);
+
+        executor.execute(request);
+        assertThat(started.await(1L, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Response> second = executor.execute(request);
+
+        // rejected before taking a thread of the pool
+        assertThat(second).isCompletedExceptionally();
+        assertThatThrownBy(second::join)
+                .hasCauseInstanceOf(ThirdpartyException.class)
+                .hasMessageContaining("Too many concurrent calls to channel");
+    }
+
+    private Response execute(Request request) {
+        thread = Thread.currentThread().getName();
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return expected;
+    }
+}
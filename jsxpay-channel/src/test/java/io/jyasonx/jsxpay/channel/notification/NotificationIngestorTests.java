@@ -0,0 +1,145 @@
+package io.jyasonx.jsxpay.channel.notification;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationResponse;
+import io.jyasonx.jsxpay.channel.wechat.WechatConverter;
+import io.jyasonx.jsxpay.channel.wechat.WechatCryptor;
+import io.jyasonx.jsxpay.channel.wechat.WechatProcessor;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("SpellCheckingInspection")
+public class NotificationIngestorTests {
+
+    private static final String NOTIFICATION = "<xml><appid><![CDATA[wx99bcf174724d0ae0]]></appid>\n" +
+            "<bank_type><![CDATA[CFT]]></bank_type>\n" +
+            "<cash_fee><![CDATA[1]]></cash_fee>\n" +
+            "<mch_id><![CDATA[1251462001]]></mch_id>\n" +
+            "<nonce_str><![CDATA[5d2b6c2a8db53831f7eda20af46e531c]]></nonce_str>\n" +
+            "<openid><![CDATA[oUpF8uMEb4qRXf22hE3X68TekukE]]></openid>\n" +
+            "<out_trade_no><![CDATA[%s]]></out_trade_no>\n" +
+            "<result_code><![CDATA[SUCCESS]]></result_code>\n" +
+            "<return_code><![CDATA[SUCCESS]]></return_code>\n" +
+            "<sign><![CDATA[]]></sign>\n" +
+            "<time_end><![CDATA[20190411165434]]></time_end>\n" +
+            "<total_fee>1</total_fee>\n" +
+            "<trade_type><![CDATA[NATIVE]]></trade_type>\n" +
+            "<transaction_id><![CDATA[4200000289201904115532789012]]></transaction_id>\n" +
+            "</xml>";
+
+    private final BlockingQueue<TransactionNotificationResponse> handled = new LinkedBlockingQueue<>();
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private WechatCryptor cryptor;
+    private WechatProcessor processor;
+    private NotificationIngestor ingestor;
+    private Config config;
+
+    @Before
+    public void setUp() {
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setSignatureAlgorithm("MD5");
+        config.setSecretKey("0123456789abcdef0123456789abcdef");
+        cryptor = new WechatCryptor();
+        processor = new WechatProcessor(null, new WechatConverter(), cryptor);
+        ingestor = new NotificationIngestor(processor, response -> {
+            if (response.getTransaction().getChannelSerialNo().startsWith("BLOCKED")) {
+                await(blocked);
+            }
+            handled.add(response);
+        }, 1, 1, 60000L, 1000L);
+    }
+
+    @After
+    public void tearDown() {
+        blocked.countDown();
+        ingestor.close();
+    }
+
+    @Test
+    public void testIngestOnce() throws Exception {
+        String notification = notification("a14f9fc9cfb34451b930b1530eb8ed1c");
+        for (int i = 0; i < 3; i++) {
+            assertThat(ingestor.ingest(notification, config)).contains("SUCCESS");
+        }
+
+        TransactionNotificationResponse response = handled.poll(5L, TimeUnit.SECONDS);
+        assertThat(response).isNotNull();
+        assertThat(response.getTransaction().getStatus()).isEqualTo(TransactionStatus.SUCCEED);
+        assertThat(response.getTransaction().getChannelSerialNo()).isEqualTo("a14f9fc9cfb34451b930b1530eb8ed1c");
+        assertThat(response.getTransaction().getThirdpartySerialNo()).isEqualTo("4200000289201904115532789012");
+        assertThat(response.getTransaction().getAmount()).isEqualByComparingTo(new BigDecimal("0.01"));
+        assertThat(handled.poll(100L, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void testRejectInvalidSignature() {
+        String notification = notification("a14f9fc9cfb34451b930b1530eb8ed1c").replace("<total_fee>1<", "<total_fee>100<");
+        assertThatThrownBy(() -> ingestor.ingest(notification, config))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Invalid signature found in response");
+        assertThat(handled).isEmpty();
+    }
+
+    @Test
+    public void testRejectForgedFailure() {
+        String unsigned = String.format(NOTIFICATION, "a14f9fc9cfb34451b930b1530eb8ed1c")
+                .replace("<result_code><![CDATA[SUCCESS]]>", "<result_code><![CDATA[FAIL]]>");
+        assertThatThrownBy(() -> ingestor.ingest(unsigned, config))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Invalid signature found in response");
+
+        String failed = unsigned.replace("<return_code><![CDATA[SUCCESS]]>", "<return_code><![CDATA[FAIL]]>");
+        assertThatThrownBy(() -> ingestor.ingest(failed, config))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Unexpected return code found in notification");
+        assertThat(handled).isEmpty();
+    }
+
+    @Test
+    public void testRejectWhenSaturated() throws Exception {
+        ingestor.ingest(notification("BLOCKED-1"), config);
+        ingestor.ingest(notification("QUEUED-2"), config);
+        String rejected = notification("REJECTED-3");
+        assertThatThrownBy(() -> ingestor.ingest(rejected, config))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Notification pipeline is saturated");
+
+        blocked.countDown();
+        assertThat(handled.poll(5L, TimeUnit.SECONDS)).isNotNull();
+        assertThat(handled.poll(5L, TimeUnit.SECONDS)).isNotNull();
+
+        // the rejected one is not remembered, so its retry is handled
+        ingestor.ingest(rejected, config);
+        assertThat(handled.poll(5L, TimeUnit.SECONDS).getTransaction().getChannelSerialNo()).isEqualTo("REJECTED-3");
+    }
+
+    private String notification(String outTradeNo) {
+        TransactionNotificationRequest request = new TransactionNotificationRequest();
+        request.setConfig(config);
+        return cryptor.sign(String.format(NOTIFICATION, outTradeNo), request);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
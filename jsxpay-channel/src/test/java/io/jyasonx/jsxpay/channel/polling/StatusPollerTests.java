@@ -0,0 +1,122 @@
+package io.jyasonx.jsxpay.channel.polling;
+
+import io.jyasonx.jsxpay.channel.BatchQueryExecutor;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.StubProcessor;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StatusPollerTests {
+
+    private final Map<String, Integer> queries = new ConcurrentHashMap<>();
+    private final Queue<String> completed = new ConcurrentLinkedQueue<>();
+    private final Queue<String> abandoned = new ConcurrentLinkedQueue<>();
+
+    @Test
+    public void testPollUntilTerminal() throws Exception {
+        Config config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setPollingIntervals(new long[]{10L, 20L});
+        config.setMaxPollingAttempts(5);
+
+        try (StatusPoller poller = new StatusPoller(new BatchQueryExecutor(new StubProcessor().onExecuteAsync(this::query)), new StatusListener() {
+            @Override
+            public void onCompleted(Config config, Transaction transaction) {
+                completed.add(transaction.getChannelSerialNo());
+            }
+
+            @Override
+            public void onAbandoned(Config config, String channelSerialNo) {
+                abandoned.add(channelSerialNo);
+            }
+        }, 5L)) {
+            for (int i = 0; i < 100; i++) {
+                poller.poll(config, "SUCCEED-" + i);
+            }
+            poller.poll(config, "PROCESSING");
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (poller.size() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertThat(poller.size()).isEqualTo(0);
+        }
+
+        assertThat(completed).hasSize(100).doesNotHaveDuplicates();
+        assertThat(abandoned).containsExactly("PROCESSING");
+        assertThat(queries.get("SUCCEED-0")).isEqualTo(3);
+        assertThat(queries.get("PROCESSING")).isEqualTo(5);
+    }
+
+    @Test
+    public void testSlowChannelNotBlockingOthers() throws Exception {
+        Config slow = new Config();
+        slow.setChannelType(ChannelType.WECHAT);
+        slow.setChannelNo("SLOW");
+        slow.setPollingIntervals(new long[]{10L});
+        slow.setMaxConcurrentQueries(1);
+        Config fast = new Config();
+        fast.setChannelType(ChannelType.WECHAT);
+        fast.setChannelNo("FAST");
+        fast.setPollingIntervals(new long[]{10L});
+
+        try (StatusPoller poller = new StatusPoller(new BatchQueryExecutor(new StubProcessor().onExecuteAsync(this::query)), new StatusListener() {
+            @Override
+            public void onCompleted(Config config, Transaction transaction) {
+                completed.add(transaction.getChannelSerialNo());
+            }
+
+            @Override
+            public void onAbandoned(Config config, String channelSerialNo) {
+                abandoned.add(channelSerialNo);
+            }
+        }, 5L)) {
+            for (int i = 0; i < 3; i++) {
+                poller.poll(slow, "HANGING-" + i);
+            }
+            Thread.sleep(50L);
+            for (int i = 0; i < 10; i++) {
+                poller.poll(fast, "SUCCEED-" + i);
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (completed.size() < 10 && System.nanoTime() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertThat(completed).hasSize(10).allMatch(serialNo -> serialNo.startsWith("SUCCEED"));
+            assertThat(poller.size()).isEqualTo(3);
+            // the others are still queued behind the hanging one
+            assertThat(queries.keySet().stream().filter(serialNo -> serialNo.startsWith("HANGING"))).hasSize(1);
+        }
+    }
+
+    private CompletableFuture<TransactionQueryResponse> query(Request request) {
+        String serialNo = ((TransactionQueryRequest) request).getTransactions().get(0).getChannelSerialNo();
+        int attempts = queries.merge(serialNo, 1, Integer::sum);
+        if (serialNo.startsWith("HANGING")) {
+            return new CompletableFuture<>();
+        }
+
+        TransactionQueryResponse response = new TransactionQueryResponse();
+        response.getTransactions().add(Transaction.builder()
+                .status(serialNo.startsWith("SUCCEED") && attempts >= 3
+                        ? TransactionStatus.SUCCEED : TransactionStatus.PROCESSING)
+                .build());
+        return CompletableFuture.completedFuture(response);
+    }
+}
@@ -0,0 +1,63 @@
+package io.jyasonx.jsxpay.channel.polling;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static io.jyasonx.jsxpay.channel.polling.TimingWheel.NONE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTests {
+
+    @Test
+    public void testExpireOnDeadline() {
+        TimingWheel wheel = new TimingWheel(16);
+        Random random = new Random(42L);
+        long[] deadlines = new long[10000];
+        for (int i = 0; i < deadlines.length; i++) {
+            long delay = 1L + random.nextInt(i % 2 == 0 ? 64 : 300000);
+            int id = wheel.allocate("SERIAL-" + i, 0);
+            assertThat(id).isEqualTo(i);
+            wheel.schedule(id, delay);
+            deadlines[id] = delay;
+        }
+
+        int expired = 0;
+        while (wheel.size() > 0) {
+            for (int id = wheel.advance(); id != NONE; ) {
+                int following = wheel.next(id);
+                assertThat(wheel.tick()).isEqualTo(deadlines[id]);
+                assertThat(wheel.serialNo(id)).isEqualTo("SERIAL-" + id);
+                wheel.release(id);
+                expired++;
+                id = following;
+            }
+        }
+        assertThat(expired).isEqualTo(deadlines.length);
+    }
+
+    @Test
+    public void testRescheduleAndReuse() {
+        TimingWheel wheel = new TimingWheel(4);
+        int id = wheel.allocate("SERIAL", 3);
+        wheel.schedule(id, 100L);
+        assertThat(advance(wheel, 100)).isEqualTo(id);
+
+        assertThat(wheel.incrementAttempts(id)).isEqualTo(1);
+        wheel.schedule(id, 5000L);
+        assertThat(advance(wheel, 5000)).isEqualTo(id);
+        assertThat(wheel.channel(id)).isEqualTo(3);
+
+        wheel.release(id);
+        assertThat(wheel.allocate("ANOTHER", 0)).isEqualTo(id);
+        assertThat(wheel.attempts(id)).isEqualTo(0);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    private static int advance(TimingWheel wheel, int ticks) {
+        for (int i = 1; i < ticks; i++) {
+            assertThat(wheel.advance()).isEqualTo(NONE);
+        }
+        return wheel.advance();
+    }
+}
@@ -0,0 +1,101 @@
+package io.jyasonx.jsxpay.channel.reactive;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.StubProcessor;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NonBlockingProcessorTests {
+
+    private Scheduler scheduler;
+    private volatile CompletableFuture<Response> future;
+    private volatile String thread;
+    private volatile CountDownLatch sent;
+    private NonBlockingProcessor processor;
+    private TransactionQueryRequest request;
+
+    @Before
+    public void setUp() {
+        scheduler = Schedulers.newParallel("test-signing", 2);
+        processor = new NonBlockingProcessor(new StubProcessor().onExecuteAsync(this::executeAsync), scheduler);
+        Config config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        request = new TransactionQueryRequest();
+        request.setConfig(config);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Test
+    public void testExecuteOnScheduler() {
+        future = CompletableFuture.completedFuture(new TransactionQueryResponse());
+
+        Response response = processor.execute(request).block();
+
+        assertThat(response).isSameAs(future.join());
+        assertThat(thread).startsWith("test-signing");
+    }
+
+    @Test
+    public void testNothingSentUntilSubscribed() {
+        future = CompletableFuture.completedFuture(new TransactionQueryResponse());
+
+        processor.execute(request);
+
+        assertThat(thread).isNull();
+    }
+
+    @Test
+    public void testErrorUnwrapped() {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(new ThirdpartyException("Error connecting to remote server"));
+
+        assertThatThrownBy(() -> processor.execute(request).block())
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Error connecting to remote server");
+    }
+
+    @Test
+    public void testCancelAbortsCall() throws Exception {
+        future = new CompletableFuture<>();
+        sent = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(1);
+        future.whenComplete((response, ex) -> completed.countDown());
+
+        Disposable subscription = processor.execute(request).subscribe();
+        assertThat(sent.await(1L, TimeUnit.SECONDS)).isTrue();
+        subscription.dispose();
+
+        assertThat(completed.await(1L, TimeUnit.SECONDS)).isTrue();
+        assertThat(future.isCancelled()).isTrue();
+    }
+
+    private CompletableFuture<Response> executeAsync(Request request) {
+        thread = Thread.currentThread().getName();
+        if (sent != null) {
+            sent.countDown();
+        }
+        return future;
+    }
+}
@@ -0,0 +1,128 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.StubProcessor;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.common.ChannelType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HedgingProcessorTests {
+
+    private ScheduledExecutorService scheduler;
+    private final List<CompletableFuture<Response>> futures = new CopyOnWriteArrayList<>();
+    private volatile long[] latencies;
+    private volatile boolean failing;
+    private HedgingProcessor processor;
+    private Config config;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newScheduledThreadPool(4);
+        processor = new HedgingProcessor(new StubProcessor().onExecuteAsync(this::executeAsync));
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setHedgingEnabled(true);
+        config.setHedgingPercentile(0.9);
+        config.setHedgingMinDelay(20L);
+        config.setHedgingBudget(1.0);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testHedgeSlowQuery() {
+        warmUp();
+
+        latencies = new long[]{1000L, 5L};
+        Response response = processor.execute(query());
+
+        assertThat(response.getMessage()).isEqualTo("5");
+        assertThat(futures).hasSize(2);
+        assertThat(futures.get(0).isCancelled()).isTrue();
+    }
+
+    @Test
+    public void testTrackFailedAttempts() {
+        failing = true;
+        warmUp();
+
+        failing = false;
+        latencies = new long[]{1000L, 5L};
+        assertThat(processor.execute(query()).getMessage()).isEqualTo("5");
+    }
+
+    @Test
+    public void testNeverHedgeTransaction() {
+        warmUp();
+
+        latencies = new long[]{100L};
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        assertThat(processor.executeAsync(request).join().getMessage()).isEqualTo("100");
+        assertThat(futures).hasSize(1);
+    }
+
+    @Test
+    public void testBudgetCap() {
+        config.setHedgingBudget(0.0);
+        warmUp();
+
+        latencies = new long[]{100L, 5L};
+        assertThat(processor.execute(query()).getMessage()).isEqualTo("100");
+        assertThat(futures).hasSize(1);
+    }
+
+    private void warmUp() {
+        latencies = new long[]{1L};
+        for (int i = 0; i < 64; i++) {
+            try {
+                processor.execute(query());
+            } catch (ThirdpartyException ex) {
+                // tracked as well
+            }
+        }
+        futures.clear();
+    }
+
+    private TransactionQueryRequest query() {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        return request;
+    }
+
+    private CompletableFuture<Response> executeAsync(Request request) {
+        long latency = latencies[Math.min(futures.size(), latencies.length - 1)];
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        futures.add(future);
+        scheduler.schedule(() -> {
+            if (failing) {
+                future.completeExceptionally(new ThirdpartyException("Error connecting to remote server"));
+                return;
+            }
+            TransactionQueryResponse response = new TransactionQueryResponse();
+            response.setMessage(String.valueOf(latency));
+            future.complete(response);
+        }, latency, TimeUnit.MILLISECONDS);
+        return future;
+    }
+}
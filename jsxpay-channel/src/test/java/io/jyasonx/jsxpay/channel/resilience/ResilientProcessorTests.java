@@ -0,0 +1,124 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.StubProcessor;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ResilientProcessorTests {
+
+    private SimpleMeterRegistry registry;
+    private final List<CompletableFuture<Response>> pending = new ArrayList<>();
+    private boolean failing;
+    private int calls;
+    private ResilientProcessor processor;
+    private Config config;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        processor = new ResilientProcessor(new StubProcessor()
+                .onExecute(this::execute)
+                .onExecuteAsync(this::executeAsync), registry);
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setInitialConcurrencyLimit(4);
+        config.setMaxConcurrencyLimit(8);
+        config.setCircuitBreakerWindowSize(10);
+        config.setCircuitBreakerOpenDuration(100L);
+    }
+
+    @Test
+    public void testRejectOverLimit() {
+        for (int i = 0; i < 4; i++) {
+            processor.executeAsync(request());
+        }
+        assertThatThrownBy(() -> processor.executeAsync(request()))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessageContaining("concurrency limit");
+        assertThat(registry.get("jsxpay.channel.rejections").tag("reason", "limit").counter().count()).isEqualTo(1.0);
+
+        pending.forEach(future -> future.complete(new TransactionQueryResponse()));
+        assertThat(registry.get("jsxpay.channel.in.flight").gauge().value()).isEqualTo(0.0);
+        // grows only while at least half of the limit is in use: 4 -> 5 -> 6
+        assertThat(registry.get("jsxpay.channel.limit").gauge().value()).isEqualTo(6.0);
+    }
+
+    @Test
+    public void testDecreaseLimitOnFailure() {
+        config.setInitialConcurrencyLimit(8);
+        for (int i = 0; i < 3; i++) {
+            processor.executeAsync(request());
+        }
+        pending.forEach(future -> future.completeExceptionally(new ThirdpartyException("timeout")));
+
+        // 8 * 0.9 = 7, 7 * 0.9 = 6, 6 * 0.9 = 5
+        assertThat(registry.get("jsxpay.channel.limit").gauge().value()).isEqualTo(5.0);
+    }
+
+    @Test
+    public void testCancellationNeutral() {
+        config.setInitialConcurrencyLimit(8);
+        List<CompletableFuture<Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(processor.executeAsync(request()));
+        }
+        futures.forEach(future -> future.cancel(true));
+
+        // the losing attempts of hedging neither shrink the limit nor open the circuit
+        assertThat(registry.get("jsxpay.channel.in.flight").gauge().value()).isEqualTo(0.0);
+        assertThat(registry.get("jsxpay.channel.limit").gauge().value()).isEqualTo(8.0);
+        assertThat(registry.get("jsxpay.channel.circuit.state").gauge().value()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        failing = true;
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(() -> processor.execute(request())).hasMessage("Error connecting to remote server");
+        }
+        assertThatThrownBy(() -> processor.execute(request())).hasMessageContaining("circuit breaker is open");
+        assertThat(calls).isEqualTo(10);
+        assertThat(registry.get("jsxpay.channel.circuit.state").gauge().value()).isEqualTo(1.0);
+
+        Thread.sleep(150L);
+        failing = false;
+        assertThat((Response) processor.execute(request())).isNotNull();
+        assertThat(registry.get("jsxpay.channel.circuit.state").gauge().value()).isEqualTo(0.0);
+    }
+
+    private TransactionQueryRequest request() {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        return request;
+    }
+
+    private TransactionQueryResponse execute(Request request) {
+        calls++;
+        if (failing) {
+            throw new ThirdpartyException("Error connecting to remote server");
+        }
+        return new TransactionQueryResponse();
+    }
+
+    private CompletableFuture<Response> executeAsync(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        pending.add(future);
+        return future;
+    }
+}
@@ -0,0 +1,196 @@
+package io.jyasonx.jsxpay.channel.resilience;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.Response;
+import io.jyasonx.jsxpay.channel.StubProcessor;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightProcessorTests {
+
+    private ExecutorService executor;
+    private SimpleMeterRegistry registry;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<CompletableFuture<Response>> pending = new CopyOnWriteArrayList<>();
+    private volatile RuntimeException error;
+    private SingleFlightProcessor processor;
+    private Config config;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+        registry = new SimpleMeterRegistry();
+        processor = new SingleFlightProcessor(new StubProcessor()
+                .onExecute(this::execute)
+                .onExecuteAsync(this::executeAsync), registry);
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentQueriesShareCall() throws Exception {
+        List<Future<Response>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> processor.execute(query("a"))));
+        assertThat(started.await(1L, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 7; i++) {
+            futures.add(executor.submit(() -> processor.execute(query("a"))));
+        }
+        awaitCoalesced(7);
+
+        release.countDown();
+        Response first = futures.get(0).get(1L, TimeUnit.SECONDS);
+        for (Future<Response> future : futures) {
+            assertThat(future.get(1L, TimeUnit.SECONDS)).isSameAs(first);
+        }
+        assertThat(calls.get()).isEqualTo(1);
+
+        // the landed call is not reused
+        processor.execute(query("a"));
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDistinctQueriesNotShared() throws Exception {
+        release.countDown();
+        Future<Response> a = executor.submit(() -> processor.execute(query("a")));
+        Future<Response> b = executor.submit(() -> processor.execute(query("b")));
+
+        assertThat(a.get(1L, TimeUnit.SECONDS)).isNotSameAs(b.get(1L, TimeUnit.SECONDS));
+        assertThat(calls.get()).isEqualTo(2);
+
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        processor.execute(request);
+        processor.execute(request);
+        assertThat(calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testErrorShared() throws Exception {
+        error = new ThirdpartyException("Error connecting to remote server");
+        Future<Response> leader = executor.submit(() -> processor.execute(query("a")));
+        assertThat(started.await(1L, TimeUnit.SECONDS)).isTrue();
+        Future<Response> follower = executor.submit(() -> processor.execute(query("a")));
+        awaitCoalesced(1);
+
+        release.countDown();
+        assertThatThrownBy(() -> leader.get(1L, TimeUnit.SECONDS)).hasCause(error);
+        assertThatThrownBy(() -> follower.get(1L, TimeUnit.SECONDS)).hasCause(error);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testBoundedWaiting() throws Exception {
+        config.setSingleFlightTimeout(50L);
+        executor.submit(() -> processor.execute(query("a")));
+        assertThat(started.await(1L, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> processor.execute(query("a")))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Timed out waiting for the in-flight query");
+        assertThatThrownBy(() -> processor.executeAsync(query("a")).join())
+                .hasCauseInstanceOf(ThirdpartyException.class);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFirstCallerNotBounded() throws Exception {
+        config.setSingleFlightTimeout(50L);
+        CompletableFuture<Response> first = processor.executeAsync(query("a"));
+        CompletableFuture<Response> second = processor.executeAsync(query("a"));
+
+        assertThatThrownBy(second::join).hasCauseInstanceOf(ThirdpartyException.class);
+        Thread.sleep(100L);
+        assertThat(first).isNotDone();
+        TransactionQueryResponse response = new TransactionQueryResponse();
+        pending.get(0).complete(response);
+        assertThat(first.join()).isSameAs(response);
+        assertThat(pending).hasSize(1);
+    }
+
+    @Test
+    public void testCancelledOnceAbandoned() {
+        CompletableFuture<Response> first = processor.executeAsync(query("a"));
+        CompletableFuture<Response> second = processor.executeAsync(query("a"));
+        assertThat(pending).hasSize(1);
+
+        first.cancel(true);
+        assertThat(pending.get(0).isCancelled()).isFalse();
+        second.cancel(true);
+        assertThat(pending.get(0).isCancelled()).isTrue();
+
+        // a new call is made instead of joining the abandoned one
+        CompletableFuture<Response> third = processor.executeAsync(query("a"));
+        assertThat(pending).hasSize(2);
+        TransactionQueryResponse response = new TransactionQueryResponse();
+        pending.get(1).complete(response);
+        assertThat(third.join()).isSameAs(response);
+    }
+
+    private void awaitCoalesced(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000L;
+        while (registry.counter("jsxpay.channel.coalesced", "channelType", "WECHAT", "channelNo", "DEFAULT").count() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+    }
+
+    private TransactionQueryRequest query(String channelSerialNo) {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        request.getTransactions().add(Transaction.builder().channelSerialNo(channelSerialNo).build());
+        return request;
+    }
+
+    private TransactionQueryResponse execute(Request request) {
+        calls.incrementAndGet();
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+        return new TransactionQueryResponse();
+    }
+
+    private CompletableFuture<Response> executeAsync(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        pending.add(future);
+        return future;
+    }
+}
@@ -0,0 +1,129 @@
+package io.jyasonx.jsxpay.channel.routing;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.StubProcessor;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutingProcessorTests {
+
+    private final Map<String, AtomicInteger> routed = new ConcurrentHashMap<>();
+
+    @Test
+    public void testRouteAroundSlowAndFailing() throws Exception {
+        RoutingProcessor processor = new RoutingProcessor(new StubProcessor().onExecute(this::execute),
+                Arrays.asList(config("FAST"), config("SLOW"), config("FAILING")), TimeUnit.MILLISECONDS.toNanos(1L));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                String serialNo = "SERIAL-" + i;
+                futures.add(executor.submit(() -> {
+                    TransactionRequest request = request(serialNo);
+                    try {
+                        processor.execute(request);
+                    } catch (ThirdpartyException ignored) {
+                        // expected for the failing channel
+                    }
+                    assertThat(request.getTransaction().getChannelNo()).isEqualTo(request.getConfig().getChannelNo());
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30L, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(routed.get("FAST").get()).isGreaterThan(routed.get("SLOW").get());
+        assertThat(routed.get("FAST").get()).isGreaterThan(routed.get("FAILING").get());
+        assertThat(routed.get("FAST").get()).isGreaterThan(1000);
+    }
+
+    @Test
+    public void testRetrySticksToFirstChannel() {
+        RoutingProcessor processor = new RoutingProcessor(new StubProcessor().onExecute(this::execute),
+                Arrays.asList(config("FAST"), config("SLOW"), config("FAILING")), TimeUnit.MILLISECONDS.toNanos(1L));
+
+        for (int i = 0; i < 20; i++) {
+            String serialNo = "SERIAL-" + i;
+            TransactionRequest first = request(serialNo);
+            try {
+                processor.execute(first);
+            } catch (ThirdpartyException ignored) {
+                // expected for the failing channel
+            }
+            for (int j = 0; j < 5; j++) {
+                TransactionRequest retry = request(serialNo);
+                try {
+                    processor.execute(retry);
+                } catch (ThirdpartyException ignored) {
+                    // expected for the failing channel
+                }
+                assertThat(retry.getConfig().getChannelNo()).isEqualTo(first.getConfig().getChannelNo());
+            }
+        }
+    }
+
+    @Test
+    public void testQueryIsNotRouted() {
+        RoutingProcessor processor = new RoutingProcessor(new StubProcessor().onExecute(this::execute),
+                Arrays.asList(config("FAST"), config("SLOW")));
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config("SLOW"));
+
+        processor.execute(request);
+        assertThat(request.getConfig().getChannelNo()).isEqualTo("SLOW");
+    }
+
+    private static TransactionRequest request(String channelSerialNo) {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config("ANY"));
+        request.setTransaction(Transaction.builder().channelSerialNo(channelSerialNo).build());
+        return request;
+    }
+
+    private static Config config(String channelNo) {
+        Config config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo(channelNo);
+        return config;
+    }
+
+    private TransactionResponse execute(Request request) {
+        String channelNo = request.getConfig().getChannelNo();
+        routed.computeIfAbsent(channelNo, key -> new AtomicInteger()).incrementAndGet();
+        switch (channelNo) {
+            case "SLOW":
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20L));
+                break;
+            case "FAILING":
+                throw new ThirdpartyException("Error connecting to remote server");
+            default:
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1L));
+                break;
+        }
+        return new TransactionResponse();
+    }
+}
@@ -0,0 +1,113 @@
+package io.jyasonx.jsxpay.channel.warmup;
+
+import io.jyasonx.jsxpay.channel.ChannelHttpClientRegistry;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.RenderMode;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.wechat.WechatConverter;
+import io.jyasonx.jsxpay.channel.wechat.WechatCryptor;
+import io.jyasonx.jsxpay.channel.wechat.WechatProcessor;
+import io.jyasonx.jsxpay.common.ChannelType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ChannelWarmerTests {
+
+    private ExecutorService executor;
+    private ChannelHttpClientRegistry registry;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        registry = new ChannelHttpClientRegistry(config -> {
+            throw new IllegalStateException("Key material is not expected");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        registry.close();
+    }
+
+    @Test
+    public void testStages() throws Exception {
+        CountDownLatch warming = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Map<ChannelType, Warmable> warmables = new EnumMap<>(ChannelType.class);
+        warmables.put(ChannelType.WECHAT, config -> {
+            if ("BROKEN".equals(config.getChannelNo())) {
+                throw new ThirdpartyException("Error parsing the private key");
+            }
+            warming.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ChannelWarmer warmer = new ChannelWarmer(warmables);
+        assertThat(warmer.isStarted()).isFalse();
+
+        Config alipay = config(ChannelType.ALIPAY, "DEFAULT");
+        Config wechat = config(ChannelType.WECHAT, "DEFAULT");
+        warmer.warmUp(Collections.singletonList(alipay), Runnable::run);
+        assertThat(warmer.getStages()).containsEntry("ALIPAY-DEFAULT", ChannelWarmer.Stage.READY);
+
+        warmer.warmUp(Arrays.asList(wechat, config(ChannelType.WECHAT, "BROKEN")), executor);
+        assertThat(warmer.isStarted()).isTrue();
+        assertThat(warming.await(1L, TimeUnit.SECONDS)).isTrue();
+        assertThat(warmer.getStages()).containsEntry("WECHAT-DEFAULT", ChannelWarmer.Stage.WARMING);
+
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1L, TimeUnit.SECONDS)).isTrue();
+        assertThat(warmer.getStages())
+                .containsEntry("WECHAT-DEFAULT", ChannelWarmer.Stage.READY)
+                .containsEntry("WECHAT-BROKEN", ChannelWarmer.Stage.FAILED);
+        assertThat(warmer.getErrors()).containsOnlyKeys("WECHAT-BROKEN")
+                .containsValue("Error parsing the private key");
+    }
+
+    @Test
+    public void testWechatProcessor() {
+        WechatProcessor processor = new WechatProcessor(null, new WechatConverter(), new WechatCryptor(), registry);
+        ChannelWarmer warmer = new ChannelWarmer(Collections.singletonMap(ChannelType.WECHAT, processor));
+        Config compiled = config(ChannelType.WECHAT, "COMPILED");
+        compiled.setRenderMode(RenderMode.COMPILED);
+        Config template = config(ChannelType.WECHAT, "TEMPLATE");
+
+        warmer.warmUp(Arrays.asList(compiled, template), executor).join();
+
+        assertThat(warmer.getErrors()).isEmpty();
+        assertThat(warmer.getStages()).containsOnly(
+                entry("WECHAT-COMPILED", ChannelWarmer.Stage.READY),
+                entry("WECHAT-TEMPLATE", ChannelWarmer.Stage.READY));
+    }
+
+    private static Config config(ChannelType channelType, String channelNo) {
+        Config config = new Config();
+        config.setChannelType(channelType);
+        config.setChannelNo(channelNo);
+        config.setAppId("wx99bcf174724d0ae0");
+        config.setMerchantNo("1251462001");
+        config.setSignatureAlgorithm("MD5");
+        config.setCallbackUrl("https://pay.example.com/notifications");
+        config.setSecretKey("0123456789abcdef0123456789abcdef");
+        config.setWarmUpIterations(100);
+        return config;
+    }
+}
@@ -0,0 +1,91 @@
+package io.jyasonx.jsxpay.channel.wechat;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.ReadBuffer;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.wechat.mapper.ResponseMapper;
+import io.jyasonx.jsxpay.util.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("SpellCheckingInspection")
+public class StaxResponseDecoderTests {
+
+    static final String QUERY_RESPONSE = "<xml><return_code><![CDATA[SUCCESS]]></return_code>\n" +
+            "<return_msg><![CDATA[OK]]></return_msg>\n" +
+            "<appid><![CDATA[wx99bcf174724d0ae0]]></appid>\n" +
+            "<mch_id><![CDATA[1251462001]]></mch_id>\n" +
+            "<nonce_str><![CDATA[1p0MDfw4V3sjvKVz]]></nonce_str>\n" +
+            "<sign><![CDATA[832C633C1F41F060AA28F7A07092DADB]]></sign>\n" +
+            "<result_code><![CDATA[SUCCESS]]></result_code>\n" +
+            "<out_trade_no><![CDATA[a14f9fc9cfb34451b930b1530eb8ed1c]]></out_trade_no>\n" +
+            "<trade_state><![CDATA[NOTPAY]]></trade_state>\n" +
+            "<unknown><nested>ignored</nested></unknown>\n" +
+            "<trade_state_desc><![CDATA[订单未支付]]></trade_state_desc>\n" +
+            "</xml>";
+
+    private TransactionQueryRequest request;
+
+    @Before
+    public void setUp() {
+        Config config = new Config();
+        config.setEncoding(StringUtils.UTF_8);
+        config.setSecretKey("0123456789abcdef0123456789abcdef");
+        config.setSignatureAlgorithm("MD5");
+        request = new TransactionQueryRequest();
+        request.setConfig(config);
+    }
+
+    @Test
+    public void testDecodeSameAsXStream() {
+        ResponseMapper expected = new XStreamResponseDecoder().decode(stream(QUERY_RESPONSE), request);
+        ResponseMapper mapper = new StaxResponseDecoder().decode(stream(QUERY_RESPONSE), request);
+
+        assertThat(mapper).isEqualToComparingFieldByField(expected);
+        assertThat(mapper.getTradeStatusDescription()).isEqualTo("订单未支付");
+        assertThat(mapper.getOutTradeNo()).isEqualTo("a14f9fc9cfb34451b930b1530eb8ed1c");
+    }
+
+    @Test
+    public void testDecodeMalformed() {
+        assertThatThrownBy(() -> new StaxResponseDecoder().decode(stream("<xml><return_code>"), request))
+                .isInstanceOf(ThirdpartyException.class);
+    }
+
+    @Test
+    public void testDecodeAndVerify() {
+        WechatCryptor cryptor = new WechatCryptor();
+        String signed = cryptor.sign(QUERY_RESPONSE.replace("<unknown><nested>ignored</nested></unknown>\n", ""), request);
+
+        ResponseMapper expected = new XStreamResponseDecoder().decode(stream(signed), request, cryptor);
+        ResponseMapper mapper = new StaxResponseDecoder().decode(stream(signed), request, cryptor);
+        assertThat(mapper).isEqualToComparingFieldByField(expected);
+
+        String tampered = signed.replace("NOTPAY", "SUCCESS");
+        assertThatThrownBy(() -> new StaxResponseDecoder().decode(stream(tampered), request, cryptor))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Invalid signature found in response");
+        assertThatThrownBy(() -> cryptor.verify(tampered, request))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Invalid signature found in response");
+    }
+
+    @Test
+    public void testReadBufferSizeLimit() throws Exception {
+        ReadBuffer buffer = ReadBuffer.read(stream(QUERY_RESPONSE), 1024);
+        assertThat(buffer.toString(StringUtils.UTF_8)).isEqualTo(QUERY_RESPONSE);
+
+        assertThatThrownBy(() -> ReadBuffer.read(stream(QUERY_RESPONSE), 64))
+                .isInstanceOf(ThirdpartyException.class);
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(StringUtils.getBytesUtf8(content));
+    }
+}
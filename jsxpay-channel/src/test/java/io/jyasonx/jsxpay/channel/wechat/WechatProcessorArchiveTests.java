@@ -0,0 +1,89 @@
+package io.jyasonx.jsxpay.channel.wechat;
+
+import com.sun.net.httpserver.HttpServer;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.archive.ArchivedMessage;
+import io.jyasonx.jsxpay.channel.archive.Direction;
+import io.jyasonx.jsxpay.channel.archive.MessageArchive;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WechatProcessorArchiveTests {
+
+    private static final String FORGED_RESPONSE = "<xml><return_code><![CDATA[SUCCESS]]></return_code>"
+            + "<result_code><![CDATA[SUCCESS]]></result_code><trade_state><![CDATA[SUCCESS]]></trade_state>"
+            + "<sign><![CDATA[0774DB3F7319034CE1B78F966820DEE5]]></sign></xml>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private MessageArchive archive;
+    private WechatProcessor processor;
+    private Config config;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] response = FORGED_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.start();
+
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("ARCHIVE");
+        config.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        config.setAppId("wx99bcf174724d0ae0");
+        config.setMerchantNo("1251462001");
+        config.setSignatureAlgorithm("MD5");
+        config.setSecretKey("0123456789abcdef0123456789abcdef");
+
+        archive = new MessageArchive(folder.newFolder("archive").toPath(), 1024 * 1024, 1024 * 1024,
+                new SimpleMeterRegistry());
+        processor = new WechatProcessor(null, new WechatConverter(), new WechatCryptor(), archive);
+    }
+
+    @After
+    public void tearDown() {
+        archive.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testArchivedBeforeVerified() {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        request.getTransactions().add(Transaction.builder().channelSerialNo("a14f9fc9cfb34451b930b1530eb8ed1c").build());
+
+        assertThatThrownBy(() -> processor.execute(request))
+                .isInstanceOf(ThirdpartyException.class)
+                .hasMessage("Invalid signature found in response");
+        archive.close();
+
+        List<ArchivedMessage> messages = archive.lookup("a14f9fc9cfb34451b930b1530eb8ed1c");
+        assertThat(messages).extracting(ArchivedMessage::getDirection)
+                .containsExactly(Direction.REQUEST, Direction.RESPONSE);
+        assertThat(messages.get(1).getContent()).isEqualTo(FORGED_RESPONSE);
+    }
+}
@@ -0,0 +1,87 @@
+package io.jyasonx.jsxpay.channel.wechat;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionResponse;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import io.jyasonx.jsxpay.common.TransactionType;
+import io.jyasonx.jsxpay.mock.Behavior;
+import io.jyasonx.jsxpay.mock.wechat.MockWechatServer;
+import io.jyasonx.jsxpay.util.IdUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.jyasonx.jsxpay.channel.wechat.WechatConverter.CODE_SUCCESS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against {@link MockWechatServer}, so that the asynchronous path is tested without the
+ * real channel and its config.
+ */
+public class WechatProcessorAsyncTests {
+
+    private static final String SECRET_KEY = "0123456789abcdef0123456789abcdef";
+
+    private MockWechatServer server;
+    private CloseableHttpClient httpClient;
+    private WechatProcessor processor;
+    private Config config;
+
+    @Before
+    public void setUp() throws Exception {
+        Behavior behavior = new Behavior();
+        behavior.setPaymentDelay(-1L);
+        server = new MockWechatServer(0, SECRET_KEY, behavior);
+        server.start();
+
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("MOCK");
+        config.setBaseUrl(server.getBaseUrl());
+        config.setCallbackUrl("http://127.0.0.1/notifications");
+        config.setAppId("wx99bcf174724d0ae0");
+        config.setMerchantNo("1251462001");
+        config.setSignatureAlgorithm("MD5");
+        config.setSecretKey(SECRET_KEY);
+
+        httpClient = HttpClients.createDefault();
+        processor = new WechatProcessor(httpClient, new WechatConverter(), new WechatCryptor());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        httpClient.close();
+        server.close();
+    }
+
+    @Test
+    public void testTransactionAsync() throws Exception {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setOrderNo(IdUtils.uuid());
+        request.setTransactionType(TransactionType.WITHHOLD);
+        request.setTransaction(Transaction.builder()
+                .channelSerialNo(IdUtils.uuidWithoutDash())
+                .description("test transaction")
+                .amount(BigDecimal.valueOf(1))
+                .expireTime(LocalDateTime.now().plusHours(1L))
+                .build());
+        CompletableFuture<TransactionResponse> future = processor.executeAsync(request);
+        TransactionResponse response = future.get(30L, TimeUnit.SECONDS);
+
+        assertThat(response).isNotNull();
+        assertThat(response.getTransaction().getCode()).isEqualTo(CODE_SUCCESS);
+        assertThat(response.getTransaction().getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+        assertThat(response.getTransaction().getThirdpartyPrepayNo()).startsWith("wx");
+    }
+}
@@ -0,0 +1,155 @@
+package io.jyasonx.jsxpay.channel.wechat;
+
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.RenderMode;
+import io.jyasonx.jsxpay.channel.Request;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.WriteBuffer;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.util.IdUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("SpellCheckingInspection")
+public class WechatRequestWritersTests {
+
+    private static final String NONCE = "<nonce_str>[0-9a-f]{32}</nonce_str>";
+    private static final String SIGN = "<sign>[0-9A-F]{32}</sign>";
+
+    private WechatConverter converter;
+    private Config config;
+
+    @Before
+    public void setUp() {
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("DEFAULT");
+        config.setAppId("wx99bcf174724d0ae0");
+        config.setMerchantNo("1251462001");
+        config.setSignatureAlgorithm("MD5");
+        config.setCallbackUrl("http://127.0.0.1");
+        config.setSecretKey("0123456789abcdef0123456789abcdef");
+        converter = new WechatConverter();
+    }
+
+    @Test
+    public void testTransactionSameAsTemplate() {
+        for (String amount : new String[]{"1", "0.01", "12.345", "99999.99"}) {
+            TransactionRequest request = new TransactionRequest();
+            request.setConfig(config);
+            request.setTransaction(Transaction.builder()
+                    .channelSerialNo(IdUtils.uuidWithoutDash())
+                    .description("test transaction")
+                    .amount(new BigDecimal(amount))
+                    .expireTime(LocalDateTime.now().plusHours(1L))
+                    .build());
+
+            assertThat(write(request, RenderMode.COMPILED)).isEqualTo(write(request, RenderMode.TEMPLATE));
+        }
+    }
+
+    @Test
+    public void testMultilineDescriptionSameAsTemplate() {
+        for (String description : new String[]{" test ", "test\ntransaction", "  test \r\n\t transaction\n",
+                "\ntest\u2028 transaction"}) {
+            TransactionRequest request = new TransactionRequest();
+            request.setConfig(config);
+            request.setTransaction(Transaction.builder()
+                    .channelSerialNo(IdUtils.uuidWithoutDash())
+                    .description(description)
+                    .amount(BigDecimal.ONE)
+                    .expireTime(LocalDateTime.now().plusHours(1L))
+                    .build());
+
+            assertThat(write(request, RenderMode.COMPILED)).isEqualTo(write(request, RenderMode.TEMPLATE));
+        }
+    }
+
+    @Test
+    public void testTransactionQuerySameAsTemplate() {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        request.getTransactions().add(Transaction.builder()
+                .channelSerialNo("a14f9fc9cfb34451b930b1530eb8ed1c")
+                .build());
+
+        assertThat(write(request, RenderMode.COMPILED))
+                .isEqualTo(write(request, RenderMode.TEMPLATE))
+                .contains("<out_trade_no>a14f9fc9cfb34451b930b1530eb8ed1c</out_trade_no>");
+    }
+
+    @Test
+    public void testSignAtRender() {
+        WechatCryptor cryptor = new WechatCryptor();
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setTransaction(Transaction.builder()
+                .channelSerialNo(IdUtils.uuidWithoutDash())
+                .description("test transaction")
+                .amount(BigDecimal.ONE)
+                .expireTime(LocalDateTime.now().plusHours(1L))
+                .build());
+
+        String signed = converter.writeTo(request, cryptor);
+        String unsigned = signed.replaceAll("<sign>[0-9A-F]{32}</sign>", "<sign></sign>");
+
+        assertThat(unsigned).isNotEqualTo(signed);
+        assertThat(cryptor.sign(unsigned, request)).isEqualTo(signed);
+    }
+
+    @Test
+    public void testWriteBytesSameAsString() {
+        WechatCryptor cryptor = new WechatCryptor();
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setTransaction(Transaction.builder()
+                .channelSerialNo(IdUtils.uuidWithoutDash())
+                .description("测试交易")
+                .amount(BigDecimal.ONE)
+                .expireTime(LocalDateTime.now().plusHours(1L))
+                .build());
+
+        for (RenderMode renderMode : RenderMode.values()) {
+            config.setRenderMode(renderMode);
+            WriteBuffer buffer = WriteBuffer.acquire();
+            try {
+                converter.writeTo(request, cryptor, buffer);
+                String bytes = buffer.toString(StandardCharsets.UTF_8);
+                assertThat(bytes.replaceAll(NONCE + "|" + SIGN, ""))
+                        .isEqualTo(converter.writeTo(request, cryptor).replaceAll(NONCE + "|" + SIGN, ""))
+                        .contains("测试交易");
+                assertThat(bytes).containsPattern(SIGN);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    @Test
+    public void testMissingValue() {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setTransaction(Transaction.builder()
+                .channelSerialNo(IdUtils.uuidWithoutDash())
+                .amount(BigDecimal.ONE)
+                .build());
+        config.setRenderMode(RenderMode.COMPILED);
+
+        assertThatThrownBy(() -> converter.writeTo(request)).isInstanceOf(ThirdpartyException.class);
+    }
+
+    private String write(Request request, RenderMode renderMode) {
+        config.setRenderMode(renderMode);
+        return converter.writeTo(request).replaceAll(NONCE, "");
+    }
+}
@@ -2,6 +2,10 @@ package io.jyasonx.jsxpay.common;
 
 import lombok.Getter;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 @Getter
 public enum TransactionStatus {
     CREATED("已创建"),
@@ -12,6 +16,10 @@ public enum TransactionStatus {
     CLOSED("已关闭"),
     ;
 
+    // the statuses never change once reached
+    public static final Set<TransactionStatus> TERMINAL_STATUSES = Collections.unmodifiableSet(
+            EnumSet.of(SUCCEED, FAILED, CLOSED));
+
     private String name;
 
     TransactionStatus(String name) {
@@ -0,0 +1,104 @@
+package io.jyasonx.jsxpay.gateway;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.jyasonx.jsxpay.channel.adapter.AdapterDefinition;
+import io.jyasonx.jsxpay.channel.adapter.DeclarativeProcessor;
+import io.jyasonx.jsxpay.channel.archive.MessageArchive;
+import io.jyasonx.jsxpay.channel.warmup.ChannelWarmer;
+import io.jyasonx.jsxpay.channel.warmup.Warmable;
+import io.jyasonx.jsxpay.channel.wechat.WechatConverter;
+import io.jyasonx.jsxpay.channel.wechat.WechatCryptor;
+import io.jyasonx.jsxpay.channel.wechat.WechatProcessor;
+import io.jyasonx.jsxpay.common.ChannelType;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static io.jyasonx.jsxpay.channel.Processor.NAME_SUFFIX;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(ChannelProperties.class)
+public class ChannelConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient channelHttpClient() {
+        return HttpClients.createDefault();
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty("jsxpay.channel.archive-directory")
+    public MessageArchive messageArchive(ChannelProperties properties) {
+        return new MessageArchive(Paths.get(properties.getArchiveDirectory()),
+                properties.getArchiveMaxBytes(), properties.getArchiveMaxAge());
+    }
+
+    /**
+     * Not exposed over the web by default, since the messages carry the details of payers.
+     */
+    @Bean
+    @ConditionalOnProperty("jsxpay.channel.archive-directory")
+    public MessageArchiveEndpoint messageArchiveEndpoint(MessageArchive messageArchive) {
+        return new MessageArchiveEndpoint(messageArchive);
+    }
+
+    @Bean(name = WechatProcessor.BEAN_NAME)
+    public WechatProcessor wechatProcessor(CloseableHttpClient channelHttpClient,
+                                           ObjectProvider<MessageArchive> messageArchive) {
+        return new WechatProcessor(channelHttpClient, new WechatConverter(), new WechatCryptor(),
+                messageArchive.getIfAvailable());
+    }
+
+    @Bean(name = ChannelType.ALIPAY_NAME + NAME_SUFFIX)
+    public DeclarativeProcessor alipayProcessor(CloseableHttpClient channelHttpClient,
+                                                ObjectProvider<MessageArchive> messageArchive) {
+        return new DeclarativeProcessor(channelHttpClient, AdapterDefinition.load(ChannelType.ALIPAY),
+                messageArchive.getIfAvailable());
+    }
+
+    /**
+     * The warmable processors are keyed by the channel type in their bean names.
+     */
+    @Bean
+    public ChannelWarmer channelWarmer(Map<String, Warmable> warmables) {
+        Map<ChannelType, Warmable> processors = new EnumMap<>(ChannelType.class);
+        warmables.forEach((name, warmable) -> {
+            if (name.endsWith(NAME_SUFFIX)) {
+                processors.put(ChannelType.valueOf(name.substring(0, name.length() - NAME_SUFFIX.length())), warmable);
+            }
+        });
+        return new ChannelWarmer(processors);
+    }
+
+    @Bean
+    public ChannelWarmUpHealthIndicator channelWarmUpHealthIndicator(ChannelWarmer channelWarmer) {
+        return new ChannelWarmUpHealthIndicator(channelWarmer);
+    }
+
+    /**
+     * Warms up the channels in background once the application is started, the health stays out
+     * of service until it is done.
+     */
+    @EventListener
+    public void onStarted(ApplicationStartedEvent event) {
+        ChannelProperties properties = event.getApplicationContext().getBean(ChannelProperties.class);
+        ChannelWarmer warmer = event.getApplicationContext().getBean(ChannelWarmer.class);
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getWarmUpThreads(),
+                new ThreadFactoryBuilder().setNameFormat("channel-warm-up-%d").setDaemon(true).build());
+        log.info("Warming up {} channels...", properties.getConfigs().size());
+        warmer.warmUp(properties.getConfigs(), executor).whenComplete((result, ex) -> executor.shutdown());
+    }
+}
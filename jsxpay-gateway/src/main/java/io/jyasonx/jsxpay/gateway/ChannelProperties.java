@@ -0,0 +1,28 @@
+package io.jyasonx.jsxpay.gateway;
+
+import io.jyasonx.jsxpay.channel.Config;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "jsxpay.channel")
+public class ChannelProperties {
+
+    private List<Config> configs = new ArrayList<>();
+
+    // channels warmed up at the same time
+    private int warmUpThreads = 2;
+
+    // raw messages are archived in the directory instead of being logged, disabled if absent
+    private String archiveDirectory;
+
+    // the oldest archived messages are deleted beyond either of the limits
+    private long archiveMaxBytes = 16L * 1024 * 1024 * 1024;
+    private Duration archiveMaxAge = Duration.ofDays(90L);
+}
@@ -0,0 +1,35 @@
+package io.jyasonx.jsxpay.gateway;
+
+import io.jyasonx.jsxpay.channel.warmup.ChannelWarmer;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+import java.util.Map;
+
+/**
+ * Reports the channels out of service until all of them are warmed up, and down once any of them
+ * failed, so that no traffic is routed to the instance before it is ready.
+ */
+public class ChannelWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+    private final ChannelWarmer warmer;
+
+    public ChannelWarmUpHealthIndicator(ChannelWarmer warmer) {
+        super("Channel warm-up health check failed");
+        this.warmer = warmer;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        Map<String, ChannelWarmer.Stage> stages = warmer.getStages();
+        if (!warmer.getErrors().isEmpty()) {
+            builder.down().withDetail("errors", warmer.getErrors());
+        } else if (!warmer.isStarted() || stages.values().stream().anyMatch(it -> it != ChannelWarmer.Stage.READY)) {
+            builder.outOfService();
+        } else {
+            builder.up();
+        }
+        long ready = stages.values().stream().filter(it -> it == ChannelWarmer.Stage.READY).count();
+        builder.withDetail("ready", ready + "/" + stages.size()).withDetail("channels", stages);
+    }
+}
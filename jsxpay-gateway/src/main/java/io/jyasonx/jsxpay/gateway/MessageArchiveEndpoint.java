@@ -0,0 +1,27 @@
+package io.jyasonx.jsxpay.gateway;
+
+import io.jyasonx.jsxpay.channel.archive.ArchivedMessage;
+import io.jyasonx.jsxpay.channel.archive.MessageArchive;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.List;
+
+/**
+ * Looks up the raw messages of a transaction by its serial number in the message archive.
+ */
+@Endpoint(id = "channelarchive")
+public class MessageArchiveEndpoint {
+
+    private final MessageArchive archive;
+
+    public MessageArchiveEndpoint(MessageArchive archive) {
+        this.archive = archive;
+    }
+
+    @ReadOperation
+    public List<ArchivedMessage> lookup(@Selector String serialNo) {
+        return archive.lookup(serialNo);
+    }
+}
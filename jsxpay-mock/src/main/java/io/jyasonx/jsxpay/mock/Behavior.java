@@ -0,0 +1,48 @@
+package io.jyasonx.jsxpay.mock;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Random;
+
+/**
+ * The behavior of a mock channel, which could be changed while the channel is serving so that a
+ * load test can degrade and recover the channel on the fly.
+ */
+@Getter
+@Setter
+public class Behavior {
+
+    private volatile LatencyDistribution latency = LatencyDistribution.none();
+    private volatile double timeoutRate;
+    private volatile double resetRate;
+    private volatile double systemErrorRate;
+    private volatile double orderNotExistRate;
+    private volatile long timeout = 60000L;
+
+    /**
+     * The delay after which an order is paid and notified, an order is never paid if negative.
+     */
+    private volatile long paymentDelay = 1000L;
+    private volatile long[] notificationIntervals = {15000L, 15000L, 30000L, 180000L, 1800000L};
+
+    /**
+     * Picks the fault of a request by the rates, the faults are exclusive to each other.
+     */
+    public Fault nextFault(Random random) {
+        double value = random.nextDouble();
+        if ((value -= timeoutRate) < 0) {
+            return Fault.TIMEOUT;
+        }
+        if ((value -= resetRate) < 0) {
+            return Fault.RESET;
+        }
+        if ((value -= systemErrorRate) < 0) {
+            return Fault.SYSTEM_ERROR;
+        }
+        if (value - orderNotExistRate < 0) {
+            return Fault.ORDER_NOT_EXIST;
+        }
+        return Fault.NONE;
+    }
+}
@@ -0,0 +1,24 @@
+package io.jyasonx.jsxpay.mock;
+
+/**
+ * The faults a mock channel injects into its responses.
+ */
+public enum Fault {
+    NONE,
+    /**
+     * Holds the request for {@link Behavior#getTimeout()} and drops it without a response.
+     */
+    TIMEOUT,
+    /**
+     * Drops the connection right away without a response.
+     */
+    RESET,
+    /**
+     * Responds with the business error of a busy channel, e.g. 'SYSTEMERROR' of WeChat Pay.
+     */
+    SYSTEM_ERROR,
+    /**
+     * Responds to a query as if the order did not exist, e.g. 'ORDERNOTEXIST' of WeChat Pay.
+     */
+    ORDER_NOT_EXIST
+}
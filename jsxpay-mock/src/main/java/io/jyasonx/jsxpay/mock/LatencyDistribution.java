@@ -0,0 +1,37 @@
+package io.jyasonx.jsxpay.mock;
+
+import java.util.Random;
+
+/**
+ * The distribution of the latency injected before a mock channel responds, in milliseconds.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    // the z-score of the 99th percentile of the standard normal distribution
+    double Z_99 = 2.326;
+
+    long next(Random random);
+
+    static LatencyDistribution none() {
+        return random -> 0L;
+    }
+
+    static LatencyDistribution fixed(long latency) {
+        return random -> latency;
+    }
+
+    static LatencyDistribution uniform(long min, long max) {
+        return random -> min + (long) (random.nextDouble() * (max - min));
+    }
+
+    /**
+     * The long tailed distribution which real channels tend to follow, given by its median and
+     * its 99th percentile.
+     */
+    static LatencyDistribution logNormal(long median, long p99) {
+        double mu = Math.log(median);
+        double sigma = Math.log((double) p99 / median) / Z_99;
+        return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+}
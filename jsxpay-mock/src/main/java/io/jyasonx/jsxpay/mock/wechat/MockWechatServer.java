@@ -0,0 +1,318 @@
+package io.jyasonx.jsxpay.mock.wechat;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.jyasonx.jsxpay.mock.Behavior;
+import io.jyasonx.jsxpay.mock.Fault;
+import io.jyasonx.jsxpay.mock.LatencyDistribution;
+import io.jyasonx.jsxpay.util.DateUtils;
+import io.jyasonx.jsxpay.util.IdUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import static io.jyasonx.jsxpay.mock.wechat.WechatMessages.SIGN;
+
+/**
+ * An embeddable stand-in of WeChat Pay which serves '/unifiedorder' and '/orderquery' over plain
+ * HTTP with signed responses, so that the whole payment path could be load tested without the
+ * real channel. Point {@code baseUrl} of the channel config to {@link #getBaseUrl()}.
+ * <p>
+ * Latency and faults are injected by {@link Behavior}. An order is paid once its payment delay
+ * elapses, and the payment is notified to its 'notify_url' and retried at the notification
+ * intervals until the notification is acknowledged.
+ * <p>
+ * Orders are kept in memory until the server is closed.
+ */
+@Slf4j
+public class MockWechatServer implements Closeable {
+
+    private static final String PATH_UNIFIED_ORDER = "/unifiedorder";
+    private static final String PATH_ORDER_QUERY = "/orderquery";
+
+    private static final String CODE_SUCCESS = "SUCCESS";
+    private static final String CODE_FAIL = "FAIL";
+    private static final String STATE_NOT_PAY = "NOTPAY";
+    private static final String TRADE_TYPE_NATIVE = "NATIVE";
+    private static final String FEE_TYPE_CNY = "CNY";
+
+    private static final int NOTIFICATION_TIMEOUT = 5000;
+    private static final int DEFAULT_PORT = 18080;
+    private static final String DEFAULT_SECRET_KEY = "0123456789abcdef0123456789abcdef";
+
+    @Getter
+    private final Behavior behavior;
+    private final String secretKey;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Order> orders = new ConcurrentHashMap<>();
+    private final AtomicLong transactionIds = new AtomicLong(4200000000000000000L);
+
+    public MockWechatServer(int port, String secretKey, Behavior behavior) throws IOException {
+        this.behavior = behavior;
+        this.secretKey = secretKey;
+        this.workers = Executors.newCachedThreadPool(threadFactory("mock-wechat-worker-"));
+        this.scheduler = Executors.newScheduledThreadPool(2, threadFactory("mock-wechat-scheduler-"));
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(workers);
+        this.server.createContext(PATH_UNIFIED_ORDER, exchange -> serve(exchange, this::unifiedOrder));
+        this.server.createContext(PATH_ORDER_QUERY, exchange -> serve(exchange, this::orderQuery));
+    }
+
+    /**
+     * Starts a server on the port of the first argument with the secret key of the second one.
+     */
+    public static void main(String... args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String secretKey = args.length > 1 ? args[1] : DEFAULT_SECRET_KEY;
+        Behavior behavior = new Behavior();
+        behavior.setLatency(LatencyDistribution.logNormal(80L, 800L));
+        MockWechatServer server = new MockWechatServer(port, secretKey, behavior);
+        server.start();
+        log.info("The mock WeChat Pay was started at '{}'.", server.getBaseUrl());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange, BiFunction<Map<String, String>, Fault, Map<String, String>> handler) {
+        try {
+            Map<String, String> request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = WechatMessages.read(body);
+            }
+            Random random = ThreadLocalRandom.current();
+            sleep(behavior.getLatency().next(random));
+
+            Fault fault = behavior.nextFault(random);
+            if (fault == Fault.TIMEOUT) {
+                sleep(behavior.getTimeout());
+            }
+            if (fault == Fault.TIMEOUT || fault == Fault.RESET) {
+                // closing the exchange before the headers are sent drops the connection
+                exchange.close();
+                return;
+            }
+
+            Map<String, String> response;
+            if (!WechatMessages.verify(request, secretKey)) {
+                response = new LinkedHashMap<>();
+                response.put("return_code", CODE_FAIL);
+                response.put("return_msg", "签名错误");
+            } else {
+                response = handler.apply(request, fault);
+            }
+            byte[] content = WechatMessages.write(response).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(content);
+            }
+        } catch (Exception ex) {
+            log.error("Failed to serve the request '{}' due to an exception!", exchange.getRequestURI(), ex);
+            exchange.close();
+        }
+    }
+
+    private Map<String, String> unifiedOrder(Map<String, String> request, Fault fault) {
+        if (fault == Fault.SYSTEM_ERROR) {
+            return error(request, "SYSTEMERROR", "系统超时");
+        }
+        String outTradeNo = request.get("out_trade_no");
+        if (Strings.isNullOrEmpty(outTradeNo) || Strings.isNullOrEmpty(request.get("total_fee"))
+                || Strings.isNullOrEmpty(request.get("notify_url"))) {
+            return error(request, "PARAM_ERROR", "参数错误");
+        }
+        Order order = orders.computeIfAbsent(outTradeNo, key -> {
+            Order created = new Order(outTradeNo, request.get("total_fee"), request.get("notify_url"));
+            long paymentDelay = behavior.getPaymentDelay();
+            if (paymentDelay >= 0) {
+                scheduler.schedule(() -> pay(created, request), paymentDelay, TimeUnit.MILLISECONDS);
+            }
+            return created;
+        });
+        if (order.transactionId != null) {
+            return error(request, "ORDERPAID", "该订单已支付");
+        }
+
+        Map<String, String> response = success(request);
+        response.put("trade_type", TRADE_TYPE_NATIVE);
+        response.put("prepay_id", order.prepayId);
+        response.put("code_url", "weixin://wxpay/bizpayurl?pr=" + order.prepayId.substring(order.prepayId.length() - 7));
+        return sign(response);
+    }
+
+    private Map<String, String> orderQuery(Map<String, String> request, Fault fault) {
+        if (fault == Fault.SYSTEM_ERROR) {
+            return error(request, "SYSTEMERROR", "系统错误");
+        }
+        Order order = orders.get(Strings.nullToEmpty(request.get("out_trade_no")));
+        if (order == null || fault == Fault.ORDER_NOT_EXIST) {
+            return error(request, "ORDERNOTEXIST", "此交易订单号不存在");
+        }
+
+        Map<String, String> response = success(request);
+        response.put("out_trade_no", order.outTradeNo);
+        if (order.transactionId == null) {
+            response.put("trade_state", STATE_NOT_PAY);
+            response.put("trade_state_desc", "订单未支付");
+        } else {
+            response.put("trade_type", TRADE_TYPE_NATIVE);
+            response.put("fee_type", FEE_TYPE_CNY);
+            response.put("total_fee", order.totalFee);
+            response.put("cash_fee", order.totalFee);
+            response.put("transaction_id", order.transactionId);
+            response.put("time_end", order.paidTime);
+            response.put("trade_state", CODE_SUCCESS);
+            response.put("trade_state_desc", "支付成功");
+        }
+        return sign(response);
+    }
+
+    private void pay(Order order, Map<String, String> request) {
+        order.paidTime = LocalDateTime.now().format(DateUtils.DATE_TIME);
+        order.transactionId = Long.toString(transactionIds.incrementAndGet());
+
+        Map<String, String> notification = success(request);
+        notification.put("trade_type", TRADE_TYPE_NATIVE);
+        notification.put("fee_type", FEE_TYPE_CNY);
+        notification.put("total_fee", order.totalFee);
+        notification.put("cash_fee", order.totalFee);
+        notification.put("out_trade_no", order.outTradeNo);
+        notification.put("transaction_id", order.transactionId);
+        notification.put("time_end", order.paidTime);
+        notify(order, WechatMessages.write(sign(notification)), 0);
+    }
+
+    private void notify(Order order, String notification, int attempt) {
+        if (deliver(order.notifyUrl, notification)) {
+            log.debug("The notification of order '{}' was acknowledged.", order.outTradeNo);
+            return;
+        }
+        long[] intervals = behavior.getNotificationIntervals();
+        if (attempt >= intervals.length) {
+            log.warn("The notification of order '{}' was given up after {} attempts!", order.outTradeNo, attempt + 1);
+            return;
+        }
+        scheduler.schedule(() -> notify(order, notification, attempt + 1), intervals[attempt], TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean deliver(String notifyUrl, String notification) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(notifyUrl).openConnection();
+            connection.setConnectTimeout(NOTIFICATION_TIMEOUT);
+            connection.setReadTimeout(NOTIFICATION_TIMEOUT);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "text/xml; charset=utf-8");
+            connection.setDoOutput(true);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(notification.getBytes(StandardCharsets.UTF_8));
+            }
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return false;
+            }
+            try (InputStream input = connection.getInputStream()) {
+                return CODE_SUCCESS.equals(WechatMessages.read(input).get("return_code"));
+            }
+        } catch (Exception ex) {
+            log.warn("Failed to deliver the notification to '{}' due to {}", notifyUrl, ex.toString());
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static Map<String, String> success(Map<String, String> request) {
+        Map<String, String> response = new LinkedHashMap<>();
+        response.put("return_code", CODE_SUCCESS);
+        response.put("return_msg", "OK");
+        response.put("appid", Strings.nullToEmpty(request.get("appid")));
+        response.put("mch_id", Strings.nullToEmpty(request.get("mch_id")));
+        response.put("nonce_str", IdUtils.uuidWithoutDash());
+        response.put("result_code", CODE_SUCCESS);
+        return response;
+    }
+
+    private Map<String, String> error(Map<String, String> request, String errorCode, String errorMessage) {
+        Map<String, String> response = success(request);
+        response.put("result_code", CODE_FAIL);
+        response.put("err_code", errorCode);
+        response.put("err_code_des", errorMessage);
+        return sign(response);
+    }
+
+    private Map<String, String> sign(Map<String, String> response) {
+        response.put(SIGN, WechatMessages.sign(response, secretKey));
+        return response;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        return new ThreadFactoryBuilder().setNameFormat(prefix + "%d").setDaemon(true).build();
+    }
+
+    private static final class Order {
+        private final String outTradeNo;
+        private final String totalFee;
+        private final String notifyUrl;
+        private final String prepayId = "wx" + IdUtils.uuidWithoutDash();
+        private volatile String transactionId;
+        private volatile String paidTime;
+
+        private Order(String outTradeNo, String totalFee, String notifyUrl) {
+            this.outTradeNo = outTradeNo;
+            this.totalFee = totalFee;
+            this.notifyUrl = notifyUrl;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.jyasonx.jsxpay.mock.wechat;
+
+import com.google.common.base.Strings;
+import io.jyasonx.jsxpay.util.SecurityUtils;
+import org.apache.commons.codec.binary.Hex;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static io.jyasonx.jsxpay.util.StringUtils.AMPERSAND;
+import static io.jyasonx.jsxpay.util.StringUtils.EQUAL_SIGN;
+
+/**
+ * Reads, writes and signs the single level XML messages of WeChat Pay as the specification says,
+ * independently of the cryptor of channel module so that the mock catches its mistakes.
+ */
+final class WechatMessages {
+
+    static final String SIGN = "sign";
+    private static final String KEY = "key";
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private WechatMessages() {
+    }
+
+    static Map<String, String> read(InputStream content) throws XMLStreamException {
+        Map<String, String> fields = new TreeMap<>();
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(content, StandardCharsets.UTF_8.name());
+        try {
+            int depth = 0;
+            String name = null;
+            StringBuilder value = new StringBuilder();
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (++depth == 2) {
+                            name = reader.getLocalName();
+                            value.setLength(0);
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (depth == 2) {
+                            value.append(reader.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth-- == 2) {
+                            fields.put(name, value.toString());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return fields;
+        } finally {
+            reader.close();
+        }
+    }
+
+    static String write(Map<String, String> fields) {
+        StringBuilder builder = new StringBuilder("<xml>");
+        fields.forEach((name, value) -> builder.append('<').append(name).append("><![CDATA[")
+                .append(value).append("]]></").append(name).append('>'));
+        return builder.append("</xml>").toString();
+    }
+
+    /**
+     * Signs the fields with MD5 in ASCII order of names, fields with empty values and the signature itself
+     * are excluded.
+     */
+    static String sign(Map<String, String> fields, String secretKey) {
+        StringBuilder builder = new StringBuilder();
+        new TreeMap<>(fields).forEach((name, value) -> {
+            if (!SIGN.equals(name) && !Strings.isNullOrEmpty(value)) {
+                builder.append(name).append(EQUAL_SIGN).append(value).append(AMPERSAND);
+            }
+        });
+        builder.append(KEY).append(EQUAL_SIGN).append(secretKey);
+        byte[] data = builder.toString().getBytes(StandardCharsets.UTF_8);
+        return Hex.encodeHexString(SecurityUtils.digest(SecurityUtils.MD5, data)).toUpperCase();
+    }
+
+    static boolean verify(Map<String, String> fields, String secretKey) {
+        return sign(fields, secretKey).equalsIgnoreCase(fields.get(SIGN));
+    }
+}
@@ -0,0 +1,200 @@
+package io.jyasonx.jsxpay.mock.wechat;
+
+import com.sun.net.httpserver.HttpServer;
+import io.jyasonx.jsxpay.channel.Config;
+import io.jyasonx.jsxpay.channel.ThirdpartyException;
+import io.jyasonx.jsxpay.channel.Transaction;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionNotificationResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionQueryResponse;
+import io.jyasonx.jsxpay.channel.bean.TransactionRequest;
+import io.jyasonx.jsxpay.channel.bean.TransactionResponse;
+import io.jyasonx.jsxpay.channel.wechat.WechatConverter;
+import io.jyasonx.jsxpay.channel.wechat.WechatCryptor;
+import io.jyasonx.jsxpay.channel.wechat.WechatProcessor;
+import io.jyasonx.jsxpay.common.ChannelType;
+import io.jyasonx.jsxpay.common.TransactionStatus;
+import io.jyasonx.jsxpay.mock.Behavior;
+import io.jyasonx.jsxpay.util.IdUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MockWechatServerTests {
+
+    private static final String SECRET_KEY = "0123456789abcdef0123456789abcdef";
+
+    private Behavior behavior;
+    private MockWechatServer server;
+    private HttpServer callback;
+    private CloseableHttpClient httpClient;
+    private WechatProcessor processor;
+    private Config config;
+    private BlockingQueue<TransactionNotificationResponse> notifications;
+    private AtomicInteger rejections;
+
+    @Before
+    public void setUp() throws Exception {
+        behavior = new Behavior();
+        behavior.setPaymentDelay(-1L);
+        behavior.setNotificationIntervals(new long[]{50L, 50L});
+        server = new MockWechatServer(0, SECRET_KEY, behavior);
+        server.start();
+
+        notifications = new LinkedBlockingQueue<>();
+        rejections = new AtomicInteger();
+        callback = HttpServer.create(new InetSocketAddress(0), 0);
+        callback.createContext("/notifications", exchange -> {
+            String notification = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            byte[] acknowledgement;
+            if (rejections.getAndDecrement() > 0) {
+                acknowledgement = new byte[0];
+            } else {
+                TransactionNotificationRequest request = new TransactionNotificationRequest();
+                request.setConfig(config);
+                notifications.add(processor.handle(notification, request));
+                acknowledgement = processor.from(request).getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.sendResponseHeaders(200, acknowledgement.length == 0 ? -1 : acknowledgement.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(acknowledgement);
+            }
+        });
+        callback.start();
+
+        config = new Config();
+        config.setChannelType(ChannelType.WECHAT);
+        config.setChannelNo("MOCK");
+        config.setBaseUrl(server.getBaseUrl());
+        config.setCallbackUrl("http://127.0.0.1:" + callback.getAddress().getPort() + "/notifications");
+        config.setAppId("wx99bcf174724d0ae0");
+        config.setMerchantNo("1251462001");
+        config.setSignatureAlgorithm("MD5");
+        config.setSecretKey(SECRET_KEY);
+
+        httpClient = HttpClients.custom()
+                .setDefaultRequestConfig(RequestConfig.custom().setSocketTimeout(500).build())
+                .build();
+        processor = new WechatProcessor(httpClient, new WechatConverter(), new WechatCryptor());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        httpClient.close();
+        callback.stop(0);
+        server.close();
+    }
+
+    @Test
+    public void testTransactionAndQuery() {
+        TransactionRequest request = transactionRequest();
+        TransactionResponse response = processor.execute(request);
+        assertThat(response.getTransaction().getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+        assertThat(response.getTransaction().getThirdpartyPrepayNo()).startsWith("wx");
+
+        TransactionQueryResponse queryResponse = processor.execute(queryRequest(request));
+        assertThat(queryResponse.getTransactions().get(0).getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+
+        TransactionQueryRequest unknown = new TransactionQueryRequest();
+        unknown.setConfig(config);
+        unknown.getTransactions().add(Transaction.builder().channelSerialNo(IdUtils.uuidWithoutDash()).build());
+        queryResponse = processor.execute(unknown);
+        assertThat(queryResponse.getTransactions().get(0).getStatus()).isEqualTo(TransactionStatus.FAILED);
+        assertThat(queryResponse.getTransactions().get(0).getCode()).isEqualTo("ORDERNOTEXIST");
+    }
+
+    @Test
+    public void testPaymentNotified() throws Exception {
+        behavior.setPaymentDelay(0L);
+        rejections.set(1);
+        TransactionRequest request = transactionRequest();
+        processor.execute(request);
+
+        // the first notification is not acknowledged and sent again
+        TransactionNotificationResponse notification = notifications.poll(5L, TimeUnit.SECONDS);
+        assertThat(notification).isNotNull();
+        assertThat(rejections.get()).isNegative();
+        assertThat(notification.getTransaction().getStatus()).isEqualTo(TransactionStatus.SUCCEED);
+        assertThat(notification.getTransaction().getChannelSerialNo())
+                .isEqualTo(request.getTransaction().getChannelSerialNo());
+        assertThat(notification.getTransaction().getAmount()).isEqualByComparingTo("12.34");
+        assertThat(notification.getTransaction().getThirdpartySerialNo()).isNotEmpty();
+
+        TransactionQueryResponse queryResponse = processor.execute(queryRequest(request));
+        assertThat(queryResponse.getTransactions().get(0).getStatus()).isEqualTo(TransactionStatus.SUCCEED);
+    }
+
+    @Test
+    public void testBusinessErrors() {
+        TransactionRequest request = transactionRequest();
+        processor.execute(request);
+
+        behavior.setSystemErrorRate(1.0);
+        TransactionQueryResponse queryResponse = processor.execute(queryRequest(request));
+        assertThat(queryResponse.getTransactions().get(0).getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+        assertThat(queryResponse.getTransactions().get(0).getCode()).isEqualTo("SYSTEMERROR");
+
+        behavior.setSystemErrorRate(0.0);
+        behavior.setOrderNotExistRate(1.0);
+        queryResponse = processor.execute(queryRequest(request));
+        assertThat(queryResponse.getTransactions().get(0).getCode()).isEqualTo("ORDERNOTEXIST");
+    }
+
+    @Test
+    public void testTransportFaults() {
+        behavior.setResetRate(1.0);
+        assertThatThrownBy(() -> processor.execute(transactionRequest())).isInstanceOf(ThirdpartyException.class);
+
+        behavior.setResetRate(0.0);
+        behavior.setTimeoutRate(1.0);
+        behavior.setTimeout(2000L);
+        assertThatThrownBy(() -> processor.execute(transactionRequest())).isInstanceOf(ThirdpartyException.class);
+    }
+
+    @Test
+    public void testInvalidSignature() {
+        config.setSecretKey("fedcba9876543210fedcba9876543210");
+        TransactionResponse response = processor.execute(transactionRequest());
+        assertThat(response.getCode()).isEqualTo("FAIL");
+        assertThat(response.getMessage()).isEqualTo("签名错误");
+    }
+
+    private TransactionRequest transactionRequest() {
+        TransactionRequest request = new TransactionRequest();
+        request.setConfig(config);
+        request.setTransaction(Transaction.builder()
+                .channelSerialNo(IdUtils.uuidWithoutDash())
+                .description("测试交易")
+                .amount(new BigDecimal("12.34"))
+                .expireTime(LocalDateTime.now().plusHours(1L))
+                .build());
+        return request;
+    }
+
+    private TransactionQueryRequest queryRequest(TransactionRequest transactionRequest) {
+        TransactionQueryRequest request = new TransactionQueryRequest();
+        request.setConfig(config);
+        request.getTransactions().add(Transaction.builder()
+                .channelSerialNo(transactionRequest.getTransaction().getChannelSerialNo())
+                .build());
+        return request;
+    }
+}
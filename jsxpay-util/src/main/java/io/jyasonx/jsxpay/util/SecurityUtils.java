@@ -343,6 +343,23 @@ public class SecurityUtils {
         }
     }
 
+    /**
+     * Creates a {@code MessageDigest} for computing the hash incrementally.
+     *
+     * @param algorithm the algorithm
+     * @return the {@code MessageDigest} of default provider
+     * @throws SecurityException if the algorithm is not supported
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws SecurityException {
+        Preconditions.checkNotNull(algorithm);
+
+        try {
+            return MessageDigest.getInstance(algorithm, DEFAULT_PROVIDER);
+        } catch (NoSuchProviderException | NoSuchAlgorithmException err) {
+            throw new SecurityException("Error creating the message digest", err);
+        }
+    }
+
     /**
      * Completes the hash computation by performing final operations such as padding
      * (without provider).